@@ -6,11 +6,20 @@
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.ObjectReceiver;
@@ -18,15 +27,26 @@
 import org.metafacture.framework.annotations.In;
 import org.metafacture.framework.annotations.Out;
 import org.metafacture.framework.helpers.DefaultObjectPipe;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-
-import ORG.oclc.oai.harvester2.app.RawWrite;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Opens an OAI-PMH stream and passes a reader to the receiver.
- * 
+ * <p>
+ * The records are harvested with the ListRecords verb. Every page of the
+ * list is passed to the receiver as a reader of its own as soon as it has
+ * been received. While the receiver processes a page, the page referenced by
+ * its resumption token is fetched in the background. At most one page is
+ * fetched ahead, so the memory used does not depend on the size of the
+ * harvested set.
+ * <p>
+ * A {@code noRecordsMatch} error ends the harvest without passing a page to
+ * the receiver; all other OAI-PMH errors raise an exception.
+ *
  * @author Pascal Christoph (dr0i)
- * 
+ *
  */
 @Description("Opens an OAI-PMH stream and passes a reader to the receiver. Mandatory arguments are: BASE_URL, DATE_FROM, DATE_UNTIL, METADATA_PREFIX, SET_SPEC .")
 @In(String.class)
@@ -34,9 +54,15 @@
 public final class OaiPmhOpener extends
 		DefaultObjectPipe<String, ObjectReceiver<Reader>> {
 
-	private String encoding = "UTF-8";
+	private static final int PREFETCHED_PAGES = 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
 
-	final ByteArrayOutputStream OUTPUT_STREAM = new ByteArrayOutputStream();
+	private static final String NO_RECORDS_MATCH = "noRecordsMatch";
+
+	private static final Object END_OF_LIST = new Object();
+
+	private String encoding = "UTF-8";
 
 	private String dateFrom;
 
@@ -54,8 +80,9 @@ public OaiPmhOpener() {
 	}
 
 	/**
-	 * Sets the encoding to use. The default setting is UTF-8.
-	 * 
+	 * Sets the encoding to use if a response does not specify its charset.
+	 * The default setting is UTF-8.
+	 *
 	 * @param encoding new default encoding
 	 */
 	public void setEncoding(final String encoding) {
@@ -65,7 +92,7 @@ public void setEncoding(final String encoding) {
 	/**
 	 * Sets the beginning of the retrieving of updated data. The form is
 	 * YYYY-MM-DD .
-	 * 
+	 *
 	 * @param dateFrom The form is YYYY-MM-DD .
 	 */
 	public void setDateFrom(final String dateFrom) {
@@ -74,7 +101,7 @@ public void setDateFrom(final String dateFrom) {
 
 	/**
 	 * Sets the end of the retrieving of updated data. The form is YYYY-MM-DD .
-	 * 
+	 *
 	 * @param dateUntil The form is YYYY-MM-DD .
 	 */
 	public void setDateUntil(final String dateUntil) {
@@ -83,7 +110,7 @@ public void setDateUntil(final String dateUntil) {
 
 	/**
 	 * Sets the OAI-PM metadata prefix .
-	 * 
+	 *
 	 * @param metadataPrefix the OAI-PM metadata prefix
 	 */
 	public void setMetadataPrefix(final String metadataPrefix) {
@@ -92,7 +119,7 @@ public void setMetadataPrefix(final String metadataPrefix) {
 
 	/**
 	 * Sets the OAI-PM set specification .
-	 * 
+	 *
 	 * @param setSpec th OAI-PM set specification
 	 */
 	public void setSetSpec(final String setSpec) {
@@ -101,27 +128,156 @@ public void setSetSpec(final String setSpec) {
 
 	@Override
 	public void process(final String baseUrl) {
-
+		final BlockingQueue<Object> pages = new ArrayBlockingQueue<>(PREFETCHED_PAGES);
+		final Thread harvester = new Thread(() -> harvest(baseUrl, pages), "oai-pmh-harvester");
+		harvester.setDaemon(true);
+		harvester.start();
 		try {
-			RawWrite.run(baseUrl, this.dateFrom, this.dateUntil, this.metadataPrefix,
-					this.setSpec, OUTPUT_STREAM);
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
-		} catch (SAXException e) {
-			e.printStackTrace();
-		} catch (TransformerException e) {
-			e.printStackTrace();
-		} catch (NoSuchFieldException e) {
-			e.printStackTrace();
+			Object page;
+			while ((page = pages.take()) != END_OF_LIST) {
+				if (page instanceof Page) {
+					getReceiver().process(new InputStreamReader(
+							new ByteArrayInputStream(((Page) page).data), ((Page) page).charset));
+				} else {
+					throw new MetafactureException("Error harvesting '" + baseUrl + "'.",
+							(Throwable) page);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MetafactureException(e);
+		} catch (final UnsupportedEncodingException e) {
+			throw new MetafactureException(e);
+		} finally {
+			harvester.interrupt();
 		}
+	}
+
+	private void harvest(final String baseUrl, final BlockingQueue<Object> pages) {
 		try {
-			getReceiver().process(
-					new InputStreamReader(new ByteArrayInputStream(OUTPUT_STREAM
-							.toByteArray()), encoding));
-		} catch (IOException e) {
-			throw new MetafactureException(e);
+			try {
+				final SAXParser parser = createParser();
+				String url = baseUrl + (baseUrl.contains("?") ? "&" : "?") + "verb=ListRecords" +
+						parameter("metadataPrefix", metadataPrefix) + parameter("from", dateFrom) +
+						parameter("until", dateUntil) + parameter("set", setSpec);
+				while (url != null) {
+					final Page page = fetch(url);
+					final PageHandler handler = new PageHandler();
+					parser.reset();
+					parser.parse(new InputSource(new ByteArrayInputStream(page.data)), handler);
+					if (handler.errorCode != null) {
+						if (!NO_RECORDS_MATCH.equals(handler.errorCode)) {
+							throw new IOException("OAI-PMH error '" + handler.errorCode + "': " +
+									handler.errorMessage);
+						}
+						break;
+					}
+					pages.put(page);
+					final String token = handler.resumptionToken.toString().trim();
+					url = token.isEmpty() ? null : baseUrl + (baseUrl.contains("?") ? "&" : "?") +
+							"verb=ListRecords" + parameter("resumptionToken", token);
+				}
+				pages.put(END_OF_LIST);
+			} catch (final IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+				pages.put(e);
+			}
+		} catch (final InterruptedException e) {
+			// The pipeline stopped reading the list
 		}
 	}
+
+	private Page fetch(final String url) throws IOException {
+		final URLConnection con = new URL(url).openConnection();
+		if (con instanceof HttpURLConnection) {
+			final int responseCode = ((HttpURLConnection) con).getResponseCode();
+			if (responseCode != HttpURLConnection.HTTP_OK) {
+				throw new IOException("HTTP " + responseCode + " for " + url);
+			}
+		}
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try (InputStream in = con.getInputStream()) {
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int count;
+			while ((count = in.read(buffer)) >= 0) {
+				data.write(buffer, 0, count);
+			}
+		}
+		return new Page(data.toByteArray(), getCharset(con.getContentType()));
+	}
+
+	private String getCharset(final String contentType) {
+		if (contentType != null) {
+			for (final String parameter : contentType.split(";")) {
+				final String trimmed = parameter.trim();
+				if (trimmed.toLowerCase().startsWith("charset=")) {
+					return trimmed.substring("charset=".length()).replace("\"", "");
+				}
+			}
+		}
+		return encoding;
+	}
+
+	private static String parameter(final String name, final String value)
+			throws UnsupportedEncodingException {
+		return value == null ? "" : "&" + name + "=" + URLEncoder.encode(value, "UTF-8");
+	}
+
+	private static SAXParser createParser() throws ParserConfigurationException, SAXException {
+		final SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		return factory.newSAXParser();
+	}
+
+	/**
+	 * The content of a response and its charset.
+	 */
+	private static final class Page {
+
+		private final byte[] data;
+		private final String charset;
+
+		Page(final byte[] data, final String charset) {
+			this.data = data;
+			this.charset = charset;
+		}
+
+	}
+
+	/**
+	 * Extracts the resumption token and the error code of a response.
+	 */
+	private static final class PageHandler extends DefaultHandler {
+
+		private final StringBuilder resumptionToken = new StringBuilder();
+		private final StringBuilder errorMessage = new StringBuilder();
+
+		private StringBuilder text;
+		private String errorCode;
+
+		@Override
+		public void startElement(final String uri, final String localName, final String qName,
+				final Attributes attributes) {
+			if ("resumptionToken".equals(localName)) {
+				text = resumptionToken;
+			} else if ("error".equals(localName) && errorCode == null) {
+				errorCode = attributes.getValue("code");
+				text = errorMessage;
+			}
+		}
+
+		@Override
+		public void endElement(final String uri, final String localName, final String qName) {
+			text = null;
+		}
+
+		@Override
+		public void characters(final char[] ch, final int start, final int length) {
+			if (text != null) {
+				text.append(ch, start, length);
+			}
+		}
+
+	}
+
 }
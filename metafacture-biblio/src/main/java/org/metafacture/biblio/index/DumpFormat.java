@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.nio.charset.StandardCharsets;
+
+import org.metafacture.biblio.iso2709.Record;
+import org.metafacture.framework.FormatException;
+
+/**
+ * The formats of dump files which can be indexed. In both formats records
+ * are terminated by the ISO 646 information separator three (0x1d).
+ */
+enum DumpFormat {
+
+    /**
+     * Records in ISO 2709 format such as MARC 21. The record id is the
+     * content of field 001. Malformed records have no id, so that they are
+     * passed on but not indexed.
+     */
+    ISO2709 {
+
+        @Override
+        String extractId(final byte[] data, final int start, final int length) {
+            try {
+                final Record record = new Record(data, start, length);
+                record.setCharset(StandardCharsets.UTF_8);
+                return record.getRecordId();
+            } catch (final FormatException e) {
+                return null;
+            }
+        }
+
+    },
+
+    /**
+     * Records in normalised PICA+ format. The record id is the content of
+     * subfield 0 of field 003@.
+     */
+    PICA {
+
+        private static final byte FIELD_MARKER = 0x1e;
+        private static final byte SUBFIELD_MARKER = 0x1f;
+        private static final byte LINE_FEED = '\n';
+
+        @Override
+        String extractId(final byte[] data, final int start, final int length) {
+            final int end = start + length;
+            int fieldStart = start;
+            while (fieldStart < end) {
+                if (matchesIdField(data, fieldStart, end)) {
+                    final int valueStart = fieldStart + ID_FIELD.length;
+                    int valueEnd = valueStart;
+                    while (valueEnd < end && !isMarker(data[valueEnd])) {
+                        ++valueEnd;
+                    }
+                    return new String(data, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8);
+                }
+                while (fieldStart < end && data[fieldStart] != FIELD_MARKER && data[fieldStart] != LINE_FEED) {
+                    ++fieldStart;
+                }
+                ++fieldStart;
+            }
+            return null;
+        }
+
+        private boolean matchesIdField(final byte[] data, final int start, final int end) {
+            if (end - start < ID_FIELD.length) {
+                return false;
+            }
+            for (int i = 0; i < ID_FIELD.length; ++i) {
+                if (data[start + i] != ID_FIELD[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isMarker(final byte b) {
+            return b == FIELD_MARKER || b == SUBFIELD_MARKER || b == RECORD_SEPARATOR || b == LINE_FEED;
+        }
+
+    };
+
+    static final byte RECORD_SEPARATOR = 0x1d;
+
+    private static final byte[] ID_FIELD = "003@ \u001f0".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Returns the id of a record.
+     *
+     * @param data array containing the record
+     * @param start index of the first byte of the record
+     * @param length length of the record without its separator
+     * @return the record id or null if the record has no id
+     */
+    abstract String extractId(byte[] data, int start, int length);
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.metafacture.biblio.index.RecordIndex.Location;
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Looks up record ids in a {@link RecordIndex} and passes the records with
+ * these ids to the receiver. The records are read directly from their
+ * offsets in the dump files, so only the requested records are read. Ids
+ * which are not in the index are ignored.
+ */
+@Description("Reads the records with the received ids from dump files indexed by index-records.")
+@In(String.class)
+@Out(String.class)
+@FluxCommand("open-indexed-records")
+public final class IndexedRecordOpener
+        extends DefaultObjectPipe<String, ObjectReceiver<String>> {
+
+    private final Map<String, FileChannel> channels = new HashMap<>();
+
+    private String index;
+    private Charset charset = Charset.forName("UTF-8");
+
+    private RecordIndex recordIndex;
+
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the path of the index file. This parameter is mandatory.
+     *
+     * @param index path of the index file
+     */
+    public void setIndex(final String index) {
+        this.index = index;
+    }
+
+    public String getEncoding() {
+        return charset.name();
+    }
+
+    /**
+     * Sets the encoding of the records. The default is UTF-8.
+     *
+     * @param encoding name of the encoding
+     */
+    public void setEncoding(final String encoding) {
+        charset = Charset.forName(encoding);
+    }
+
+    @Override
+    public void process(final String id) {
+        try {
+            if (recordIndex == null) {
+                if (index == null) {
+                    throw new MetafactureException("No index file set.");
+                }
+                recordIndex = RecordIndex.open(index);
+            }
+            for (final Location location : recordIndex.find(id)) {
+                getReceiver().process(readRecord(location));
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private String readRecord(final Location location) throws IOException {
+        FileChannel channel = channels.get(location.getFile());
+        if (channel == null) {
+            channel = FileChannel.open(Paths.get(location.getFile()), StandardOpenOption.READ);
+            channels.put(location.getFile(), channel);
+        }
+        final ByteBuffer record = ByteBuffer.allocate(location.getLength());
+        while (record.hasRemaining()) {
+            if (channel.read(record, location.getOffset() + record.position()) < 0) {
+                throw new EOFException("Record at offset " + location.getOffset() +
+                        " exceeds the end of '" + location.getFile() + "'.");
+            }
+        }
+        return new String(record.array(), 0, record.limit(), charset);
+    }
+
+    @Override
+    protected void onCloseStream() {
+        try {
+            for (final FileChannel channel : channels.values()) {
+                channel.close();
+            }
+            if (recordIndex != null) {
+                recordIndex.close();
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        } finally {
+            channels.clear();
+            recordIndex = null;
+        }
+    }
+
+}
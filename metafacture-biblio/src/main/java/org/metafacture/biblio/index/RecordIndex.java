@@ -0,0 +1,336 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index of the records in one or more dump files. The index maps record
+ * ids to the file, byte offset and length of the records. It is created by
+ * {@link RecordIndexer}.
+ * <p>
+ * The index file contains the entries sorted by record id in blocks of
+ * {@value #BLOCK_SIZE} entries. Only the first id of each block is held in
+ * memory; a lookup reads a single block from the file. For every file the
+ * index also holds the offset of every {@value #SAMPLE_INTERVAL}th record,
+ * which allows to {@link #split(int) split} the files into byte ranges at
+ * record boundaries.
+ * <p>
+ * The indexed files must be uncompressed as compressed files cannot be
+ * read from arbitrary offsets.
+ */
+public final class RecordIndex implements Closeable {
+
+    static final int MAGIC = 0x4d465249; // "MFRI"
+    static final int VERSION = 1;
+
+    static final int BLOCK_SIZE = 128;
+    static final int SAMPLE_INTERVAL = 1024;
+
+    private final RandomAccessFile indexFile;
+    private final List<String> files = new ArrayList<>();
+    private final List<long[]> samples = new ArrayList<>();
+    private final List<Long> fileEnds = new ArrayList<>();
+    private final long entryCount;
+    private final String[] blockIds;
+    private final long[] blockPositions;
+
+    private RecordIndex(final RandomAccessFile indexFile) throws IOException {
+        this.indexFile = indexFile;
+        final DataInputStream header = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(indexFile.getChannel())));
+        if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+            throw new IOException("not a record index");
+        }
+        final int fileCount = header.readInt();
+        for (int i = 0; i < fileCount; ++i) {
+            files.add(header.readUTF());
+            fileEnds.add(header.readLong());
+            final long[] fileSamples = new long[header.readInt()];
+            for (int j = 0; j < fileSamples.length; ++j) {
+                fileSamples[j] = header.readLong();
+            }
+            samples.add(fileSamples);
+        }
+        entryCount = header.readLong();
+
+        indexFile.seek(indexFile.length() - Long.BYTES);
+        indexFile.seek(indexFile.readLong());
+        final DataInputStream blockTable = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(indexFile.getChannel())));
+        final int blockCount = blockTable.readInt();
+        blockIds = new String[blockCount];
+        blockPositions = new long[blockCount];
+        for (int i = 0; i < blockCount; ++i) {
+            blockIds[i] = blockTable.readUTF();
+            blockPositions[i] = blockTable.readLong();
+        }
+    }
+
+    /**
+     * Opens an index file.
+     *
+     * @param path path of the index file
+     * @return the index
+     * @throws IOException if the index file cannot be read
+     */
+    public static RecordIndex open(final String path) throws IOException {
+        final RandomAccessFile indexFile = new RandomAccessFile(path, "r");
+        try {
+            return new RecordIndex(indexFile);
+        } catch (final IOException | RuntimeException e) {
+            indexFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the paths of the indexed files as they were passed to the
+     * indexer.
+     *
+     * @return the indexed files
+     */
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Returns the number of indexed records.
+     *
+     * @return the number of records
+     */
+    public long size() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the locations of the records with an id. Usually there is at
+     * most one such record.
+     *
+     * @param id the record id
+     * @return the locations of the records, or an empty list if no record
+     * has this id
+     * @throws IOException if the index file cannot be read
+     */
+    public synchronized List<Location> find(final String id) throws IOException {
+        final List<Location> locations = new ArrayList<>();
+        if (blockIds.length == 0) {
+            return locations;
+        }
+        // Start with the last block whose first id is smaller than the id as
+        // records with the same id may continue in the following blocks:
+        int block = 0;
+        int low = 0;
+        int high = blockIds.length - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (blockIds[middle].compareTo(id) < 0) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        indexFile.seek(blockPositions[block]);
+        final DataInputStream entries = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(indexFile.getChannel())));
+        final long entriesInBlocks = entryCount - (long) block * BLOCK_SIZE;
+        for (long i = 0; i < entriesInBlocks; ++i) {
+            final Entry entry = Entry.read(entries);
+            final int comparison = entry.id.compareTo(id);
+            if (comparison > 0) {
+                break;
+            }
+            if (comparison == 0) {
+                locations.add(new Location(files.get(entry.file), entry.offset, entry.length));
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Splits the indexed files into byte ranges which start and end at record
+     * boundaries. The ranges are about the same size, but ranges do not span
+     * files. Thus more ranges than requested are returned if there are more
+     * files than parts. Fewer ranges are returned if the files contain too
+     * few records.
+     *
+     * @param parts the number of ranges to create
+     * @return the ranges in the order of the files
+     */
+    public List<Range> split(final int parts) {
+        long totalSize = 0;
+        for (int i = 0; i < files.size(); ++i) {
+            if (samples.get(i).length > 0) {
+                totalSize += fileEnds.get(i) - samples.get(i)[0];
+            }
+        }
+        final long targetSize = Math.max(1, totalSize / Math.max(1, parts));
+        final List<Range> ranges = new ArrayList<>();
+        for (int i = 0; i < files.size(); ++i) {
+            final long[] fileSamples = samples.get(i);
+            if (fileSamples.length == 0) {
+                continue;
+            }
+            long rangeStart = fileSamples[0];
+            for (int j = 1; j < fileSamples.length; ++j) {
+                if (fileSamples[j] - rangeStart >= targetSize) {
+                    ranges.add(new Range(files.get(i), rangeStart, fileSamples[j]));
+                    rangeStart = fileSamples[j];
+                }
+            }
+            ranges.add(new Range(files.get(i), rangeStart, fileEnds.get(i)));
+        }
+        return ranges;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        indexFile.close();
+    }
+
+    /**
+     * The position of a record in a file.
+     */
+    public static final class Location {
+
+        private final String file;
+        private final long offset;
+        private final int length;
+
+        Location(final String file, final long offset, final int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the length of the record without its separator.
+         *
+         * @return length in bytes
+         */
+        public int getLength() {
+            return length;
+        }
+
+    }
+
+    /**
+     * A range of bytes in a file which starts at a record boundary and ends
+     * at a record boundary or at the end of the file.
+     */
+    public static final class Range {
+
+        private final String file;
+        private final long start;
+        private final long end;
+
+        public Range(final String file, final long start, final long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return file + "[" + start + "," + end + ")";
+        }
+
+    }
+
+    /**
+     * An entry of the index.
+     */
+    static final class Entry implements Comparable<Entry> {
+
+        final String id;
+        final int file;
+        final long offset;
+        final int length;
+
+        Entry(final String id, final int file, final long offset, final int length) {
+            this.id = id;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        static Entry read(final DataInput in) throws IOException {
+            return new Entry(in.readUTF(), in.readInt(), in.readLong(), in.readInt());
+        }
+
+        /**
+         * Reads an entry or returns null at the end of the input.
+         */
+        static Entry readOrNull(final DataInput in) throws IOException {
+            try {
+                return read(in);
+            } catch (final EOFException e) {
+                return null;
+            }
+        }
+
+        void write(final DataOutput out) throws IOException {
+            out.writeUTF(id);
+            out.writeInt(file);
+            out.writeLong(offset);
+            out.writeInt(length);
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            final int comparison = id.compareTo(other.id);
+            if (comparison != 0) {
+                return comparison;
+            }
+            return file != other.file ? Integer.compare(file, other.file) :
+                Long.compare(offset, other.offset);
+        }
+
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.metafacture.biblio.index.RecordIndex.Entry;
+
+/**
+ * Collects index entries and writes them sorted by record id to an index
+ * file. Entries are sorted in runs of {@link #setRunSize(int) runSize}
+ * entries which are written to temporary files and merged when the index is
+ * written. Thus the memory used does not depend on the number of records.
+ */
+final class RecordIndexWriter {
+
+    static final int DEFAULT_RUN_SIZE = 1_000_000;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path indexFile;
+    private final List<String> files = new ArrayList<>();
+    private final List<Long> fileEnds = new ArrayList<>();
+    private final List<long[]> samples = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+
+    private List<Entry> entries = new ArrayList<>();
+    private int runSize = DEFAULT_RUN_SIZE;
+    private long entryCount;
+
+    RecordIndexWriter(final String indexFile) {
+        this.indexFile = Paths.get(indexFile);
+    }
+
+    void setRunSize(final int runSize) {
+        this.runSize = runSize;
+    }
+
+    /**
+     * Registers an indexed file.
+     *
+     * @param file path of the file
+     * @return the number of the file which is used in the entries
+     */
+    int addFile(final String file) {
+        files.add(file);
+        fileEnds.add(0L);
+        samples.add(new long[0]);
+        return files.size() - 1;
+    }
+
+    /**
+     * Records the extent of an indexed file once it has been read.
+     *
+     * @param file the number of the file
+     * @param end the length of the indexed part of the file
+     * @param fileSamples offsets of every
+     *                    {@value RecordIndex#SAMPLE_INTERVAL}th record
+     */
+    void completeFile(final int file, final long end, final long[] fileSamples) {
+        fileEnds.set(file, end);
+        samples.set(file, fileSamples);
+    }
+
+    void add(final String id, final int file, final long offset, final int length) throws IOException {
+        entries.add(new Entry(id, file, offset, length));
+        ++entryCount;
+        if (entries.size() >= runSize) {
+            writeRun();
+        }
+    }
+
+    /**
+     * Sorts the entries and writes the index file. The index file is
+     * replaced atomically.
+     *
+     * @throws IOException if writing fails
+     */
+    void write() throws IOException {
+        final Path tempFile = indexFile.toAbsolutePath().resolveSibling(indexFile.getFileName() + ".tmp");
+        try {
+            if (!runs.isEmpty()) {
+                writeRun();
+            }
+            Collections.sort(entries);
+            try (CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(tempFile));
+                    DataOutputStream out = new DataOutputStream(counter)) {
+                writeHeader(out);
+                final List<String> blockIds = new ArrayList<>();
+                final List<Long> blockPositions = new ArrayList<>();
+                final EntrySource source = runs.isEmpty() ? new ListSource(entries) : new MergeSource(runs);
+                try {
+                    long count = 0;
+                    Entry entry;
+                    while ((entry = source.next()) != null) {
+                        if (count++ % RecordIndex.BLOCK_SIZE == 0) {
+                            blockIds.add(entry.id);
+                            blockPositions.add(counter.count);
+                        }
+                        entry.write(out);
+                    }
+                } finally {
+                    source.close();
+                }
+                final long blockTablePosition = counter.count;
+                out.writeInt(blockIds.size());
+                for (int i = 0; i < blockIds.size(); ++i) {
+                    out.writeUTF(blockIds.get(i));
+                    out.writeLong(blockPositions.get(i));
+                }
+                out.writeLong(blockTablePosition);
+            }
+            Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            entries = new ArrayList<>();
+            for (final Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void writeHeader(final DataOutputStream out) throws IOException {
+        out.writeInt(RecordIndex.MAGIC);
+        out.writeInt(RecordIndex.VERSION);
+        out.writeInt(files.size());
+        for (int i = 0; i < files.size(); ++i) {
+            out.writeUTF(files.get(i));
+            out.writeLong(fileEnds.get(i));
+            final long[] fileSamples = samples.get(i);
+            out.writeInt(fileSamples.length);
+            for (final long sample : fileSamples) {
+                out.writeLong(sample);
+            }
+        }
+        out.writeLong(entryCount);
+    }
+
+    private void writeRun() throws IOException {
+        Collections.sort(entries);
+        final Path run = Files.createTempFile("record-index", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(run), BUFFER_SIZE))) {
+            for (final Entry entry : entries) {
+                entry.write(out);
+            }
+        }
+        entries = new ArrayList<>();
+    }
+
+    /**
+     * A sorted sequence of entries.
+     */
+    private interface EntrySource {
+
+        Entry next() throws IOException;
+
+        void close() throws IOException;
+
+    }
+
+    /**
+     * Returns the entries of a sorted list.
+     */
+    private static final class ListSource implements EntrySource {
+
+        private final List<Entry> entries;
+        private int index;
+
+        ListSource(final List<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Entry next() {
+            return index < entries.size() ? entries.get(index++) : null;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+
+    }
+
+    /**
+     * Merges the sorted runs written to temporary files.
+     */
+    private static final class MergeSource implements EntrySource {
+
+        private final List<DataInputStream> inputs = new ArrayList<>();
+        private final PriorityQueue<RunHead> heads = new PriorityQueue<>();
+
+        MergeSource(final List<Path> runs) throws IOException {
+            try {
+                for (final Path run : runs) {
+                    final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                            Files.newInputStream(run), BUFFER_SIZE));
+                    inputs.add(in);
+                    final Entry entry = Entry.readOrNull(in);
+                    if (entry != null) {
+                        heads.add(new RunHead(entry, in));
+                    }
+                }
+            } catch (final IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public Entry next() throws IOException {
+            final RunHead head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            final Entry entry = head.entry;
+            final Entry following = Entry.readOrNull(head.in);
+            if (following != null) {
+                heads.add(new RunHead(following, head.in));
+            }
+            return entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (final DataInputStream in : inputs) {
+                in.close();
+            }
+        }
+
+    }
+
+    /**
+     * The next entry of a run.
+     */
+    private static final class RunHead implements Comparable<RunHead> {
+
+        private final Entry entry;
+        private final DataInputStream in;
+
+        RunHead(final Entry entry, final DataInputStream in) {
+            this.entry = entry;
+            this.in = in;
+        }
+
+        @Override
+        public int compareTo(final RunHead other) {
+            return entry.compareTo(other.entry);
+        }
+
+    }
+
+    /**
+     * Counts the bytes written to determine the positions of the blocks.
+     * {@link DataOutputStream} does not buffer, so the count is always up to
+     * date.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(final OutputStream out) {
+            super(new BufferedOutputStream(out, BUFFER_SIZE));
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+    }
+
+}
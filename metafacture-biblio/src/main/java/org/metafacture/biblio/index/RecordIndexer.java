@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Reads dump files in ISO 2709 (for instance MARC 21) or normalised PICA+
+ * format, passes their records to the receiver and writes a
+ * {@link RecordIndex} of the records when the stream is closed. The records
+ * are passed on without their record separator, like {@code as-records}
+ * does, so they can be decoded with {@code decode-marc21} or
+ * {@code decode-pica}.
+ * <p>
+ * All files processed until the stream is closed are written to the same
+ * index. The file paths are stored in the index as they are received, so
+ * relative paths must be valid relative to the working directory of the
+ * pipelines using the index. Records without a record id are passed on but
+ * not indexed.
+ */
+@Description("Reads ISO 2709 or PICA+ dump files, passes their records on and writes an index of the record ids.")
+@In(String.class)
+@Out(String.class)
+@FluxCommand("index-records")
+public final class RecordIndexer
+        extends DefaultObjectPipe<String, ObjectReceiver<String>> {
+
+    private String index;
+    private DumpFormat format = DumpFormat.ISO2709;
+    private Charset charset = Charset.forName("UTF-8");
+    private int runSize = RecordIndexWriter.DEFAULT_RUN_SIZE;
+
+    private RecordIndexWriter indexWriter;
+
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the path of the index file. This parameter is mandatory.
+     *
+     * @param index path of the index file
+     */
+    public void setIndex(final String index) {
+        this.index = index;
+    }
+
+    public String getFormat() {
+        return format.name().toLowerCase();
+    }
+
+    /**
+     * Sets the format of the dump files: &quot;iso2709&quot; for ISO 2709
+     * formats such as MARC 21, whose record id is stored in field 001, or
+     * &quot;pica&quot; for normalised PICA+, whose record id is stored in
+     * field 003@. The default is &quot;iso2709&quot;.
+     *
+     * @param format the format of the dump files
+     */
+    public void setFormat(final String format) {
+        this.format = DumpFormat.valueOf(format.toUpperCase());
+    }
+
+    public String getEncoding() {
+        return charset.name();
+    }
+
+    /**
+     * Sets the encoding used to decode the records which are passed on. The
+     * default is UTF-8.
+     *
+     * @param encoding name of the encoding
+     */
+    public void setEncoding(final String encoding) {
+        charset = Charset.forName(encoding);
+    }
+
+    void setRunSize(final int runSize) {
+        this.runSize = runSize;
+    }
+
+    @Override
+    public void process(final String file) {
+        if (indexWriter == null) {
+            if (index == null) {
+                throw new MetafactureException("No index file set.");
+            }
+            indexWriter = new RecordIndexWriter(index);
+            indexWriter.setRunSize(runSize);
+        }
+        final int fileNumber = indexWriter.addFile(file);
+        final List<Long> samples = new ArrayList<>();
+        try (InputStream stream = new FileInputStream(file)) {
+            final RecordScanner scanner = new RecordScanner(stream, 0);
+            long records = 0;
+            while (scanner.next()) {
+                final byte[] buffer = scanner.getBuffer();
+                final int start = scanner.getRecordStart();
+                final int length = scanner.getRecordLength();
+                if (records++ % RecordIndex.SAMPLE_INTERVAL == 0) {
+                    samples.add(scanner.getRecordOffset());
+                }
+                final String id = format.extractId(buffer, start, length);
+                if (id != null) {
+                    indexWriter.add(id, fileNumber, scanner.getRecordOffset(), length);
+                }
+                getReceiver().process(new String(buffer, start, length, charset));
+            }
+            indexWriter.completeFile(fileNumber, scanner.getOffset(),
+                    samples.stream().mapToLong(Long::longValue).toArray());
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    @Override
+    protected void onCloseStream() {
+        if (indexWriter != null) {
+            try {
+                indexWriter.write();
+            } catch (final IOException e) {
+                throw new MetafactureException("Error writing index '" + index + "'.", e);
+            } finally {
+                indexWriter = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.metafacture.biblio.index.RecordIndex.Range;
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Reads the records which start within a byte range of a dump file and
+ * passes them to the receiver without their record separator.
+ *
+ * @see RecordRangeSplitter
+ */
+@Description("Reads the records of a byte range created by split-record-ranges.")
+@In(Range.class)
+@Out(String.class)
+@FluxCommand("read-record-range")
+public final class RecordRangeReader
+        extends DefaultObjectPipe<Range, ObjectReceiver<String>> {
+
+    private Charset charset = Charset.forName("UTF-8");
+
+    public String getEncoding() {
+        return charset.name();
+    }
+
+    /**
+     * Sets the encoding of the records. The default is UTF-8.
+     *
+     * @param encoding name of the encoding
+     */
+    public void setEncoding(final String encoding) {
+        charset = Charset.forName(encoding);
+    }
+
+    @Override
+    public void process(final Range range) {
+        try (FileChannel channel = FileChannel.open(Paths.get(range.getFile()), StandardOpenOption.READ)) {
+            channel.position(range.getStart());
+            final RecordScanner scanner = new RecordScanner(Channels.newInputStream(channel), range.getStart());
+            while (scanner.next() && scanner.getRecordOffset() < range.getEnd()) {
+                getReceiver().process(new String(scanner.getBuffer(), scanner.getRecordStart(),
+                        scanner.getRecordLength(), charset));
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+}
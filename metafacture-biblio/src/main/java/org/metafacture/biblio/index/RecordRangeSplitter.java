@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.IOException;
+
+import org.metafacture.biblio.index.RecordIndex.Range;
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Splits the files of a {@link RecordIndex} into byte ranges which start at
+ * record boundaries. The ranges can be distributed to several threads with
+ * {@code thread-object-tee} and decoded in parallel using
+ * {@code read-record-range}.
+ */
+@Description("Splits the dump files of an index into byte ranges for parallel decoding.")
+@In(String.class)
+@Out(Range.class)
+@FluxCommand("split-record-ranges")
+public final class RecordRangeSplitter
+        extends DefaultObjectPipe<String, ObjectReceiver<Range>> {
+
+    private int parts = Runtime.getRuntime().availableProcessors();
+
+    public int getParts() {
+        return parts;
+    }
+
+    /**
+     * Sets the number of ranges into which the files are split. The default
+     * is the number of available processors.
+     *
+     * @param parts number of ranges
+     */
+    public void setParts(final int parts) {
+        this.parts = parts;
+    }
+
+    @Override
+    public void process(final String index) {
+        try (RecordIndex recordIndex = RecordIndex.open(index)) {
+            for (final Range range : recordIndex.split(parts)) {
+                getReceiver().process(range);
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a byte stream into records and keeps track of their positions in
+ * the stream. Records are terminated by {@link DumpFormat#RECORD_SEPARATOR};
+ * line breaks between records are skipped. The separator is not part of a
+ * record.
+ */
+final class RecordScanner {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+
+    private final InputStream stream;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private long bufferOffset;
+    private int position;
+    private int end;
+    private boolean endOfStream;
+
+    private int recordStart;
+    private int recordLength;
+
+    /**
+     * Creates a scanner.
+     *
+     * @param stream the stream to read
+     * @param offset position of the first byte of the stream in the file
+     *               it is read from
+     */
+    RecordScanner(final InputStream stream, final long offset) {
+        this.stream = stream;
+        bufferOffset = offset;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false if there are no more records
+     * @throws IOException if reading fails
+     */
+    boolean next() throws IOException {
+        int start = position;
+        int scanPosition = position;
+        while (true) {
+            while (start < end && isLineBreak(buffer[start])) {
+                ++start;
+            }
+            scanPosition = Math.max(start, scanPosition);
+            while (scanPosition < end) {
+                if (buffer[scanPosition] == DumpFormat.RECORD_SEPARATOR) {
+                    position = scanPosition + 1;
+                    if (scanPosition > start) {
+                        recordStart = start;
+                        recordLength = scanPosition - start;
+                        return true;
+                    }
+                    start = position;
+                    break;
+                }
+                ++scanPosition;
+            }
+            if (scanPosition < end) {
+                continue;
+            }
+            if (endOfStream) {
+                position = end;
+                if (start < end) {
+                    recordStart = start;
+                    recordLength = end - start;
+                    return true;
+                }
+                return false;
+            }
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                bufferOffset += start;
+                scanPosition -= start;
+                end -= start;
+                start = 0;
+            }
+            if (end == buffer.length) {
+                final byte[] largerBuffer = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, largerBuffer, 0, end);
+                buffer = largerBuffer;
+            }
+            final int count = stream.read(buffer, end, buffer.length - end);
+            if (count < 0) {
+                endOfStream = true;
+            } else {
+                end += count;
+            }
+        }
+    }
+
+    private static boolean isLineBreak(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Returns the buffer containing the current record. The buffer is
+     * reused by the next call to {@link #next()}.
+     *
+     * @return the buffer
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getRecordStart() {
+        return recordStart;
+    }
+
+    int getRecordLength() {
+        return recordLength;
+    }
+
+    /**
+     * Returns the position of the current record in the file.
+     *
+     * @return the offset of the first byte of the record
+     */
+    long getRecordOffset() {
+        return bufferOffset + recordStart;
+    }
+
+    /**
+     * Returns the position in the file up to which records have been read.
+     *
+     * @return the offset after the separator of the current record
+     */
+    long getOffset() {
+        return bufferOffset + position;
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.iso2709;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A view on the bytes of a field value in a {@link Record}. The value is
+ * only decoded into a string if {@link #decode()} is called.
+ * <p>
+ * The same instance is passed to every invocation of a
+ * {@link LazyFieldHandler}, so a field value is only valid until the handler
+ * method returns.
+ */
+public final class FieldValue {
+
+    private final Record record;
+    private final Iso646ByteBuffer buffer;
+
+    private int start;
+    private int length;
+
+    FieldValue(final Record record, final Iso646ByteBuffer buffer) {
+        this.record = record;
+        this.buffer = buffer;
+    }
+
+    void set(final int valueStart, final int valueLength) {
+        start = valueStart;
+        length = valueLength;
+    }
+
+    /**
+     * Returns the position of the value in the record.
+     *
+     * @return index of the first byte of the value relative to the start of
+     * the record
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the length of the value in bytes.
+     *
+     * @return number of bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Returns a byte of the value.
+     *
+     * @param index position of the byte in the value
+     * @return the byte at the given position
+     */
+    public byte byteAt(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return buffer.byteAt(start + index);
+    }
+
+    /**
+     * Returns a read-only view on the bytes of the value. The bytes are not
+     * copied.
+     *
+     * @return a buffer containing the value
+     */
+    public ByteBuffer asByteBuffer() {
+        return buffer.byteBufferAt(start, length);
+    }
+
+    /**
+     * Decodes the value using the charset of the record.
+     *
+     * @return the value as a string
+     * @see Record#setCharset(java.nio.charset.Charset)
+     */
+    public String decode() {
+        return buffer.stringAt(start, length, record.getCharset());
+    }
+
+    @Override
+    public String toString() {
+        return decode();
+    }
+
+}
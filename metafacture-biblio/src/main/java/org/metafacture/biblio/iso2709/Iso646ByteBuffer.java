@@ -15,6 +15,7 @@
  */
 package org.metafacture.biblio.iso2709;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import org.metafacture.framework.FormatException;
@@ -34,6 +35,8 @@ final class Iso646ByteBuffer {
     private static final int RADIX = 10;
 
     private final byte[] byteArray;
+    private final int offset;
+    private final int length;
 
     private int writePosition;
 
@@ -42,8 +45,24 @@ final class Iso646ByteBuffer {
     }
 
     Iso646ByteBuffer(final byte[] byteArray) {
+        this(byteArray, 0, byteArray.length);
+    }
+
+    /**
+     * Creates a buffer which is a view on a range of the given array. All
+     * indices passed to the methods of the buffer are relative to
+     * {@code offset}. The array is not copied.
+     *
+     * @param byteArray the array backing the buffer
+     * @param offset index of the first byte of the buffer in the array
+     * @param length number of bytes in the buffer
+     */
+    Iso646ByteBuffer(final byte[] byteArray, final int offset, final int length) {
         assert byteArray != null;
+        assert 0 <= offset && 0 <= length && offset + length <= byteArray.length;
         this.byteArray = byteArray;
+        this.offset = offset;
+        this.length = length;
     }
 
     byte[] getByteArray() {
@@ -51,15 +70,15 @@ byte[] getByteArray() {
     }
 
     int getLength() {
-        return byteArray.length;
+        return length;
     }
 
     int getFreeSpace() {
-        return byteArray.length - writePosition;
+        return length - writePosition;
     }
 
     void setWritePosition(final int writePosition) {
-        assert 0 <= writePosition && writePosition <= byteArray.length;
+        assert 0 <= writePosition && writePosition <= length;
         this.writePosition = writePosition;
     }
 
@@ -80,10 +99,10 @@ int getWritePosition() {
      * none is found to the end of the buffer.
      */
     int distanceTo(final byte byteValue, final int fromIndex) {
-        assert 0 <= fromIndex && fromIndex < byteArray.length;
+        assert 0 <= fromIndex && fromIndex < length;
         int index = fromIndex;
-        for (; index < byteArray.length; ++index) {
-            if (byteValue == byteArray[index]) {
+        for (; index < length; ++index) {
+            if (byteValue == byteArray[offset + index]) {
                 break;
             }
         }
@@ -103,10 +122,10 @@ int distanceTo(final byte byteValue, final int fromIndex) {
      * none is found to the end of the buffer.
      */
     int distanceTo(final byte[] bytes, final int fromIndex) {
-        assert 0 <= fromIndex && fromIndex < byteArray.length;
+        assert 0 <= fromIndex && fromIndex < length;
         int index = fromIndex;
-        for (; index < byteArray.length; ++index) {
-            if (containsByte(bytes, byteArray[index])) {
+        for (; index < length; ++index) {
+            if (containsByte(bytes, byteArray[offset + index])) {
                 break;
             }
         }
@@ -137,7 +156,23 @@ private boolean containsByte(final byte[] haystack, final byte needle) {
      */
     String stringAt(final int fromIndex, final int length,
             final Charset charset) {
-        return new String(byteArray, fromIndex, length, charset);
+        return new String(byteArray, offset + fromIndex, length, charset);
+    }
+
+    /**
+     * Returns a read-only view on the specified part of the record. The
+     * bytes are not copied.
+     *
+     * @param fromIndex index of the first byte of the view.
+     * @param length number of bytes in the view.
+     * @return a buffer whose position is zero and whose limit is
+     * {@code length}
+     */
+    ByteBuffer byteBufferAt(final int fromIndex, final int length) {
+        assert length >= 0;
+        assert 0 <= fromIndex && (fromIndex + length) <= this.length;
+        return ByteBuffer.wrap(byteArray, offset + fromIndex, length).slice()
+                .asReadOnlyBuffer();
     }
 
     /**
@@ -152,7 +187,7 @@ char charAt(final int index) {
 
     char[] charsAt(final int fromIndex, final int length) {
         assert length >= 0;
-        assert 0 <= fromIndex && (fromIndex + length) <= byteArray.length;
+        assert 0 <= fromIndex && (fromIndex + length) <= this.length;
         final char[] chars = new char[length];
         for (int i = 0; i < length; ++i) {
             chars[i] = byteToChar(fromIndex + i);
@@ -161,7 +196,7 @@ char[] charsAt(final int fromIndex, final int length) {
     }
 
     private char byteToChar(final int index) {
-        final byte value = byteArray[index];
+        final byte value = byteArray[offset + index];
         if (value < 0) {
             throw new FormatException("Invalid character code found at index " +
                     index);
@@ -170,7 +205,7 @@ private char byteToChar(final int index) {
     }
 
     byte byteAt(final int index) {
-        return byteArray[index];
+        return byteArray[offset + index];
     }
 
     /**
@@ -200,7 +235,7 @@ int parseIntAt(final int index) {
      */
     int parseIntAt(final int fromIndex, final int length) {
         assert length >= 0;
-        assert 0 <= fromIndex && (fromIndex + length) <= byteArray.length;
+        assert 0 <= fromIndex && (fromIndex + length) <= this.length;
         final int multiplyMax = Integer.MAX_VALUE / RADIX;
         int result = 0;
         for (int i = 0; i < length; ++i) {
@@ -218,7 +253,7 @@ int parseIntAt(final int fromIndex, final int length) {
     }
 
     private int byteToDigit(final int index) {
-        final byte digit = byteArray[index];
+        final byte digit = byteArray[offset + index];
         if (digit < Iso646Constants.ZERO || Iso646Constants.NINE < digit) {
             throw new NumberFormatException("digit expected at index " + index +
                     " but got 0x" + Integer.toHexString(digit));
@@ -233,40 +268,40 @@ private void throwNumberIsToLargeException(final int index) {
 
     void writeChar(final char charValue) {
         assert charValue <= Iso646Constants.MAX_CHAR_CODE;
-        byteArray[writePosition] = (byte) charValue;
+        byteArray[offset + writePosition] = (byte) charValue;
         writePosition += 1;
     }
 
     void writeChars(final char[] chars) {
-        assert (writePosition + chars.length) <= byteArray.length;
+        assert (writePosition + chars.length) <= length;
         for (final char charValue : chars) {
             writeChar(charValue);
         }
     }
 
     void writeByte(final byte value) {
-        byteArray[writePosition] = value;
+        byteArray[offset + writePosition] = value;
         writePosition += 1;
     }
 
     void writeBytes(final byte[] array) {
-        System.arraycopy(array, 0, byteArray, writePosition, array.length);
+        System.arraycopy(array, 0, byteArray, offset + writePosition, array.length);
         writePosition += array.length;
     }
 
     void writeInt(final int value) {
         assert 0 <= value && value < 10;
-        byteArray[writePosition] = (byte) (Iso646Constants.ZERO + value);
+        byteArray[offset + writePosition] = (byte) (Iso646Constants.ZERO + value);
         writePosition += 1;
     }
 
     void writeInt(final int value, final int digits) {
         assert value >= 0;
         assert digits >= 0;
-        assert (writePosition + digits) <= byteArray.length;
+        assert (writePosition + digits) <= length;
         int head = value;
         for (int i = writePosition + digits - 1; i >= writePosition; i--) {
-            byteArray[i] = (byte) (Iso646Constants.ZERO + head % RADIX);
+            byteArray[offset + i] = (byte) (Iso646Constants.ZERO + head % RADIX);
             head /= RADIX;
         }
         assert head == 0;
@@ -275,7 +310,7 @@ void writeInt(final int value, final int digits) {
 
     @Override
     public String toString() {
-        return stringAt(0, byteArray.length, Iso646Constants.CHARSET);
+        return stringAt(0, length, Iso646Constants.CHARSET);
     }
 
 }
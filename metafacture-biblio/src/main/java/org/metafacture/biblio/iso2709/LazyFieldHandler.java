@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.iso2709;
+
+/**
+ * Callback interface defining the events emitted by
+ * {@link Record#processFields(LazyFieldHandler)}. Unlike {@link FieldHandler},
+ * the values of fields are passed as {@link FieldValue} views which are
+ * only decoded on demand, and data fields can be skipped.
+ */
+public interface LazyFieldHandler {
+
+    void referenceField(char[] tag, char[] implDefinedPart, FieldValue value);
+
+    /**
+     * Starts a data field.
+     *
+     * @param tag the tag of the field
+     * @param implDefinedPart the implementation defined part of the directory
+     *                        entry
+     * @param indicators the indicators of the field
+     * @return false to skip the field. Neither {@link #data(char[], FieldValue)}
+     * nor {@link #endDataField()} are called for skipped fields.
+     */
+    boolean startDataField(char[] tag, char[] implDefinedPart, char[] indicators);
+
+    void endDataField();
+
+    void additionalImplDefinedPart(char[] implDefinedPart);
+
+    void data(char[] identifier, FieldValue value);
+
+}
@@ -20,6 +20,7 @@
 import static org.metafacture.biblio.iso2709.Iso2709Constants.MIN_BASE_ADDRESS;
 import static org.metafacture.biblio.iso2709.Iso2709Constants.MIN_RECORD_LENGTH;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -27,7 +28,7 @@
 import org.metafacture.framework.FormatException;
 
 /**
- * Reads a record in ISO 2709:2008 format from a byte array.
+ * Reads a record in ISO 2709:2008 format from a byte array or buffer.
  *
  * @author Christoph Böhme
  */
@@ -50,7 +51,9 @@ public final class Record {
 
     private Charset charset = StandardCharsets.UTF_8;
 
-    private FieldHandler fieldHandler;
+    private final FieldValue fieldValue;
+
+    private LazyFieldHandler fieldHandler;
 
     /**
      * Creates an instance of {@code Record} which provides access to the record
@@ -59,9 +62,55 @@ public final class Record {
      * @param recordData a byte array containing a record in ISO 2709:2008 format.
      */
     public Record(final byte[] recordData) {
-        Require.notNull(recordData);
-        checkRecordDataLength(recordData);
-        buffer = new Iso646ByteBuffer(recordData);
+        this(Require.notNull(recordData), 0, recordData.length);
+    }
+
+    /**
+     * Creates an instance of {@code Record} which provides access to the record
+     * stored in a range of the array passed as argument. The array is not
+     * copied and must not be modified while the record is in use.
+     *
+     * @param recordData a byte array containing a record in ISO 2709:2008 format.
+     * @param offset index of the first byte of the record in the array.
+     * @param length length of the record in bytes.
+     */
+    public Record(final byte[] recordData, final int offset, final int length) {
+        this(wrap(Require.notNull(recordData), offset, length));
+    }
+
+    /**
+     * Creates an instance of {@code Record} which provides access to the record
+     * stored in the remaining bytes of the buffer passed as argument. If the
+     * buffer is backed by an array, the record is read directly from this
+     * array. Otherwise, the remaining bytes are copied. The position of the
+     * buffer is not changed.
+     *
+     * @param recordData a buffer containing a record in ISO 2709:2008 format.
+     */
+    public Record(final ByteBuffer recordData) {
+        this(wrap(Require.notNull(recordData)));
+    }
+
+    private static Iso646ByteBuffer wrap(final byte[] recordData,
+            final int offset, final int length) {
+        Require.validArraySlice(offset, length, recordData.length);
+        return new Iso646ByteBuffer(recordData, offset, length);
+    }
+
+    private static Iso646ByteBuffer wrap(final ByteBuffer recordData) {
+        if (recordData.hasArray()) {
+            return new Iso646ByteBuffer(recordData.array(),
+                    recordData.arrayOffset() + recordData.position(),
+                    recordData.remaining());
+        }
+        final byte[] bytes = new byte[recordData.remaining()];
+        recordData.duplicate().get(bytes);
+        return new Iso646ByteBuffer(bytes);
+    }
+
+    private Record(final Iso646ByteBuffer buffer) {
+        checkRecordDataLength(buffer);
+        this.buffer = buffer;
         label = new Label(buffer);
         baseAddress = label.getBaseAddress();
         checkBaseAddress();
@@ -70,10 +119,11 @@ public Record(final byte[] recordData) {
         indicatorLength = label.getIndicatorLength();
         identifierLength = label.getIdentifierLength();
         recordIdFieldStart = findRecordIdFieldStart();
+        fieldValue = new FieldValue(this, buffer);
     }
 
-    private void checkRecordDataLength(final byte[] recordData) {
-        if (recordData.length < MIN_RECORD_LENGTH) {
+    private void checkRecordDataLength(final Iso646ByteBuffer recordData) {
+        if (recordData.getLength() < MIN_RECORD_LENGTH) {
             throw new FormatException("record is too short");
         }
     }
@@ -171,6 +221,18 @@ public String getLabel() {
      * @param fieldHandler instance of field handler. Must not be null.
      */
     public void processFields(final FieldHandler fieldHandler) {
+        processFields(new DecodingFieldHandler(Require.notNull(fieldHandler)));
+    }
+
+    /**
+     * Iterates through all fields in the record and calls the appropriate method
+     * on the supplied {@link LazyFieldHandler} instance. Field values are not
+     * decoded unless the handler decodes them, and the values of data fields
+     * which the handler skips are not read at all.
+     *
+     * @param fieldHandler instance of field handler. Must not be null.
+     */
+    public void processFields(final LazyFieldHandler fieldHandler) {
         this.fieldHandler = Require.notNull(fieldHandler);
         boolean continuedField = false;
         directoryEntry.rewind();
@@ -198,18 +260,19 @@ private void processField() {
     private void processReferenceField() {
         final int fieldStart = baseAddress + directoryEntry.getFieldStart();
         final int fieldLength = buffer.distanceTo(FIELD_SEPARATOR, fieldStart);
-        final String value = buffer.stringAt(fieldStart, fieldLength, charset);
+        fieldValue.set(fieldStart, fieldLength);
         fieldHandler.referenceField(directoryEntry.getTag(),
-                directoryEntry.getImplDefinedPart(), value);
+                directoryEntry.getImplDefinedPart(), fieldValue);
     }
 
     private void processDataField() {
         final int fieldStart = baseAddress + directoryEntry.getFieldStart();
         final char[] indicators = buffer.charsAt(fieldStart, indicatorLength);
-        fieldHandler.startDataField(directoryEntry.getTag(),
-                directoryEntry.getImplDefinedPart(), indicators);
-        processDataValues(fieldStart + indicatorLength);
-        fieldHandler.endDataField();
+        if (fieldHandler.startDataField(directoryEntry.getTag(),
+                directoryEntry.getImplDefinedPart(), indicators)) {
+            processDataValues(fieldStart + indicatorLength);
+            fieldHandler.endDataField();
+        }
     }
 
     private void processDataValues(final int fromIndex) {
@@ -221,7 +284,7 @@ private void processDataValues(final int fromIndex) {
 
     /**
      * Reads the field value starting at {@code fromIndex} and calls
-     * {@link FieldHandler#data(char[], String)}.
+     * {@link LazyFieldHandler#data(char[], FieldValue)}.
      *
      * @param fromIndex index at which the identifier of the field value starts.
      * @return the index of the end of field marker. This is the position write
@@ -232,8 +295,8 @@ private int processDataValue(final int fromIndex) {
         final char[] identifier = getIdentifier(fromIndex);
         final int dataStart = fromIndex + identifierLength;
         final int dataLength = buffer.distanceTo(DATA_SEPARATORS, dataStart);
-        final String data = buffer.stringAt(dataStart, dataLength, charset);
-        fieldHandler.data(identifier, data);
+        fieldValue.set(dataStart, dataLength);
+        fieldHandler.data(identifier, fieldValue);
         return dataStart + dataLength;
     }
 
@@ -244,4 +307,45 @@ private char[] getIdentifier(final int fromIndex) {
         return EMPTY_IDENTIFIER;
     }
 
+    /**
+     * Decodes all field values and passes them to a {@link FieldHandler}.
+     */
+    private static final class DecodingFieldHandler implements LazyFieldHandler {
+
+        private final FieldHandler fieldHandler;
+
+        DecodingFieldHandler(final FieldHandler fieldHandler) {
+            this.fieldHandler = fieldHandler;
+        }
+
+        @Override
+        public void referenceField(final char[] tag, final char[] implDefinedPart,
+                final FieldValue value) {
+            fieldHandler.referenceField(tag, implDefinedPart, value.decode());
+        }
+
+        @Override
+        public boolean startDataField(final char[] tag, final char[] implDefinedPart,
+                final char[] indicators) {
+            fieldHandler.startDataField(tag, implDefinedPart, indicators);
+            return true;
+        }
+
+        @Override
+        public void endDataField() {
+            fieldHandler.endDataField();
+        }
+
+        @Override
+        public void additionalImplDefinedPart(final char[] implDefinedPart) {
+            fieldHandler.additionalImplDefinedPart(implDefinedPart);
+        }
+
+        @Override
+        public void data(final char[] identifier, final FieldValue value) {
+            fieldHandler.data(identifier, value.decode());
+        }
+
+    }
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.marc21;
+
+import java.nio.ByteBuffer;
+
+import org.metafacture.biblio.iso2709.Record;
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.StreamReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Decodes MARC 21 records from byte buffers into an event stream. Each buffer
+ * must contain exactly one record in its remaining bytes. The record is read
+ * directly from the buffer without decoding it into a string first. This
+ * makes the decoder a good fit for byte-oriented record splitters such as
+ * {@code as-byte-records}.
+ * <p>
+ * The events emitted and the parameters supported are the same as for
+ * {@link Marc21Decoder}. Empty buffers are ignored.
+ */
+@In(ByteBuffer.class)
+@Out(StreamReceiver.class)
+@Description("Decodes MARC 21 records from byte buffers")
+@FluxCommand("decode-marc21-bytes")
+public final class Marc21ByteDecoder
+        extends DefaultObjectPipe<ByteBuffer, StreamReceiver> {
+
+    private final Marc21Decoder decoder = new Marc21Decoder();
+
+    /**
+     * Controls whether the decoder aborts processing if a record has no
+     * identifier.
+     *
+     * @param ignoreMissingId
+     *            true if missing identifiers should be silently ignored.
+     * @see Marc21Decoder#setIgnoreMissingId(boolean)
+     */
+    public void setIgnoreMissingId(final boolean ignoreMissingId) {
+        decoder.setIgnoreMissingId(ignoreMissingId);
+    }
+
+    public boolean getIgnoreMissingId() {
+        return decoder.getIgnoreMissingId();
+    }
+
+    /**
+     * Controls whether the Record Leader should be emitted as a whole instead of
+     * extracting the bibliographic information in the record leader.
+     *
+     * @param emitLeaderAsWhole
+     *             true if the leader should be emitted as a whole.
+     * @see Marc21Decoder#setEmitLeaderAsWhole(boolean)
+     */
+    public void setEmitLeaderAsWhole(final boolean emitLeaderAsWhole) {
+        decoder.setEmitLeaderAsWhole(emitLeaderAsWhole);
+    }
+
+    public boolean getEmitLeaderAsWhole() {
+        return decoder.getEmitLeaderAsWhole();
+    }
+
+    /**
+     * Restricts the decoded fields to the fields whose tag matches a regular
+     * expression.
+     *
+     * @param fields regular expression matching the tags of the fields to
+     *               decode, or null to decode all fields
+     * @see Marc21Decoder#setFields(String)
+     */
+    public void setFields(final String fields) {
+        decoder.setFields(fields);
+    }
+
+    public String getFields() {
+        return decoder.getFields();
+    }
+
+    @Override
+    public void process(final ByteBuffer obj) {
+        if (!obj.hasRemaining()) {
+            return;
+        }
+        decoder.decode(new Record(obj));
+    }
+
+    @Override
+    protected void onSetReceiver() {
+        decoder.setReceiver(getReceiver());
+    }
+
+}
@@ -15,7 +15,10 @@
  */
 package org.metafacture.biblio.marc21;
 
-import org.metafacture.biblio.iso2709.FieldHandler;
+import java.util.regex.Pattern;
+
+import org.metafacture.biblio.iso2709.FieldValue;
+import org.metafacture.biblio.iso2709.LazyFieldHandler;
 import org.metafacture.biblio.iso2709.Record;
 import org.metafacture.biblio.iso2709.RecordFormat;
 import org.metafacture.framework.FluxCommand;
@@ -137,10 +140,18 @@
 public final class Marc21Decoder
         extends DefaultObjectPipe<String, StreamReceiver> {
 
-    private final FieldHandler fieldHandler = new Marc21Handler();
+    private static final int NUMERIC_TAGS = 1000;
+
+    private static final byte TAG_UNKNOWN = 0;
+    private static final byte TAG_SELECTED = 1;
+    private static final byte TAG_SKIPPED = 2;
+
+    private final LazyFieldHandler fieldHandler = new Marc21Handler();
 
     private boolean ignoreMissingId;
     private boolean emitLeaderAsWhole;
+    private Pattern fields;
+    private byte[] numericTagSelection = new byte[NUMERIC_TAGS];
 
     /**
      * Controls whether the decoder aborts processing if a record has no
@@ -183,12 +194,42 @@ public boolean getEmitLeaderAsWhole() {
         return emitLeaderAsWhole;
     }
 
+    /**
+     * Restricts the decoded fields to the fields whose tag matches a regular
+     * expression, for instance &quot;001|100|245&quot;. The values of all
+     * other fields are neither decoded nor emitted. The record identifier and
+     * the leader are always emitted.
+     * <p>
+     * By default, all fields are decoded.
+     *
+     * @param fields regular expression matching the tags of the fields to
+     *               decode, or null to decode all fields
+     */
+    public void setFields(final String fields) {
+        this.fields = fields == null ? null : Pattern.compile(fields);
+        numericTagSelection = new byte[NUMERIC_TAGS];
+    }
+
+    public String getFields() {
+        return fields == null ? null : fields.pattern();
+    }
+
     @Override
     public void process(final String obj) {
         if (obj.isEmpty()) {
             return;
         }
-        final Record record = new Record(obj.getBytes(Marc21Constants.MARC21_CHARSET));
+        decode(new Record(obj.getBytes(Marc21Constants.MARC21_CHARSET)));
+    }
+
+    /**
+     * Decodes a single record and emits it to the receiver. This is the
+     * entry point for {@link Marc21ByteDecoder} which creates the record
+     * directly from the input bytes.
+     *
+     * @param record the record to decode
+     */
+    void decode(final Record record) {
         record.setCharset(Marc21Constants.MARC21_CHARSET);
 
         requireMarc21RecordFormat(record.getRecordFormat());
@@ -252,21 +293,55 @@ private void emitLeader(final Record record) {
         getReceiver().endEntity();
     }
 
+    private boolean isSelected(final char[] tag) {
+        if (fields == null) {
+            return true;
+        }
+        final int numericTag = toNumber(tag);
+        if (numericTag < 0) {
+            return fields.matcher(String.valueOf(tag)).matches();
+        }
+        // Tags are mostly numeric, so matching results are cached for these:
+        if (numericTagSelection[numericTag] == TAG_UNKNOWN) {
+            numericTagSelection[numericTag] = fields.matcher(String.valueOf(tag)).matches() ?
+                TAG_SELECTED : TAG_SKIPPED;
+        }
+        return numericTagSelection[numericTag] == TAG_SELECTED;
+    }
+
+    private static int toNumber(final char[] tag) {
+        int number = 0;
+        for (final char digit : tag) {
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            number = number * 10 + digit - '0';
+        }
+        return number < NUMERIC_TAGS ? number : -1;
+    }
+
     /**
-     * Emits the fields in a MARC 21 record as stream events.
+     * Emits the fields in a MARC 21 record as stream events. Values are only
+     * decoded for the selected fields.
      */
-    private final class Marc21Handler implements FieldHandler {
+    private final class Marc21Handler implements LazyFieldHandler {
 
         @Override
         public void referenceField(final char[] tag, final char[] implDefinedPart,
-                final String value) {
-            getReceiver().literal(String.valueOf(tag), value);
+                final FieldValue value) {
+            if (isSelected(tag)) {
+                getReceiver().literal(String.valueOf(tag), value.decode());
+            }
         }
 
         @Override
-        public void startDataField(final char[] tag, final char[] implDefinedPart,
+        public boolean startDataField(final char[] tag, final char[] implDefinedPart,
                 final char[] indicators) {
+            if (!isSelected(tag)) {
+                return false;
+            }
             getReceiver().startEntity(buildName(tag, indicators));
+            return true;
         }
 
         private String buildName(final char[] tag, final char[] indicators) {
@@ -288,8 +363,8 @@ public void additionalImplDefinedPart(final char[] implDefinedPart) {
         }
 
         @Override
-        public void data(final char[] identifier, final String value) {
-            getReceiver().literal(String.valueOf(identifier[0]), value);
+        public void data(final char[] identifier, final FieldValue value) {
+            getReceiver().literal(String.valueOf(identifier[0]), value.decode());
         }
 
     }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.metafacture.commons.ResourceUtil;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for class {@link OaiPmhOpener} against a local OAI-PMH endpoint.
+ */
+public final class OaiPmhOpenerTest {
+
+    private static final int PAGES = 5;
+
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> pages = new ArrayList<>();
+
+    private HttpServer server;
+    private OaiPmhOpener opener;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/oai", exchange -> {
+            final String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            if (query.contains("set=empty")) {
+                send(exchange, "<error code=\"noRecordsMatch\">No records</error>");
+            } else if (query.contains("set=invalid")) {
+                send(exchange, "<error code=\"badArgument\">Invalid set</error>");
+            } else {
+                final int page = query.contains("resumptionToken=") ?
+                    Integer.parseInt(query.replaceAll(".*resumptionToken=page", "")) : 0;
+                final String token = page + 1 < PAGES ? "page" + (page + 1) : "";
+                send(exchange, "<ListRecords><record>" + page + "</record>" +
+                        "<resumptionToken>" + token + "</resumptionToken></ListRecords>");
+            }
+        });
+        server.start();
+
+        opener = new OaiPmhOpener();
+        opener.setMetadataPrefix("marc21");
+        opener.setReceiver(new DefaultObjectReceiver<Reader>() {
+            @Override
+            public void process(final Reader reader) {
+                try {
+                    pages.add(ResourceUtil.readAll(reader));
+                } catch (final IOException e) {
+                    throw new MetafactureException(e);
+                }
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldPassEveryPageOfTheList() {
+        opener.setSetSpec("books");
+        opener.setDateFrom("2021-01-01");
+
+        opener.process(baseUrl());
+        opener.closeStream();
+
+        assertEquals(PAGES, pages.size());
+        for (int i = 0; i < PAGES; ++i) {
+            assertTrue(pages.get(i).contains("<record>" + i + "</record>"));
+        }
+        assertEquals("verb=ListRecords&metadataPrefix=marc21&from=2021-01-01&set=books",
+                queries.get(0));
+        assertEquals("verb=ListRecords&resumptionToken=page1", queries.get(1));
+    }
+
+    @Test
+    public void shouldPassNoPagesIfNoRecordsMatch() {
+        opener.setSetSpec("empty");
+
+        opener.process(baseUrl());
+        opener.closeStream();
+
+        assertEquals(0, pages.size());
+    }
+
+    @Test(expected = MetafactureException.class)
+    public void shouldFailOnOaiPmhErrors() {
+        opener.setSetSpec("invalid");
+
+        opener.process(baseUrl());
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/oai";
+    }
+
+    private static void send(final HttpExchange exchange, final String content) throws IOException {
+        final byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<OAI-PMH xmlns=\"http://www.openarchives.org/OAI/2.0/\">" + content +
+                "</OAI-PMH>").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.biblio.index.RecordIndex.Range;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+/**
+ * Tests for class {@link RecordIndexer} and the stages reading the index.
+ */
+public final class RecordIndexerTest {
+
+    private static final char SUBFIELD_MARKER = '\u001f';
+    private static final char FIELD_SEPARATOR = '\u001e';
+    private static final char RECORD_SEPARATOR = '\u001d';
+
+    private static final int RECORDS_PER_FILE = 3000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<String> records = new ArrayList<>();
+    private final List<String> expected = new ArrayList<>();
+
+    private String index;
+
+    @Before
+    public void setup() throws IOException {
+        index = new File(tempFolder.getRoot(), "dump.idx").getPath();
+    }
+
+    @Test
+    public void shouldPassRecordsAndFindThemById() throws IOException {
+        final String dump1 = writeMarcDump("dump1.mrc", 0);
+        final String dump2 = writeMarcDump("dump2.mrc", RECORDS_PER_FILE);
+
+        final RecordIndexer indexer = new RecordIndexer();
+        indexer.setIndex(index);
+        indexer.setRunSize(500);
+        indexer.setReceiver(new Collector());
+        indexer.process(dump1);
+        indexer.process(dump2);
+        indexer.closeStream();
+
+        assertEquals(expected, records);
+
+        records.clear();
+        final IndexedRecordOpener opener = new IndexedRecordOpener();
+        opener.setIndex(index);
+        opener.setReceiver(new Collector());
+        opener.process(marcId(4321));
+        opener.process(marcId(17));
+        opener.process("missing");
+        opener.closeStream();
+
+        assertEquals(Arrays.asList(marcRecord(4321), marcRecord(17)), records);
+    }
+
+    @Test
+    public void shouldPassMalformedRecordsWithoutIndexingThem() throws IOException {
+        final String malformed = "00070noa";
+        final String dump = marcRecord(1) + RECORD_SEPARATOR + malformed + RECORD_SEPARATOR +
+                marcRecord(2) + RECORD_SEPARATOR;
+        final File file = tempFolder.newFile("dump.mrc");
+        Files.write(file.toPath(), dump.getBytes(StandardCharsets.UTF_8));
+
+        final RecordIndexer indexer = new RecordIndexer();
+        indexer.setIndex(index);
+        indexer.setReceiver(new Collector());
+        indexer.process(file.getPath());
+        indexer.closeStream();
+
+        assertEquals(Arrays.asList(marcRecord(1), malformed, marcRecord(2)), records);
+        try (RecordIndex recordIndex = RecordIndex.open(index)) {
+            assertEquals(2, recordIndex.size());
+            assertEquals(1, recordIndex.find(marcId(2)).size());
+        }
+    }
+
+    @Test
+    public void shouldIndexPicaRecords() throws IOException {
+        final StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < 10; ++i) {
+            final String record = "001@ " + SUBFIELD_MARKER + "0" + "1" + FIELD_SEPARATOR +
+                    "003@ " + SUBFIELD_MARKER + "0" + "pica" + i + FIELD_SEPARATOR +
+                    "021A " + SUBFIELD_MARKER + "a" + "Title " + i + FIELD_SEPARATOR;
+            dump.append(record).append(RECORD_SEPARATOR).append('\n');
+            expected.add(record);
+        }
+        final File file = tempFolder.newFile("dump.pica");
+        Files.write(file.toPath(), dump.toString().getBytes(StandardCharsets.UTF_8));
+
+        final RecordIndexer indexer = new RecordIndexer();
+        indexer.setIndex(index);
+        indexer.setFormat("pica");
+        indexer.setReceiver(new Collector());
+        indexer.process(file.getPath());
+        indexer.closeStream();
+
+        assertEquals(expected, records);
+        try (RecordIndex recordIndex = RecordIndex.open(index)) {
+            assertEquals(10, recordIndex.size());
+            assertEquals(1, recordIndex.find("pica7").size());
+        }
+    }
+
+    @Test
+    public void shouldSplitFilesIntoRangesAtRecordBoundaries() throws IOException {
+        final String dump1 = writeMarcDump("dump1.mrc", 0);
+        final String dump2 = writeMarcDump("dump2.mrc", RECORDS_PER_FILE);
+        final RecordIndexer indexer = new RecordIndexer();
+        indexer.setIndex(index);
+        indexer.setReceiver(new DefaultObjectReceiver<>());
+        indexer.process(dump1);
+        indexer.process(dump2);
+        indexer.closeStream();
+
+        final List<Range> ranges = new ArrayList<>();
+        final RecordRangeSplitter splitter = new RecordRangeSplitter();
+        splitter.setParts(4);
+        splitter.setReceiver(new DefaultObjectReceiver<Range>() {
+            @Override
+            public void process(final Range range) {
+                ranges.add(range);
+            }
+        });
+        splitter.process(index);
+        splitter.closeStream();
+
+        assertTrue(ranges.size() >= 4);
+        final RecordRangeReader reader = new RecordRangeReader();
+        reader.setReceiver(new Collector());
+        for (final Range range : ranges) {
+            reader.process(range);
+        }
+        reader.closeStream();
+
+        assertEquals(expected, records);
+    }
+
+    private String writeMarcDump(final String name, final int firstRecord) throws IOException {
+        final StringBuilder dump = new StringBuilder();
+        for (int i = firstRecord; i < firstRecord + RECORDS_PER_FILE; ++i) {
+            dump.append(marcRecord(i)).append(RECORD_SEPARATOR);
+            expected.add(marcRecord(i));
+        }
+        final File file = tempFolder.newFile(name);
+        Files.write(file.toPath(), dump.toString().getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+
+    private static String marcId(final int number) {
+        return String.format("id%08d", number);
+    }
+
+    private static String marcRecord(final int number) {
+        return "00070noa a2200049zu 4500" + "001001100000" + "100000900011" +
+                FIELD_SEPARATOR + marcId(number) + FIELD_SEPARATOR +
+                "AB" + SUBFIELD_MARKER + "1" + "wert" + FIELD_SEPARATOR;
+    }
+
+    /**
+     * Collects the records passed to it.
+     */
+    private final class Collector extends DefaultObjectReceiver<String> {
+
+        @Override
+        public void process(final String record) {
+            records.add(record);
+        }
+
+    }
+
+}
@@ -23,6 +23,9 @@
 import static org.mockito.Mockito.never;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -258,6 +261,33 @@ public void processFields_shouldConcatenateContinuedFieldsAndReportAllImplDefine
         ordered.verify(fieldHandler).endDataField();
     }
 
+    @Test
+    public void processFields_shouldPassValueViewsToLazyFieldHandler() {
+        final byte[] data = asBytes("00051SIMPL2200035SYS110R" + "01160" +
+                "01296\u001e" + "AB\u001fX1\u001e" + "CD\u001fY2\u001fZ3\u001e" +
+                "\u001d");
+        record = new Record(data);
+        final RecordingLazyFieldHandler lazyFieldHandler = new RecordingLazyFieldHandler(true);
+
+        record.processFields(lazyFieldHandler);
+
+        assertEquals(Arrays.asList("start 011AB", "X=1@39", "end",
+                "start 012CD", "Y=2@45", "Z=3@48", "end"), lazyFieldHandler.events);
+    }
+
+    @Test
+    public void processFields_shouldNotReadValuesOfFieldsSkippedByLazyFieldHandler() {
+        final byte[] data = asBytes("00051SIMPL2200035SYS110R" + "01160" +
+                "01296\u001e" + "AB\u001fX1\u001e" + "CD\u001fY2\u001fZ3\u001e" +
+                "\u001d");
+        record = new Record(data);
+        final RecordingLazyFieldHandler lazyFieldHandler = new RecordingLazyFieldHandler(false);
+
+        record.processFields(lazyFieldHandler);
+
+        assertEquals(Arrays.asList("start 011AB", "start 012CD"), lazyFieldHandler.events);
+    }
+
     private static byte[] asBytes(final String str) {
         return str.getBytes(Charset.forName("UTF-8"));
     }
@@ -266,4 +296,47 @@ private static char[] asChars(final String str) {
         return str.toCharArray();
     }
 
+    /**
+     * Records the events of a {@link LazyFieldHandler}. Values are recorded
+     * with their position in the record.
+     */
+    private static final class RecordingLazyFieldHandler implements LazyFieldHandler {
+
+        private final List<String> events = new ArrayList<>();
+        private final boolean processDataFields;
+
+        RecordingLazyFieldHandler(final boolean processDataFields) {
+            this.processDataFields = processDataFields;
+        }
+
+        @Override
+        public void referenceField(final char[] tag, final char[] implDefinedPart,
+                final FieldValue value) {
+            events.add(String.valueOf(tag) + "=" + value.decode());
+        }
+
+        @Override
+        public boolean startDataField(final char[] tag, final char[] implDefinedPart,
+                final char[] indicators) {
+            events.add("start " + String.valueOf(tag) + String.valueOf(indicators));
+            return processDataFields;
+        }
+
+        @Override
+        public void endDataField() {
+            events.add("end");
+        }
+
+        @Override
+        public void additionalImplDefinedPart(final char[] implDefinedPart) {
+            events.add("implDefinedPart " + String.valueOf(implDefinedPart));
+        }
+
+        @Override
+        public void data(final char[] identifier, final FieldValue value) {
+            events.add(String.valueOf(identifier) + "=" + value.decode() + "@" + value.getStart());
+        }
+
+    }
+
 }
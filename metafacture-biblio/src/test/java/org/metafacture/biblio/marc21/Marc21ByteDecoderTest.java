@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.biblio.marc21;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.metafacture.framework.StreamReceiver;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Tests for class {@link Marc21ByteDecoder}.
+ */
+public final class Marc21ByteDecoderTest {
+
+    private static final char SUBFIELD_MARKER = '\u001f';
+    private static final char FIELD_SEPARATOR = '\u001e';
+    private static final char RECORD_SEPARATOR = '\u001d';
+
+    private static final String RECORD_ID = "identifier";
+
+    private static final String RECORD_LABEL = "00070noa a2200049zu 4500";
+    private static final String DIRECTORY = "001001100000" + "100000900011";
+    private static final String DATA = RECORD_ID + FIELD_SEPARATOR
+            + "AB" + SUBFIELD_MARKER + "1" + "wert" + FIELD_SEPARATOR;
+    private static final String RECORD = RECORD_LABEL + DIRECTORY
+            + FIELD_SEPARATOR + DATA + RECORD_SEPARATOR;
+
+    private Marc21ByteDecoder marc21ByteDecoder;
+
+    @Mock
+    private StreamReceiver receiver;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        marc21ByteDecoder = new Marc21ByteDecoder();
+        marc21ByteDecoder.setEmitLeaderAsWhole(true);
+        marc21ByteDecoder.setReceiver(receiver);
+    }
+
+    @After
+    public void cleanup() {
+        marc21ByteDecoder.closeStream();
+    }
+
+    @Test
+    public void shouldProcessRecordInSliceOfBuffer() {
+        final byte[] bytes = ("prefix" + RECORD + "suffix")
+                .getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, 6, RECORD.length())
+                .slice();
+
+        marc21ByteDecoder.process(buffer);
+
+        final InOrder ordered = inOrder(receiver);
+        ordered.verify(receiver).startRecord(RECORD_ID);
+        ordered.verify(receiver).startEntity("leader");
+        ordered.verify(receiver).literal("leader", RECORD_LABEL);
+        ordered.verify(receiver).endEntity();
+        ordered.verify(receiver).literal("001", RECORD_ID);
+        ordered.verify(receiver).startEntity("100AB");
+        ordered.verify(receiver).literal("1", "wert");
+        ordered.verify(receiver).endEntity();
+        ordered.verify(receiver).endRecord();
+    }
+
+    @Test
+    public void shouldIgnoreEmptyBuffers() {
+        marc21ByteDecoder.process(ByteBuffer.allocate(0));
+
+        verifyZeroInteractions(receiver);
+    }
+
+}
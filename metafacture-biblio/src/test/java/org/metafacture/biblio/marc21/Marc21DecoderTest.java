@@ -16,6 +16,7 @@
 package org.metafacture.biblio.marc21;
 
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 import org.junit.After;
@@ -101,6 +102,27 @@ public void shouldProcessMarc21Record() {
         ordered.verify(receiver).endRecord();
     }
 
+    @Test
+    public void shouldOnlyDecodeSelectedFields() {
+        marc21Decoder.setEmitLeaderAsWhole(true);
+        marc21Decoder.setFields("002|2..");
+
+        marc21Decoder.process(RECORD);
+
+        final InOrder ordered = inOrder(receiver);
+        ordered.verify(receiver).startRecord(RECORD_ID);
+        ordered.verify(receiver).startEntity("leader");
+        ordered.verify(receiver).literal("leader", RECORD_LABEL);
+        ordered.verify(receiver).endEntity();
+        ordered.verify(receiver).literal("002", CONTROLFIELD_VALUE);
+        ordered.verify(receiver).startEntity("200CD");
+        ordered.verify(receiver).literal("2", "value2");
+        ordered.verify(receiver).literal("3", "value3");
+        ordered.verify(receiver).endEntity();
+        ordered.verify(receiver).endRecord();
+        verifyNoMoreInteractions(receiver);
+    }
+
     @Test
     public void shouldIgnoreEmptyRecords() {
         marc21Decoder.process("");
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+/**
+ * Provides the functions of a script to several threads. Script engines are
+ * generally not thread-safe, so every thread gets its own script state unless
+ * the engine factory declares that engines may be shared between threads.
+ * <p>
+ * The script is read once when the pool is created, so a new pool picks up
+ * changes to the script file. If the engine implements
+ * {@link Compilable}, the script is compiled once per pool and the compiled
+ * script is evaluated in a separate {@link ScriptContext} for every thread.
+ * Functions are then called through small call scripts which are compiled
+ * once per function and number of arguments. Engines which cannot compile
+ * scripts are created and evaluate the script once per thread.
+ * <p>
+ * The script is evaluated in the creating thread to report errors early;
+ * the script state of other threads is created on first use.
+ */
+public final class ScriptEnginePool {
+
+    public static final String JAVASCRIPT = "JavaScript";
+
+    private static final String THREADING = "THREADING";
+    private static final String ARGUMENT = "__mf_arg";
+
+    private static final ScriptEngineManager MANAGER = new ScriptEngineManager();
+
+    private final String engineName;
+    private final String location;
+    private final String source;
+    private final ScriptEngine engine;
+    private final CompiledScript compiledScript;
+    private final boolean shared;
+    private final ThreadLocal<ScriptContext> contexts = new ThreadLocal<>();
+    private final ThreadLocal<Invocable> invocables = new ThreadLocal<>();
+    private final Map<String, CompiledScript> calls = new ConcurrentHashMap<>();
+
+    private ScriptEnginePool(final String engineName, final String location,
+            final String source) throws ScriptException {
+        this.engineName = engineName;
+        this.location = location;
+        this.source = source;
+        engine = newEngine();
+        shared = engine.getFactory().getParameter(THREADING) != null;
+        if (shared || !(engine instanceof Compilable)) {
+            compiledScript = null;
+            engine.eval(source);
+            invocables.set((Invocable) engine);
+        } else {
+            compiledScript = ((Compilable) engine).compile(source);
+            contexts.set(createContext());
+        }
+    }
+    /**
+     * Creates a pool for a script file.
+     *
+     * @param engineName the name of the script engine (see
+     *                   {@link ScriptEngineManager#getEngineByName(String)})
+     * @param location file name or resource location of the script
+     * @return the pool
+     * @throws FileNotFoundException if the script cannot be found
+     * @throws ScriptException if the engine is not available or the script
+     *                         contains errors
+     */
+    public static ScriptEnginePool forFile(final String engineName,
+            final String location) throws FileNotFoundException, ScriptException {
+        final String source;
+        try (Reader reader = ResourceUtil.getReader(location)) {
+            source = ResourceUtil.readAll(reader);
+        } catch (final FileNotFoundException e) {
+            throw e;
+        } catch (final IOException e) {
+            throw new ScriptException("Error reading script '" + location
+                    + "': " + e.getMessage());
+        }
+        return new ScriptEnginePool(engineName, location, source);
+    }
+
+    /**
+     * Creates a pool for a script given as source text.
+     *
+     * @param engineName the name of the script engine
+     * @param source the script
+     * @return the pool
+     * @throws ScriptException if the engine is not available or the script
+     *                         contains errors
+     */
+    public static ScriptEnginePool forSource(final String engineName,
+            final String source) throws ScriptException {
+        return new ScriptEnginePool(engineName, null, source);
+    }
+
+    /**
+     * Calls a function of the script using the script state of the calling
+     * thread.
+     *
+     * @param name name of the function
+     * @param args arguments passed to the function
+     * @return the value returned by the function
+     * @throws ScriptException if the function throws an error
+     * @throws NoSuchMethodException if the script has no such function
+     */
+    public Object invokeFunction(final String name, final Object... args)
+            throws ScriptException, NoSuchMethodException {
+        if (compiledScript == null) {
+            return getInvocable().invokeFunction(name, args);
+        }
+        ScriptContext context = contexts.get();
+        if (context == null) {
+            context = createContext();
+            contexts.set(context);
+        }
+        if (context.getAttribute(name, ScriptContext.ENGINE_SCOPE) == null) {
+            throw new NoSuchMethodException("No such function: " + name);
+        }
+        final Bindings bindings = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        for (int i = 0; i < args.length; ++i) {
+            bindings.put(ARGUMENT + i, args[i]);
+        }
+        try {
+            return getCall(name, args.length).eval(context);
+        } finally {
+            for (int i = 0; i < args.length; ++i) {
+                bindings.remove(ARGUMENT + i);
+            }
+        }
+    }
+
+    private Invocable getInvocable() throws ScriptException {
+        if (shared) {
+            return (Invocable) engine;
+        }
+        Invocable invocable = invocables.get();
+        if (invocable == null) {
+            final ScriptEngine threadEngine = newEngine();
+            threadEngine.eval(source);
+            invocable = (Invocable) threadEngine;
+            invocables.set(invocable);
+        }
+        return invocable;
+    }
+
+    private ScriptContext createContext() throws ScriptException {
+        final ScriptContext context = new SimpleScriptContext();
+        context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+        context.setBindings(engine.getBindings(ScriptContext.GLOBAL_SCOPE),
+                ScriptContext.GLOBAL_SCOPE);
+        if (location != null) {
+            context.setAttribute(ScriptEngine.FILENAME, location, ScriptContext.ENGINE_SCOPE);
+        }
+        compiledScript.eval(context);
+        return context;
+    }
+
+    private CompiledScript getCall(final String name, final int argCount)
+            throws ScriptException {
+        final String key = name + "/" + argCount;
+        CompiledScript call = calls.get(key);
+        if (call == null) {
+            final StringBuilder callSource = new StringBuilder(name).append('(');
+            for (int i = 0; i < argCount; ++i) {
+                if (i > 0) {
+                    callSource.append(", ");
+                }
+                callSource.append(ARGUMENT).append(i);
+            }
+            callSource.append(')');
+            synchronized (engine) {
+                call = ((Compilable) engine).compile(callSource.toString());
+            }
+            calls.putIfAbsent(key, call);
+        }
+        return call;
+    }
+
+    private ScriptEngine newEngine() throws ScriptException {
+        final ScriptEngine newEngine;
+        synchronized (MANAGER) {
+            newEngine = MANAGER.getEngineByName(engineName);
+        }
+        if (newEngine == null) {
+            throw new ScriptException("No script engine found for '" + engineName + "'");
+        }
+        if (!(newEngine instanceof Invocable)) {
+            throw new ScriptException("Script engine '" + engineName
+                    + "' cannot invoke functions");
+        }
+        if (location != null) {
+            newEngine.put(ScriptEngine.FILENAME, location);
+        }
+        return newEngine;
+    }
+
+}
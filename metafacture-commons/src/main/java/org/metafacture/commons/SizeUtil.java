@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utility functions for sizes given in bytes.
+ */
+public final class SizeUtil {
+
+    public static final long KILOBYTES = 1024L;
+    public static final long MEGABYTES = 1024L * KILOBYTES;
+    public static final long GIGABYTES = 1024L * MEGABYTES;
+    public static final long TERABYTES = 1024L * GIGABYTES;
+
+    private static final Pattern SIZE_PATTERN =
+            Pattern.compile("\\s*(\\d+)\\s*([KMGT]?)B?\\s*");
+
+    private SizeUtil() {
+        // No instances allowed
+    }
+
+    /**
+     * Parses a size such as &quot;64MB&quot;. The number may be followed by
+     * one of the units B, K(B), M(B), G(B) or T(B). Units are case-insensitive
+     * and are powers of 1024. A number without unit is a size in bytes.
+     *
+     * @param size the size to parse
+     * @return the size in bytes
+     * @throws IllegalArgumentException if {@code size} is not a valid size
+     */
+    public static long parseSize(final String size) {
+        final Matcher matcher = SIZE_PATTERN.matcher(size.toUpperCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("invalid size: " + size);
+        }
+        final long value = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "K":
+                return Math.multiplyExact(value, KILOBYTES);
+            case "M":
+                return Math.multiplyExact(value, MEGABYTES);
+            case "G":
+                return Math.multiplyExact(value, GIGABYTES);
+            case "T":
+                return Math.multiplyExact(value, TERABYTES);
+            default:
+                return value;
+        }
+    }
+
+}
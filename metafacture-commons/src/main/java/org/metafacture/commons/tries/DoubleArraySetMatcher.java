@@ -0,0 +1,535 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons.tries;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+
+import org.metafacture.commons.tries.SetMatcher.Match;
+
+/**
+ * Implementation of the Aho-Corasick algorithm for string values which stores
+ * the automaton in a double array. Compared to {@link SetMatcher} the
+ * automaton needs only a few ints per state and no objects.
+ * <p>
+ * The automaton is kept in a single {@link ByteBuffer}. It can be written to
+ * a file once and memory-mapped with {@link #load(File)} afterwards, so that
+ * large dictionaries neither need to be rebuilt nor be held on the heap.
+ * Instances are immutable and can be shared between threads.
+ * <p>
+ * {@link #match(String)} returns the same matches in the same order as
+ * {@link SetMatcher#match(String)} and {@link #replaceIn(String)} produces the
+ * same result as {@link SetReplacer#replaceIn(String)}.
+ */
+public final class DoubleArraySetMatcher {
+
+    private static final int MAGIC = 0x4d464441; // "MFDA"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final int ALPHABET_SIZE = Character.MAX_VALUE + 1;
+    private static final int SLOT_ARRAYS = 6;
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final ByteBuffer buffer;
+    private final IntBuffer alphabet;
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final IntBuffer failure;
+    private final IntBuffer outputLink;
+    private final IntBuffer value;
+    private final IntBuffer depth;
+    private final IntBuffer valueOffsets;
+    private final CharBuffer valueChars;
+    private final int slotCount;
+
+    private DoubleArraySetMatcher(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Data does not contain a set matcher");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported set matcher version: "
+                    + buffer.getInt(Integer.BYTES));
+        }
+        slotCount = buffer.getInt(2 * Integer.BYTES);
+        final int valueCount = buffer.getInt(3 * Integer.BYTES);
+        final int valueCharCount = buffer.getInt(4 * Integer.BYTES);
+        if (slotCount < 1 || valueCount < 0 || valueCharCount < 0
+                || buffer.capacity() != size(slotCount, valueCount, valueCharCount)) {
+            throw new IOException("Invalid set matcher header");
+        }
+
+        int offset = HEADER_SIZE;
+        alphabet = intView(buffer, offset, ALPHABET_SIZE);
+        offset += ALPHABET_SIZE * Integer.BYTES;
+        base = intView(buffer, offset, slotCount);
+        offset += slotCount * Integer.BYTES;
+        check = intView(buffer, offset, slotCount);
+        offset += slotCount * Integer.BYTES;
+        failure = intView(buffer, offset, slotCount);
+        offset += slotCount * Integer.BYTES;
+        outputLink = intView(buffer, offset, slotCount);
+        offset += slotCount * Integer.BYTES;
+        value = intView(buffer, offset, slotCount);
+        offset += slotCount * Integer.BYTES;
+        depth = intView(buffer, offset, slotCount);
+        offset += slotCount * Integer.BYTES;
+        valueOffsets = intView(buffer, offset, valueCount + 1);
+        offset += (valueCount + 1) * Integer.BYTES;
+        valueChars = ((ByteBuffer) buffer.duplicate().position(offset)).slice().asCharBuffer();
+    }
+
+    /**
+     * Builds an automaton for a set of keys and their replacement values.
+     *
+     * @param entries the keys and values
+     * @return the automaton
+     */
+    public static DoubleArraySetMatcher build(final Map<String, String> entries) {
+        final SetMatcher<String> matcher = new SetMatcher<>();
+        for (final Entry<String, String> entry : entries.entrySet()) {
+            matcher.put(entry.getKey(), entry.getValue());
+        }
+        try {
+            return new DoubleArraySetMatcher(new Builder(matcher.getRoot()).build());
+        } catch (final IOException e) {
+            throw new IllegalStateException("Built an invalid set matcher", e);
+        }
+    }
+
+    /**
+     * Memory-maps an automaton which was written with
+     * {@link #writeTo(OutputStream)}.
+     *
+     * @param file the file to map
+     * @return the automaton
+     * @throws IOException if the file cannot be read or does not contain an
+     *                     automaton
+     */
+    public static DoubleArraySetMatcher load(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Set matcher file too large: " + file);
+            }
+            return new DoubleArraySetMatcher(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads an automaton which was written with {@link #writeTo(OutputStream)}
+     * into the heap. The stream is not closed.
+     *
+     * @param in the stream to read from
+     * @return the automaton
+     * @throws IOException if the stream cannot be read or does not contain an
+     *                     automaton
+     */
+    public static DoubleArraySetMatcher readFrom(final InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(in);
+        final byte[] header = new byte[HEADER_SIZE];
+        dataIn.readFully(header);
+        final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        if (headerBuffer.getInt(0) != MAGIC) {
+            throw new IOException("Stream does not contain a set matcher");
+        }
+        final long size = size(headerBuffer.getInt(2 * Integer.BYTES),
+                headerBuffer.getInt(3 * Integer.BYTES), headerBuffer.getInt(4 * Integer.BYTES));
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid set matcher header");
+        }
+        final byte[] data = new byte[(int) size];
+        System.arraycopy(header, 0, data, 0, HEADER_SIZE);
+        dataIn.readFully(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        return new DoubleArraySetMatcher(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Writes the automaton to a stream. The stream is not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final ByteBuffer data = buffer.duplicate();
+        data.clear();
+        final byte[] chunk = new byte[8192];
+        while (data.hasRemaining()) {
+            final int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Finds all occurrences of the keys in a text.
+     *
+     * @param text the text to search
+     * @return the matches in the order of {@link SetMatcher#match(String)}
+     */
+    public List<Match<String>> match(final String text) {
+        final List<Match<String>> matches = new ArrayList<Match<String>>();
+
+        int state = ROOT;
+        final int length = text.length();
+        int index = 0;
+
+        while (index < length) {
+            final int next = next(state, text.charAt(index));
+            if (next != NONE) {
+                state = next;
+            } else if (state != ROOT) {
+                state = failure.get(state);
+                continue;
+            }
+            ++index;
+            int output = value.get(state) != NONE ? state : outputLink.get(state);
+            while (output != NONE) {
+                final int outputDepth = depth.get(output);
+                matches.add(new Match<String>(getValue(value.get(output)),
+                        index - outputDepth, outputDepth));
+                output = outputLink.get(output);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Replaces all occurrences of the keys in a text by their values.
+     * Overlapping occurrences are resolved leftmost-longest.
+     *
+     * @param text the text in which keys are replaced
+     * @return the text with the replacements or {@code text} itself if it
+     *         contains no key
+     */
+    public String replaceIn(final String text) {
+        final int length = text.length();
+        StringBuilder builder = null;
+        int lastCut = 0;
+
+        int state = ROOT;
+        int candidate = NONE;
+        int candidateStart = 0;
+        int index = 0;
+        while (true) {
+            if (index < length) {
+                final int next = next(state, text.charAt(index));
+                if (next != NONE) {
+                    state = next;
+                } else if (state != ROOT) {
+                    state = failure.get(state);
+                    continue;
+                }
+                ++index;
+
+                final int match = value.get(state) != NONE ? state : outputLink.get(state);
+                if (match != NONE) {
+                    final int start = index - depth.get(match);
+                    if (candidate == NONE || start < candidateStart || start == candidateStart
+                            && depth.get(match) > depth.get(candidate)) {
+                        candidate = match;
+                        candidateStart = start;
+                    }
+                }
+                // Wait while a longer match starting at or before the
+                // candidate is still possible
+                if (candidate == NONE || index - depth.get(state) <= candidateStart) {
+                    continue;
+                }
+            } else if (candidate == NONE) {
+                break;
+            }
+
+            final int valueIndex = value.get(candidate);
+            final int valueStart = valueOffsets.get(valueIndex);
+            final int valueEnd = valueOffsets.get(valueIndex + 1);
+            if (builder == null) {
+                builder = new StringBuilder(length + valueEnd - valueStart);
+            }
+            builder.append(text, lastCut, candidateStart);
+            builder.append(valueChars, valueStart, valueEnd);
+            lastCut = candidateStart + depth.get(candidate);
+
+            // Rescan the text following the replaced key to find the
+            // matches starting there
+            index = lastCut;
+            state = ROOT;
+            candidate = NONE;
+        }
+
+        if (builder == null) {
+            return text;
+        }
+        builder.append(text, lastCut, length);
+        return builder.toString();
+    }
+
+    /**
+     * @return number of slots in the double array
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    private int next(final int state, final char c) {
+        final int code = alphabet.get(c);
+        if (code == 0) {
+            return NONE;
+        }
+        final int slot = base.get(state) + code;
+        if (slot < slotCount && check.get(slot) == state) {
+            return slot;
+        }
+        return NONE;
+    }
+
+    private String getValue(final int valueIndex) {
+        final int start = valueOffsets.get(valueIndex);
+        final int end = valueOffsets.get(valueIndex + 1);
+        return valueChars.subSequence(start, end).toString();
+    }
+
+    private static long size(final int slotCount, final int valueCount,
+            final int valueCharCount) {
+        return HEADER_SIZE + (long) ALPHABET_SIZE * Integer.BYTES
+                + (long) SLOT_ARRAYS * slotCount * Integer.BYTES
+                + ((long) valueCount + 1) * Integer.BYTES
+                + (long) valueCharCount * Character.BYTES;
+    }
+
+    private static IntBuffer intView(final ByteBuffer buffer, final int offset,
+            final int length) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length * Integer.BYTES);
+        return view.slice().asIntBuffer();
+    }
+
+    /**
+     * Converts a prepared {@link SetMatcher} automaton into a double array.
+     */
+    private static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        // Give up on free slots in densely used regions after this many
+        // unsuccessful attempts to place the children of a state there
+        private static final int MAX_ATTEMPTS = 64;
+
+        private final ACNode<String> root;
+        private final List<ACNode<String>> states = new ArrayList<>();
+        private final Map<ACNode<String>, Integer> slots = new IdentityHashMap<>();
+        private final int[] alphabet = new int[ALPHABET_SIZE];
+        private final BitSet used = new BitSet();
+
+        private int[] base = new int[INITIAL_CAPACITY];
+        private int[] check = new int[INITIAL_CAPACITY];
+        private int slotCount = 1;
+        private int searchStart = 1;
+
+        Builder(final ACNode<String> root) {
+            this.root = root;
+        }
+
+        ByteBuffer build() {
+            collectStates();
+            createAlphabet();
+
+            Arrays.fill(check, NONE);
+            slots.put(root, Integer.valueOf(ROOT));
+            used.set(ROOT);
+            for (final ACNode<String> state : states) {
+                placeChildren(state);
+            }
+
+            final List<String> values = new ArrayList<>();
+            final Map<String, Integer> valueIndexes = new HashMap<>();
+            final int[] failure = new int[slotCount];
+            final int[] outputLink = new int[slotCount];
+            final int[] value = new int[slotCount];
+            final int[] depth = new int[slotCount];
+            Arrays.fill(value, NONE);
+            Arrays.fill(outputLink, NONE);
+            for (final ACNode<String> state : states) {
+                // States are in breadth-first order so failure states come first
+                final int slot = slots.get(state).intValue();
+                final int failureSlot = state == root ? ROOT
+                        : slots.get(state.getFailure()).intValue();
+                failure[slot] = failureSlot;
+                if (failureSlot != ROOT) {
+                    outputLink[slot] = value[failureSlot] != NONE ? failureSlot
+                            : outputLink[failureSlot];
+                }
+                depth[slot] = state.getDepth();
+                if (state.getValue() != null) {
+                    Integer valueIndex = valueIndexes.get(state.getValue());
+                    if (valueIndex == null) {
+                        valueIndex = Integer.valueOf(values.size());
+                        valueIndexes.put(state.getValue(), valueIndex);
+                        values.add(state.getValue());
+                    }
+                    value[slot] = valueIndex.intValue();
+                }
+            }
+
+            int valueCharCount = 0;
+            for (final String str : values) {
+                valueCharCount += str.length();
+            }
+            final long size = size(slotCount, values.size(), valueCharCount);
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many keys for a set matcher");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(slotCount);
+            buffer.putInt(values.size());
+            buffer.putInt(valueCharCount);
+            buffer.asIntBuffer().put(alphabet);
+            buffer.position(buffer.position() + ALPHABET_SIZE * Integer.BYTES);
+            for (final int[] array : new int[][] {base, check, failure, outputLink, value, depth}) {
+                buffer.asIntBuffer().put(array, 0, slotCount);
+                buffer.position(buffer.position() + slotCount * Integer.BYTES);
+            }
+            int offset = 0;
+            for (final String str : values) {
+                buffer.putInt(offset);
+                offset += str.length();
+            }
+            buffer.putInt(offset);
+            for (final String str : values) {
+                for (int i = 0; i < str.length(); ++i) {
+                    buffer.putChar(str.charAt(i));
+                }
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        private void collectStates() {
+            final Queue<ACNode<String>> queue = new ArrayDeque<>();
+            queue.add(root);
+            while (!queue.isEmpty()) {
+                final ACNode<String> state = queue.poll();
+                states.add(state);
+                queue.addAll(state.getNext());
+            }
+        }
+
+        /**
+         * Assigns small codes to frequent characters to keep the double
+         * array dense.
+         */
+        private void createAlphabet() {
+            final int[] counts = new int[ALPHABET_SIZE];
+            for (final ACNode<String> state : states) {
+                for (final Entry<Character, ACNode<String>> link : state.getLinks()) {
+                    counts[link.getKey().charValue()] += 1;
+                }
+            }
+            final List<Integer> chars = new ArrayList<>();
+            for (int c = 0; c < ALPHABET_SIZE; ++c) {
+                if (counts[c] > 0) {
+                    chars.add(Integer.valueOf(c));
+                }
+            }
+            chars.sort(Comparator.comparingInt((Integer c) -> counts[c.intValue()]).reversed());
+            for (int i = 0; i < chars.size(); ++i) {
+                alphabet[chars.get(i).intValue()] = i + 1;
+            }
+        }
+
+        private void placeChildren(final ACNode<String> state) {
+            final List<Entry<Character, ACNode<String>>> links = new ArrayList<>(state.getLinks());
+            if (links.isEmpty()) {
+                return;
+            }
+            final int[] codes = new int[links.size()];
+            for (int i = 0; i < codes.length; ++i) {
+                codes[i] = alphabet[links.get(i).getKey().charValue()];
+            }
+
+            final int minCode = Arrays.stream(codes).min().getAsInt();
+            int position = used.nextClearBit(Math.max(searchStart, minCode + 1));
+            int attempts = 0;
+            while (!fits(position - minCode, codes)) {
+                position = used.nextClearBit(position + 1);
+                attempts += 1;
+            }
+            if (attempts > MAX_ATTEMPTS) {
+                searchStart = position;
+            }
+
+            final int stateBase = position - minCode;
+            final int stateSlot = slots.get(state).intValue();
+            ensureCapacity(stateBase + Arrays.stream(codes).max().getAsInt() + 1);
+            base[stateSlot] = stateBase;
+            for (int i = 0; i < codes.length; ++i) {
+                final int slot = stateBase + codes[i];
+                check[slot] = stateSlot;
+                used.set(slot);
+                slots.put(links.get(i).getValue(), Integer.valueOf(slot));
+                slotCount = Math.max(slotCount, slot + 1);
+            }
+            searchStart = used.nextClearBit(searchStart);
+        }
+
+        private boolean fits(final int stateBase, final int[] codes) {
+            for (final int code : codes) {
+                if (used.get(stateBase + code)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (capacity > base.length) {
+                final int newLength = Math.max(capacity, base.length * 2);
+                final int oldLength = check.length;
+                base = Arrays.copyOf(base, newLength);
+                check = Arrays.copyOf(check, newLength);
+                Arrays.fill(check, oldLength, newLength, NONE);
+            }
+        }
+
+    }
+
+}
@@ -58,13 +58,9 @@ public void put(final String key, final T value) {
     }
 
     public List<Match<T>> match(final String text) {
-        if (!isPrepared) {
-            prepare();
-            isPrepared = true;
-        }
         final List<Match<T>> matches = new ArrayList<Match<T>>();
 
-        ACNode<T> node = root;
+        ACNode<T> node = getRoot();
         final int length = text.length();
         int index = 0;
 
@@ -82,6 +78,18 @@ public List<Match<T>> match(final String text) {
         return matches;
     }
 
+    /**
+     * Returns the root of the prepared automaton. No keys can be added
+     * afterwards.
+     */
+    ACNode<T> getRoot() {
+        if (!isPrepared) {
+            prepare();
+            isPrepared = true;
+        }
+        return root;
+    }
+
     private void collectMatches(final ACNode<T> node, final int index, final List<Match<T>> matches) {
         //direct hit or hit in chain of failure links?
         ACNode<T> tempNode = node;
@@ -15,15 +15,18 @@
  */
 package org.metafacture.commons.tries;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.metafacture.commons.tries.SetMatcher.Match;
-
 /**
+ * Replaces all occurrences of a set of keys in a text. Overlapping
+ * occurrences are resolved leftmost-longest: of all occurrences the one
+ * which starts first is replaced, and of those starting at the same
+ * position the longest one.
+ * <p>
+ * Replacements are made during a single Aho-Corasick scan of the text. If
+ * the text contains no key, it is returned unchanged without copying it.
+ *
  * @author Markus Michael Geipel
  *
  */
@@ -41,49 +44,75 @@ public void addReplacements(final Map<String, String> replacements) {
     }
 
     public String replaceIn(final String text) {
-        final List<SetMatcher.Match<String>> matches = matcher.match(text);
-        final StringBuilder builder = new StringBuilder();
-
+        final ACNode<String> root = matcher.getRoot();
+        final int length = text.length();
+        StringBuilder builder = null;
         int lastCut = 0;
 
-        Collections.sort(matches, new Comparator<SetMatcher.Match<String>>() {
-            @Override
-            public int compare(final Match<String> o1, final Match<String> o2) {
-                final int result;
-                final int delta = o1.getStart() - o2.getStart();
-                if (delta < 0) {
-                    result = -1;
-                } else if (delta > 0) {
-                    result = 1;
-                } else {
-                    if (o1.getLength() > o2.getLength()) {
-                        result = -1;
-                    } else {
-                        result = 1;
+        ACNode<String> node = root;
+        ACNode<String> candidate = null;
+        int candidateStart = 0;
+        int index = 0;
+        while (true) {
+            if (index < length) {
+                final ACNode<String> next = node.getNext(text.charAt(index));
+                if (next != null) {
+                    node = next;
+                } else if (node != root) {
+                    node = node.getFailure();
+                    continue;
+                }
+                ++index;
+
+                final ACNode<String> match = longestMatch(node, root);
+                if (match != null) {
+                    final int start = index - match.getDepth();
+                    if (candidate == null || start < candidateStart
+                            || start == candidateStart && match.getDepth() > candidate.getDepth()) {
+                        candidate = match;
+                        candidateStart = start;
                     }
                 }
-                return result;
+                // Wait while a longer match starting at or before the
+                // candidate is still possible
+                if (candidate == null || index - node.getDepth() <= candidateStart) {
+                    continue;
+                }
+            } else if (candidate == null) {
+                break;
             }
 
-        });
-
-        for (SetMatcher.Match<String> match : matches) {
-
-            if (match.getStart() < lastCut) {
-                continue;
+            if (builder == null) {
+                builder = new StringBuilder(length + candidate.getValue().length());
             }
-
-            // System.out.println(match.getStart() + " "+ match.getValue() +" "+
-            // match.getLength());
-
-            builder.append(text.substring(lastCut, match.getStart()));
-            builder.append(match.getValue());
-
-            lastCut = match.getStart() + match.getLength();
+            builder.append(text, lastCut, candidateStart);
+            builder.append(candidate.getValue());
+            lastCut = candidateStart + candidate.getDepth();
+
+            // Rescan the text following the replaced key to find the
+            // matches starting there
+            index = lastCut;
+            node = root;
+            candidate = null;
         }
-        builder.append(text.substring(lastCut, text.length()));
 
+        if (builder == null) {
+            return text;
+        }
+        builder.append(text, lastCut, length);
         return builder.toString();
     }
 
+    private static ACNode<String> longestMatch(final ACNode<String> node,
+            final ACNode<String> root) {
+        ACNode<String> tempNode = node;
+        while (tempNode != root) {
+            if (tempNode.getValue() != null) {
+                return tempNode;
+            }
+            tempNode = tempNode.getFailure();
+        }
+        return null;
+    }
+
 }
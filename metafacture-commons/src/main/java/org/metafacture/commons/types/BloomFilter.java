@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons.types;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A Bloom filter for strings. The filter answers whether a string is
+ * <em>possibly</em> contained in a set or <em>definitely not</em>. The rate
+ * of false positives is determined when the filter is created.
+ * <p>
+ * Filters can be written to and read from streams so that they do not need to
+ * be rebuilt for large, static key sets.
+ */
+public final class BloomFilter {
+
+    private static final int MAGIC = 0x4d464246; // "MFBF"
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(final long[] bits, final int hashCount) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Creates an empty filter which is sized for the expected number of
+     * insertions and the desired false positive rate.
+     *
+     * @param expectedInsertions number of strings which will be added
+     * @param falsePositiveRate  the desired false positive rate (exclusively
+     *                           between 0 and 1)
+     * @return a new filter
+     */
+    public static BloomFilter create(final long expectedInsertions,
+            final double falsePositiveRate) {
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException(
+                    "falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        final long n = Math.max(1, expectedInsertions);
+        final long bitCount = Math.max(Long.SIZE, (long) Math.ceil(
+                -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        final long wordCount = (bitCount + Long.SIZE - 1) / Long.SIZE;
+        if (wordCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large");
+        }
+        final int hashCount = Math.max(1,
+                (int) Math.round((double) wordCount * Long.SIZE / n * Math.log(2)));
+        return new BloomFilter(new long[(int) wordCount], hashCount);
+    }
+
+    /**
+     * Reads a filter which was written with {@link #writeTo(OutputStream)}.
+     * The stream is not closed.
+     *
+     * @param in the stream to read from
+     * @return the filter
+     * @throws IOException if the stream cannot be read or does not contain a
+     *                     filter
+     */
+    public static BloomFilter readFrom(final InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(in);
+        if (dataIn.readInt() != MAGIC) {
+            throw new IOException("Stream does not contain a bloom filter");
+        }
+        final int hashCount = dataIn.readInt();
+        final int wordCount = dataIn.readInt();
+        if (hashCount < 1 || wordCount < 1) {
+            throw new IOException("Invalid bloom filter header");
+        }
+        final long[] bits = new long[wordCount];
+        for (int i = 0; i < wordCount; ++i) {
+            bits[i] = dataIn.readLong();
+        }
+        return new BloomFilter(bits, hashCount);
+    }
+
+    /**
+     * Writes the filter to a stream. The stream is flushed but not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(hashCount);
+        dataOut.writeInt(bits.length);
+        for (final long word : bits) {
+            dataOut.writeLong(word);
+        }
+        dataOut.flush();
+    }
+
+    public void put(final CharSequence key) {
+        final long hash = hash(key);
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; ++i) {
+            final long index = bitIndex(hash1 + i * hash2);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    public boolean mightContain(final CharSequence key) {
+        final long hash = hash(key);
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; ++i) {
+            final long index = bitIndex(hash1 + i * hash2);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    private long bitIndex(final int combinedHash) {
+        return (combinedHash & 0xffffffffL) % bitCount;
+    }
+
+    /**
+     * Computes a 64 bit FNV-1a hash over the characters of a string and mixes
+     * the result with the MurmurHash3 finalizer.
+     *
+     * @param key the string to hash
+     * @return the hash value
+     */
+    static long hash(final CharSequence key) {
+        long hash = FNV_OFFSET_BASIS;
+        final int length = key.length();
+        for (int i = 0; i < length; ++i) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.ScriptException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for class {@link ScriptEnginePool}.
+ */
+public final class ScriptEnginePoolTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final String SCRIPT =
+            "var count = 0; function process(value) { count += 1; return value + count; }";
+
+    @Test
+    public void shouldInvokeFunctionsOfScript() throws Exception {
+        final ScriptEnginePool pool = ScriptEnginePool.forSource(
+                ScriptEnginePool.JAVASCRIPT, SCRIPT);
+
+        assertEquals("a1", pool.invokeFunction("process", "a"));
+        assertEquals("b2", pool.invokeFunction("process", "b"));
+    }
+
+    @Test
+    public void shouldInvokeFunctionsWithSeveralArguments() throws Exception {
+        final ScriptEnginePool pool = ScriptEnginePool.forSource(
+                ScriptEnginePool.JAVASCRIPT, "function join(a, b) { return a + '-' + b; }");
+
+        assertEquals("a-b", pool.invokeFunction("join", "a", "b"));
+        assertEquals("c-d", pool.invokeFunction("join", "c", "d"));
+    }
+
+    @Test
+    public void shouldUseSeparateScriptStateInOtherThreads() throws Exception {
+        final ScriptEnginePool pool = ScriptEnginePool.forSource(
+                ScriptEnginePool.JAVASCRIPT, SCRIPT);
+        pool.invokeFunction("process", "a");
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Object> otherResult = executor.submit(
+                    () -> pool.invokeFunction("process", "b"));
+
+            assertEquals("b1", otherResult.get());
+            assertEquals("c2", pool.invokeFunction("process", "c"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldReadEditedScriptFileForNewPool() throws Exception {
+        final File script = tempFolder.newFile("script.js");
+        Files.write(script.toPath(), "function version() { return 'v1'; }"
+                .getBytes(StandardCharsets.UTF_8));
+        final ScriptEnginePool oldPool = ScriptEnginePool.forFile(
+                ScriptEnginePool.JAVASCRIPT, script.getAbsolutePath());
+        Files.write(script.toPath(), "function version() { return 'v2'; }"
+                .getBytes(StandardCharsets.UTF_8));
+        final ScriptEnginePool newPool = ScriptEnginePool.forFile(
+                ScriptEnginePool.JAVASCRIPT, script.getAbsolutePath());
+
+        assertEquals("v1", oldPool.invokeFunction("version"));
+        assertEquals("v2", newPool.invokeFunction("version"));
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void shouldReportMissingFunction() throws Exception {
+        final ScriptEnginePool pool = ScriptEnginePool.forSource(
+                ScriptEnginePool.JAVASCRIPT, SCRIPT);
+
+        pool.invokeFunction("missing", "a");
+    }
+
+    @Test(expected = ScriptException.class)
+    public void shouldReportErrorsInScript() throws ScriptException {
+        ScriptEnginePool.forSource(ScriptEnginePool.JAVASCRIPT, "function (");
+    }
+
+    @Test(expected = ScriptException.class)
+    public void shouldReportMissingEngine() throws ScriptException {
+        ScriptEnginePool.forSource("no-such-engine", SCRIPT);
+    }
+
+}
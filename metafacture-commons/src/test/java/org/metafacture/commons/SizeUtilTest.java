@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SizeUtil}.
+ */
+public final class SizeUtilTest {
+
+    @Test
+    public void shouldParseSizeWithoutUnit() {
+        assertEquals(512L, SizeUtil.parseSize("512"));
+    }
+
+    @Test
+    public void shouldParseSizeWithUnit() {
+        assertEquals(64 * SizeUtil.MEGABYTES, SizeUtil.parseSize("64MB"));
+        assertEquals(8 * SizeUtil.KILOBYTES, SizeUtil.parseSize("8k"));
+        assertEquals(2 * SizeUtil.GIGABYTES, SizeUtil.parseSize("2 GB"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidSize() {
+        SizeUtil.parseSize("64 mega");
+    }
+
+}
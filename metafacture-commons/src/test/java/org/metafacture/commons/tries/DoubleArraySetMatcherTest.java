@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons.tries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for class {@link DoubleArraySetMatcher}.
+ */
+public final class DoubleArraySetMatcherTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindSameMatchesAsSetMatcher() {
+        final Map<String, String> entries = new HashMap<>();
+        entries.put("he", "1");
+        entries.put("she", "2");
+        entries.put("his", "3");
+        entries.put("hers", "4");
+        final SetMatcher<String> setMatcher = new SetMatcher<>();
+        entries.forEach(setMatcher::put);
+        final DoubleArraySetMatcher matcher = DoubleArraySetMatcher.build(entries);
+
+        final String text = "ushers and his sheep";
+        assertEquals(setMatcher.match(text).toString(), matcher.match(text).toString());
+    }
+
+    @Test
+    public void shouldReplaceLeftmostLongest() {
+        final Map<String, String> entries = new HashMap<>();
+        entries.put("sylt", "hawaii");
+        entries.put("apfel", "surfboard");
+        entries.put("krabben", "shirt");
+        entries.put("super krabben entsafter", "Mai Tai");
+        final DoubleArraySetMatcher matcher = DoubleArraySetMatcher.build(entries);
+
+        assertEquals("auf hawaii mit Mai Tai und surfboard",
+                matcher.replaceIn("auf sylt mit super krabben entsafter und apfel"));
+    }
+
+    @Test
+    public void shouldReturnTextWithoutMatches() {
+        final Map<String, String> entries = new HashMap<>();
+        entries.put("fünf", "5");
+        final DoubleArraySetMatcher matcher = DoubleArraySetMatcher.build(entries);
+        final String text = "zehn äpfel";
+
+        assertSame(text, matcher.replaceIn(text));
+    }
+
+    @Test
+    public void shouldReadWrittenAutomaton() throws IOException {
+        final Map<String, String> entries = new HashMap<>();
+        entries.put("fünf", "5");
+        entries.put("fünfzig", "50");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DoubleArraySetMatcher.build(entries).writeTo(out);
+
+        final DoubleArraySetMatcher matcher = DoubleArraySetMatcher.readFrom(
+                new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals("50 äpfel", matcher.replaceIn("fünfzig äpfel"));
+    }
+
+    @Test
+    public void shouldLoadMappedAutomaton() throws IOException {
+        final Map<String, String> entries = new HashMap<>();
+        entries.put("fünf", "5");
+        entries.put("fünfzig", "50");
+        final File file = tempFolder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            DoubleArraySetMatcher.build(entries).writeTo(out);
+        }
+
+        final DoubleArraySetMatcher matcher = DoubleArraySetMatcher.load(file);
+
+        assertEquals("5 äpfel", matcher.replaceIn("fünf äpfel"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectStreamWithoutAutomaton() throws IOException {
+        DoubleArraySetMatcher.readFrom(new ByteArrayInputStream(new byte[64]));
+    }
+
+}
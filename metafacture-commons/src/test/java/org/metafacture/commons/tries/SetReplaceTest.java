@@ -16,6 +16,7 @@
 package org.metafacture.commons.tries;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -56,4 +57,29 @@ public void testReplaceWithInclusion() {
         assertEquals("5 äpfel", setReplace.replaceIn("fünf äpfel"));
     }
 
+    @Test
+    public void testReplaceOverlappingKeys() {
+
+        final SetReplacer setReplace = new SetReplacer();
+
+        setReplace.addReplacement("a", "1");
+        setReplace.addReplacement("abcx", "2");
+        setReplace.addReplacement("b", "3");
+        setReplace.addReplacement("cd", "4");
+
+        assertEquals("134y", setReplace.replaceIn("abcdy"));
+        assertEquals("2d", setReplace.replaceIn("abcxd"));
+    }
+
+    @Test
+    public void testReturnTextWithoutMatches() {
+
+        final SetReplacer setReplace = new SetReplacer();
+        final String text = "nothing to replace";
+
+        setReplace.addReplacement("sylt", "hawaii");
+
+        assertSame(text, setReplace.replaceIn(text));
+    }
+
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.commons.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests for class {@link BloomFilter}.
+ */
+public final class BloomFilterTest {
+
+    private static final int KEY_COUNT = 10000;
+
+    @Test
+    public void shouldContainAllAddedKeys() {
+        final BloomFilter filter = BloomFilter.create(KEY_COUNT, 0.01);
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            filter.put("key" + i);
+        }
+
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            assertTrue(filter.mightContain("key" + i));
+        }
+    }
+
+    @Test
+    public void shouldKeepFalsePositiveRateNearConfiguredRate() {
+        final BloomFilter filter = BloomFilter.create(KEY_COUNT, 0.01);
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            filter.put("key" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            if (filter.mightContain("other" + i)) {
+                ++falsePositives;
+            }
+        }
+        assertTrue(falsePositives < KEY_COUNT * 0.02);
+    }
+
+    @Test
+    public void shouldNotContainKeysOfEmptyFilter() {
+        final BloomFilter filter = BloomFilter.create(0, 0.01);
+
+        assertFalse(filter.mightContain("key"));
+    }
+
+    @Test
+    public void shouldReadWrittenFilter() throws IOException {
+        final BloomFilter filter = BloomFilter.create(100, 0.01);
+        filter.put("key1");
+        filter.put("key2");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        final BloomFilter readFilter = BloomFilter.readFrom(
+                new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(filter.getBitCount(), readFilter.getBitCount());
+        assertEquals(filter.getHashCount(), readFilter.getHashCount());
+        assertTrue(readFilter.mightContain("key1"));
+        assertTrue(readFilter.mightContain("key2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidFalsePositiveRate() {
+        BloomFilter.create(100, 1.5);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectStreamWithoutFilter() throws IOException {
+        BloomFilter.readFrom(new ByteArrayInputStream(new byte[16]));
+    }
+
+}
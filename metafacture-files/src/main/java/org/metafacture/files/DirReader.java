@@ -15,11 +15,36 @@
  */
 package org.metafacture.files;
 
-import java.io.File;
-import java.io.FilenameFilter;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.ObjectReceiver;
 import org.metafacture.framework.annotations.Description;
 import org.metafacture.framework.annotations.In;
@@ -28,6 +53,13 @@
 
 /**
  * Reads a directory and emits all filenames found.
+ * <p>
+ * The names of files can be filtered with a regular expression or a glob
+ * pattern. Directories are not filtered. With more than one thread, the
+ * subdirectories of a recursive listing are read in parallel; the order of
+ * the emitted filenames does not change. In watch mode, the names of files
+ * which are created in the directory after it has been read are emitted as
+ * well. Files should be moved into the directory once they are complete.
  *
  * @author Markus Michael Geipel
  * @author Fabian Steeg (fsteeg)
@@ -39,45 +71,274 @@
 public final class DirReader extends DefaultObjectPipe<String, ObjectReceiver<String>> {
 
     private boolean recursive;
+    private boolean sort = true;
+    private int threads = 1;
+    private boolean watch;
+    private long watchTimeout;
 
-    private String filenameFilterPattern = null;
+    private Pattern filenamePattern;
+    private PathMatcher filenameGlob;
+
+    private Set<String> emittedFiles;
 
     public void setRecursive(final boolean recursive) {
         this.recursive = recursive;
     }
 
+    /**
+     * Sets a regular expression which the names of the emitted files must
+     * match.
+     *
+     * @param filenameFilterPattern regular expression for file names
+     */
     public void setFilenamePattern(final String filenameFilterPattern) {
-        this.filenameFilterPattern = filenameFilterPattern;
+        filenamePattern = Pattern.compile(filenameFilterPattern);
+    }
+
+    /**
+     * Sets a glob pattern, for instance {@code *.xml}, which the names of
+     * the emitted files must match.
+     *
+     * @param filenameGlob glob pattern for file names
+     */
+    public void setFilenameGlob(final String filenameGlob) {
+        this.filenameGlob = FileSystems.getDefault().getPathMatcher("glob:" + filenameGlob);
+    }
+
+    /**
+     * Sets whether the entries of each directory are emitted in the order
+     * of their names. Sorting can be switched off to save time on very large
+     * directories. The default is true.
+     *
+     * @param sort true to sort directory entries
+     */
+    public void setSort(final boolean sort) {
+        this.sort = sort;
+    }
+
+    /**
+     * Sets the number of threads which read subdirectories in a recursive
+     * listing. The default is 1.
+     *
+     * @param threads number of threads
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether files which are created in the directory (and its
+     * subdirectories if reading recursively) after reading it are emitted
+     * as well. The reader then waits for new files until the
+     * {@link #setWatchTimeout(long) watch timeout} expires. The default is
+     * false.
+     *
+     * @param watch true to watch the directory for new files
+     */
+    public void setWatch(final boolean watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Sets the time in milliseconds after which watching ends if no new file
+     * has been created. The default is 0 which watches until the thread is
+     * interrupted.
+     *
+     * @param watchTimeout timeout in milliseconds
+     */
+    public void setWatchTimeout(final long watchTimeout) {
+        this.watchTimeout = watchTimeout;
     }
 
     @Override
     public void process(final String dir) {
-        final File file = new File(dir);
-        if (file.isDirectory()) {
-            dir(file);
-        } else {
+        final Path path = Paths.get(dir);
+        if (!Files.isDirectory(path)) {
             getReceiver().process(dir);
+            return;
+        }
+        // Files created while reading the directory are reported by the watch
+        // service, too. The names are kept until these events have been handled:
+        emittedFiles = watch ? new HashSet<>() : null;
+        try (WatchService watchService = watch ? path.getFileSystem().newWatchService() : null) {
+            final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+            if (watchService != null) {
+                // Register before reading so that no new file is missed:
+                register(path, watchService, watchedDirs);
+            }
+            if (threads > 1 && recursive) {
+                readParallel(path);
+            } else {
+                read(path);
+            }
+            if (watchService != null) {
+                watch(watchService, watchedDirs);
+            }
+        } catch (final IOException | UncheckedIOException e) {
+            throw new MetafactureException(e);
+        } finally {
+            emittedFiles = null;
         }
     }
 
-    private void dir(final File dir) {
-        final ObjectReceiver<String> receiver = getReceiver();
-        final File[] files = filenameFilterPattern == null ? dir.listFiles()
-                : dir.listFiles(new FilenameFilter() {
-                    @Override
-                    public boolean accept(final File dir, final String name) {
-                        return name.matches(filenameFilterPattern);
-                    }
-                });
-        Arrays.sort(files);
-        for (File file : files) {
-            if (file.isDirectory()) {
+    private void read(final Path dir) throws IOException {
+        for (final Path entry : list(dir)) {
+            if (Files.isDirectory(entry)) {
                 if (recursive) {
-                    dir(file);
+                    read(entry);
                 }
+            } else if (accept(entry)) {
+                emit(entry.toAbsolutePath().toString());
+            }
+        }
+    }
+
+    private void readParallel(final Path dir) {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            emitListing(pool, pool.invoke(new ListingTask(dir)));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void emitListing(final ForkJoinPool pool, final List<Object> listing) {
+        // Only a few subdirectories per level are listed ahead of the emitted files:
+        final Deque<ListingTask> pending = new ArrayDeque<>();
+        final Iterator<Object> subdirs = listing.stream()
+                .filter(Path.class::isInstance).iterator();
+        while (pending.size() < threads && subdirs.hasNext()) {
+            pending.add(submit(pool, (Path) subdirs.next()));
+        }
+        for (final Object entry : listing) {
+            if (entry instanceof Path) {
+                final ListingTask task = pending.remove();
+                if (subdirs.hasNext()) {
+                    pending.add(submit(pool, (Path) subdirs.next()));
+                }
+                emitListing(pool, task.join());
             } else {
-                receiver.process(file.getAbsolutePath());
+                emit((String) entry);
+            }
+        }
+    }
+
+    private ListingTask submit(final ForkJoinPool pool, final Path dir) {
+        final ListingTask task = new ListingTask(dir);
+        pool.execute(task);
+        return task;
+    }
+
+    private void emit(final String file) {
+        if (emittedFiles == null || emittedFiles.add(file)) {
+            getReceiver().process(file);
+        }
+    }
+
+    private List<Path> list(final Path dir) throws IOException {
+        final List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path entry : stream) {
+                entries.add(entry);
             }
         }
+        if (sort) {
+            Collections.sort(entries);
+        }
+        return entries;
+    }
+
+    private boolean accept(final Path file) {
+        final Path name = file.getFileName();
+        return (filenamePattern == null || filenamePattern.matcher(name.toString()).matches()) &&
+                (filenameGlob == null || filenameGlob.matches(name));
     }
+
+    private void register(final Path dir, final WatchService watchService,
+            final Map<WatchKey, Path> watchedDirs) throws IOException {
+        watchedDirs.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE), dir);
+        if (recursive) {
+            for (final Path entry : list(dir)) {
+                if (Files.isDirectory(entry)) {
+                    register(entry, watchService, watchedDirs);
+                }
+            }
+        }
+    }
+
+    private void watch(final WatchService watchService, final Map<WatchKey, Path> watchedDirs)
+            throws IOException {
+        try {
+            while (true) {
+                WatchKey key = watchService.poll();
+                if (key == null) {
+                    // All events for files found by a listing have been handled:
+                    emittedFiles.clear();
+                    key = watchTimeout > 0 ?
+                        watchService.poll(watchTimeout, TimeUnit.MILLISECONDS) : watchService.take();
+                    if (key == null) {
+                        return;
+                    }
+                }
+                final Path dir = watchedDirs.get(key);
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        throw new MetafactureException("Too many new files in " + dir);
+                    }
+                    final Path entry = dir.resolve((Path) event.context());
+                    if (Files.isDirectory(entry)) {
+                        if (recursive) {
+                            register(entry, watchService, watchedDirs);
+                            read(entry);
+                        }
+                    } else if (accept(entry)) {
+                        emit(entry.toAbsolutePath().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ClosedWatchServiceException e) {
+            // Watching ends
+        }
+    }
+
+    /**
+     * Lists the entries of a single directory. Accepted files are returned
+     * as names, subdirectories as paths.
+     */
+    private final class ListingTask extends RecursiveTask<List<Object>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+
+        ListingTask(final Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<Object> compute() {
+            final List<Path> entries;
+            try {
+                entries = list(dir);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final List<Object> results = new ArrayList<>(entries.size());
+            for (final Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    results.add(entry);
+                } else if (accept(entry)) {
+                    results.add(entry.toAbsolutePath().toString());
+                }
+            }
+            return results;
+        }
+
+    }
+
 }
@@ -20,6 +20,15 @@
 import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.metafacture.framework.FluxCommand;
 import org.metafacture.framework.MetafactureException;
@@ -33,6 +42,12 @@
 /**
  * Interprets the input string as a file name and computes a cryptographic hash
  * for the file.
+ * <p>
+ * With more than one thread, several files are hashed concurrently on a
+ * worker pool. The results are emitted in the order of the input or, if
+ * {@link #setOrdered(boolean) ordered} is false, as soon as they are
+ * available. Up to {@value #PENDING_FILES_PER_THREAD} files per thread are
+ * hashed ahead of the emitted results.
  *
  * @author Christoph Böhme
  *
@@ -44,7 +59,8 @@
 public final class FileDigestCalculator extends
         DefaultObjectPipe<String, ObjectReceiver<Triple>> {
 
-    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE = 128 * 1024;
+    private static final int PENDING_FILES_PER_THREAD = 4;
 
     private static final int HIGH_NIBBLE = 0xf0;
     private static final int LOW_NIBBLE = 0x0f;
@@ -54,37 +70,133 @@ public final class FileDigestCalculator extends
     private final DigestAlgorithm algorithm;
     private final MessageDigest messageDigest;
 
+    private int threads = 1;
+    private boolean ordered = true;
+
+    private final ThreadLocal<MessageDigest> workerDigests;
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private ExecutorService executor;
+    private CompletionService<Triple> completionService;
+    private final Deque<Future<Triple>> pending = new ArrayDeque<>();
 
     public FileDigestCalculator(final DigestAlgorithm algorithm) {
         this.algorithm = algorithm;
         this.messageDigest = this.algorithm.getInstance();
+        this.workerDigests = ThreadLocal.withInitial(this.algorithm::getInstance);
     }
 
     public FileDigestCalculator(final String algorithm) {
         this.algorithm = DigestAlgorithm.valueOf(algorithm.toUpperCase());
         this.messageDigest = this.algorithm.getInstance();
+        this.workerDigests = ThreadLocal.withInitial(this.algorithm::getInstance);
+    }
+
+    /**
+     * Sets the number of threads which hash files concurrently. The default
+     * is 1 which hashes the files on the pipeline thread.
+     *
+     * @param threads number of threads
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets whether the results are emitted in the order of the input files
+     * when hashing on several threads. The default is true.
+     *
+     * @param ordered true to emit results in input order
+     */
+    public void setOrdered(final boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    public boolean getOrdered() {
+        return ordered;
     }
 
     @Override
     public void process(final String file) {
-        final String digest;
-        InputStream stream = null;
+        if (threads <= 1) {
+            getReceiver().process(hashFile(file, messageDigest));
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread thread = new Thread(runnable, "file-digest");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // Only unordered results are taken in completion order:
+            completionService = ordered ? null : new ExecutorCompletionService<>(executor);
+        }
+        final Callable<Triple> task = () -> hashFile(file, workerDigests.get());
+        pending.add(completionService == null ? executor.submit(task) : completionService.submit(task));
+        while (pending.size() > threads * PENDING_FILES_PER_THREAD) {
+            emitNext();
+        }
+    }
+
+    @Override
+    protected void onResetStream() {
+        emitPending();
+    }
+
+    @Override
+    protected void onCloseStream() {
         try {
-            stream = new FileInputStream(file);
-            digest = bytesToHex(getDigest(stream, messageDigest));
-        } catch (IOException e) {
-            throw new MetafactureException(e);
+            emitPending();
         } finally {
-            if (stream != null) {
-                try { stream.close(); }
-                catch (final IOException e) { }
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+                completionService = null;
+            }
+        }
+    }
+
+    private void emitPending() {
+        while (!pending.isEmpty()) {
+            emitNext();
+        }
+    }
+
+    private void emitNext() {
+        try {
+            final Future<Triple> next;
+            if (completionService == null) {
+                next = pending.remove();
+            } else {
+                next = completionService.take();
+                pending.remove(next);
+            }
+            getReceiver().process(next.get());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetafactureException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof MetafactureException) {
+                throw (MetafactureException) e.getCause();
             }
+            throw new MetafactureException(e.getCause());
+        }
+    }
+
+    private Triple hashFile(final String file, final MessageDigest digest) {
+        try (InputStream stream = new FileInputStream(file)) {
+            return new Triple(file, algorithm.name(), bytesToHex(getDigest(stream, digest, buffers.get())));
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
         }
-        getReceiver().process(new Triple(file, algorithm.name(), digest));
     }
 
-    private static byte[] getDigest(final InputStream stream, final MessageDigest messageDigest) throws IOException {
-        final byte[] buffer = new byte[BUFFER_SIZE];
+    private static byte[] getDigest(final InputStream stream, final MessageDigest messageDigest,
+            final byte[] buffer) throws IOException {
 
         int read = stream.read(buffer, 0, BUFFER_SIZE);
         while (read > -1) {
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.files;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+/**
+ * Tests for class {@link DirReader}.
+ */
+public final class DirReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<String> files = Collections.synchronizedList(new ArrayList<>());
+
+    private DirReader dirReader;
+    private File root;
+
+    @Before
+    public void setup() {
+        dirReader = new DirReader();
+        dirReader.setReceiver(new DefaultObjectReceiver<String>() {
+            @Override
+            public void process(final String file) {
+                files.add(file);
+            }
+        });
+        root = tempFolder.getRoot();
+    }
+
+    @Test
+    public void shouldEmitFilesInOrderOfNames() throws IOException {
+        final String b = newFile("b.xml");
+        final String a = newFile("a.xml");
+        final String c = newFile("sub", "c.xml");
+
+        dirReader.setRecursive(true);
+        dirReader.process(root.getPath());
+
+        assertEquals(Arrays.asList(a, b, c), files);
+    }
+
+    @Test
+    public void shouldEmitAllFilesIfNotSorting() throws IOException {
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            expected.add(newFile("file" + i));
+        }
+
+        dirReader.setSort(false);
+        dirReader.process(root.getPath());
+
+        assertEquals(new HashSet<>(expected), new HashSet<>(files));
+        assertEquals(expected.size(), files.size());
+    }
+
+    @Test
+    public void shouldFilterFilesByGlob() throws IOException {
+        final String a = newFile("a.xml");
+        newFile("b.json");
+
+        dirReader.setFilenameGlob("*.xml");
+        dirReader.process(root.getPath());
+
+        assertEquals(Arrays.asList(a), files);
+    }
+
+    @Test
+    public void shouldApplyPatternsToFilesOnly() throws IOException {
+        final String a = newFile("a.xml");
+        newFile("b.json");
+        final String c = newFile("records", "c.xml");
+        newFile("records", "d.json");
+
+        dirReader.setRecursive(true);
+        dirReader.setFilenamePattern(".*\\.xml");
+        dirReader.setFilenameGlob("*.xml");
+        dirReader.process(root.getPath());
+
+        assertEquals(Arrays.asList(a, c), files);
+    }
+
+    @Test
+    public void shouldEmitFilesInSameOrderWithThreads() throws IOException {
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            expected.add(newFile("dir" + i, "file.xml"));
+            for (int j = 0; j < 5; ++j) {
+                expected.add(newFile("dir" + i, "sub" + j, "file.xml"));
+            }
+        }
+
+        dirReader.setRecursive(true);
+        dirReader.setThreads(4);
+        dirReader.process(root.getPath());
+
+        assertEquals(expected, files);
+    }
+
+    @Test
+    public void shouldEmitFilesCreatedWhileWatching() throws Exception {
+        final String a = newFile("a.xml");
+
+        dirReader.setRecursive(true);
+        dirReader.setWatch(true);
+        dirReader.setWatchTimeout(1000);
+        final Thread thread = new Thread(() -> dirReader.process(root.getPath()));
+        thread.start();
+        Thread.sleep(200);
+        final String b = newFile("b.xml");
+        final String c = newFile("sub", "c.xml");
+        thread.join();
+
+        assertEquals(Arrays.asList(a, b, c), files);
+    }
+
+    private String newFile(final String... names) throws IOException {
+        File file = root;
+        for (final String name : names) {
+            file = new File(file, name);
+        }
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+        return file.getAbsolutePath();
+    }
+
+}
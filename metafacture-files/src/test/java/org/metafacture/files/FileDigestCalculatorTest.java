@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+import org.metafacture.framework.objects.Triple;
+
+/**
+ * Tests for class {@link FileDigestCalculator}.
+ */
+public final class FileDigestCalculatorTest {
+
+    private static final String EMPTY_MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+    private static final String TEXT_MD5 = "0cc175b9c0f1b6a831c399e269772661";
+
+    private static final int FILES = 50;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<Triple> results = new ArrayList<>();
+    private final List<String> files = new ArrayList<>();
+
+    private FileDigestCalculator calculator;
+
+    @Before
+    public void setup() throws IOException {
+        calculator = new FileDigestCalculator("md5");
+        calculator.setReceiver(new DefaultObjectReceiver<Triple>() {
+            @Override
+            public void process(final Triple triple) {
+                results.add(triple);
+            }
+        });
+        for (int i = 0; i < FILES; ++i) {
+            final File file = tempFolder.newFile("file" + i);
+            Files.write(file.toPath(), (i % 2 == 0 ? "" : "a").getBytes(StandardCharsets.UTF_8));
+            files.add(file.getPath());
+        }
+    }
+
+    @Test
+    public void shouldEmitDigestsInInputOrder() {
+        calculator.setThreads(4);
+        processFiles();
+
+        assertEquals(files, subjects());
+        for (int i = 0; i < FILES; ++i) {
+            assertEquals("MD5", results.get(i).getPredicate());
+            assertEquals(i % 2 == 0 ? EMPTY_MD5 : TEXT_MD5, results.get(i).getObject());
+        }
+    }
+
+    @Test
+    public void shouldEmitAllDigestsIfUnordered() {
+        calculator.setThreads(4);
+        calculator.setOrdered(false);
+        processFiles();
+
+        assertEquals(FILES, results.size());
+        assertEquals(new HashSet<>(files), new HashSet<>(subjects()));
+    }
+
+    @Test
+    public void shouldPassIOExceptionOfWorkerToPipeline() {
+        calculator.setThreads(4);
+        files.add(new File(tempFolder.getRoot(), "missing").getPath());
+        try {
+            processFiles();
+            fail("Expected MetafactureException");
+        } catch (final MetafactureException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private void processFiles() {
+        for (final String file : files) {
+            calculator.process(file);
+        }
+        calculator.closeStream();
+    }
+
+    private List<String> subjects() {
+        final List<String> subjects = new ArrayList<>();
+        for (final Triple triple : results) {
+            subjects.add(triple.getSubject());
+        }
+        return subjects;
+    }
+
+}
@@ -15,6 +15,12 @@
  */
 package org.metafacture.io;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.metafacture.commons.SizeUtil;
+
 /**
  * Common functions for object writers.
  *
@@ -27,6 +33,12 @@
     private String footer = DEFAULT_FOOTER;
     private String separator = DEFAULT_SEPARATOR;
 
+    private boolean async;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private long flushInterval;
+    private int flushRecords;
+    private int unflushedRecords;
+
     @Override
     public final String getHeader() {
         return header;
@@ -57,4 +69,90 @@ public final void setSeparator(final String separator) {
         this.separator = separator;
     }
 
+    @Override
+    public final boolean getAsync() {
+        return async;
+    }
+
+    @Override
+    public final void setAsync(final boolean async) {
+        this.async = async;
+    }
+
+    @Override
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public final void setBufferSize(final String bufferSize) {
+        final long size = SizeUtil.parseSize(bufferSize);
+        if (size < 1 || size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.bufferSize = (int) size;
+    }
+
+    @Override
+    public final long getFlushInterval() {
+        return flushInterval;
+    }
+
+    @Override
+    public final void setFlushInterval(final long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public final int getFlushRecords() {
+        return flushRecords;
+    }
+
+    @Override
+    public final void setFlushRecords(final int flushRecords) {
+        this.flushRecords = flushRecords;
+    }
+
+    /**
+     * Wraps {@code writer} in a writer which writes on a separate thread if
+     * asynchronous writing is enabled.
+     *
+     * @param writer the writer to write to
+     * @return the writer to use for writing objects
+     */
+    protected final Writer createWriter(final Writer writer) {
+        return async ? new AsyncWriter(writer, bufferSize, flushInterval) : writer;
+    }
+
+    /**
+     * Counts a written object and flushes the output if the number of
+     * objects set by {@link #setFlushRecords(int)} has been reached.
+     *
+     * @param output the output to flush
+     * @throws IOException if flushing fails
+     */
+    protected final void recordWritten(final Flushable output) throws IOException {
+        unflushedRecords = recordWritten(output, unflushedRecords);
+    }
+
+    /**
+     * Counts a written object for an output which keeps its own count of
+     * unflushed objects. Writers with several outputs use this method so
+     * that each output is flushed after the number of objects set by
+     * {@link #setFlushRecords(int)} has been written to it.
+     *
+     * @param output the output to flush
+     * @param unflushed the number of objects written to {@code output}
+     *                  since it was last flushed
+     * @return the new number of unflushed objects of {@code output}
+     * @throws IOException if flushing fails
+     */
+    protected final int recordWritten(final Flushable output, final int unflushed) throws IOException {
+        if (flushRecords > 0 && unflushed + 1 >= flushRecords) {
+            output.flush();
+            return 0;
+        }
+        return unflushed + 1;
+    }
+
 }
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.metafacture.commons.SizeUtil;
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Opens a zip or tar archive and passes a reader for every file entry.
+ * Files ending in {@code .zip} are read as zip archives, all other files as
+ * tar archives which may be compressed (for instance {@code .tar.gz}).
+ * <p>
+ * The entries are read and decoded ahead of the pipeline: zip entries are
+ * inflated on several threads using the central directory of the archive;
+ * tar entries are read on a separate thread as tar archives can only be read
+ * sequentially. The entries are passed to the receiver in the order of the
+ * archive on the pipeline thread. Entries are read ahead as bytes and only
+ * decoded while the receiver reads them; the entries which are read ahead
+ * take up at most {@link #setPrefetchBufferSize(String) prefetchBufferSize}
+ * bytes. Entries larger than {@link #setMaxPrefetchSize(String)
+ * maxPrefetchSize} are not read ahead but streamed to the receiver.
+ */
+@Description("Opens a zip or tar archive and passes every entry.")
+@In(String.class)
+@Out(Reader.class)
+@FluxCommand("open-archive")
+public final class ArchiveOpener
+        extends DefaultObjectPipe<String, ObjectReceiver<Reader>> {
+
+    public static final long DEFAULT_MAX_PREFETCH_SIZE = 16 * SizeUtil.MEGABYTES;
+    public static final long DEFAULT_PREFETCH_BUFFER_SIZE = 64 * SizeUtil.MEGABYTES;
+
+    private static final String ZIP_EXTENSION = ".zip";
+    private static final int PENDING_ENTRIES_PER_THREAD = 16;
+
+    private static final Object END_OF_ARCHIVE = new Object();
+
+    private String encoding = "UTF-8";
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long maxPrefetchSize = DEFAULT_MAX_PREFETCH_SIZE;
+    private long prefetchBufferSize = DEFAULT_PREFETCH_BUFFER_SIZE;
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the encoding of the entries. The default is UTF-8.
+     *
+     * @param encoding name of the encoding
+     */
+    public void setEncoding(final String encoding) {
+        this.encoding = encoding;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads which read zip entries. The default is the
+     * number of available processors.
+     *
+     * @param threads number of threads
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public long getMaxPrefetchSize() {
+        return maxPrefetchSize;
+    }
+
+    /**
+     * Sets the size of the largest entry which is read ahead, for instance
+     * &quot;16MB&quot;. Larger entries are streamed. The default is
+     * {@value #DEFAULT_MAX_PREFETCH_SIZE} bytes.
+     *
+     * @param maxPrefetchSize maximum size of entries which are read ahead
+     */
+    public void setMaxPrefetchSize(final String maxPrefetchSize) {
+        this.maxPrefetchSize = SizeUtil.parseSize(maxPrefetchSize);
+    }
+
+    public long getPrefetchBufferSize() {
+        return prefetchBufferSize;
+    }
+
+    /**
+     * Sets the total size of the entries which are read ahead, for instance
+     * &quot;64MB&quot;. Entries larger than this size are streamed. The
+     * default is {@value #DEFAULT_PREFETCH_BUFFER_SIZE} bytes.
+     *
+     * @param prefetchBufferSize maximum number of bytes read ahead
+     */
+    public void setPrefetchBufferSize(final String prefetchBufferSize) {
+        this.prefetchBufferSize = SizeUtil.parseSize(prefetchBufferSize);
+    }
+
+    @Override
+    public void process(final String file) {
+        try {
+            if (file.toLowerCase().endsWith(ZIP_EXTENSION)) {
+                processZip(file);
+            } else {
+                processTar(file);
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private void processZip(final String file) throws IOException {
+        final Charset charset = Charset.forName(encoding);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            final Thread thread = new Thread(runnable, "archive-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final Deque<PendingEntry> pending = new ArrayDeque<>();
+            long pendingBytes = 0;
+            for (final ZipEntry entry : Collections.list(zipFile.entries())) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                final boolean prefetch = isPrefetchable(entry.getSize());
+                final long size = prefetch ? entry.getSize() : 0;
+                while (!pending.isEmpty() && (pending.size() >= threads * PENDING_ENTRIES_PER_THREAD ||
+                        pendingBytes + size > prefetchBufferSize)) {
+                    final PendingEntry next = pending.remove();
+                    pendingBytes -= next.size;
+                    emitZipEntry(zipFile, next, charset);
+                }
+                final Future<byte[]> data = prefetch ?
+                    executor.submit(() -> readZipEntry(zipFile, entry)) : null;
+                pending.add(new PendingEntry(entry, data, size));
+                pendingBytes += size;
+            }
+            while (!pending.isEmpty()) {
+                emitZipEntry(zipFile, pending.remove(), charset);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void emitZipEntry(final ZipFile zipFile, final PendingEntry pendingEntry,
+            final Charset charset) throws IOException {
+        if (pendingEntry.data != null) {
+            emit(await(pendingEntry.data), charset);
+        } else {
+            try (Reader reader = new InputStreamReader(
+                    zipFile.getInputStream(pendingEntry.entry), charset)) {
+                getReceiver().process(reader);
+            }
+        }
+    }
+
+    private void processTar(final String file) throws IOException {
+        final Charset charset = Charset.forName(encoding);
+        try (InputStream fileStream = new FileInputStream(file);
+                InputStream decompressor = FileCompression.AUTO.createDecompressor(fileStream, true);
+                TarArchiveInputStream tarStream = new TarArchiveInputStream(decompressor)) {
+            final BlockingQueue<Object> entries = new ArrayBlockingQueue<>(PENDING_ENTRIES_PER_THREAD);
+            final ByteBudget budget = new ByteBudget(prefetchBufferSize);
+            final Thread readerThread = new Thread(() -> readTar(tarStream, budget, entries), "archive-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+            try {
+                Object entry;
+                while ((entry = entries.take()) != END_OF_ARCHIVE) {
+                    if (entry instanceof byte[]) {
+                        final byte[] data = (byte[]) entry;
+                        try {
+                            emit(data, charset);
+                        } finally {
+                            budget.release(data.length);
+                        }
+                    } else if (entry instanceof CountDownLatch) {
+                        // The reader thread waits while the entry is streamed:
+                        try (Reader reader = new InputStreamReader(
+                                new CloseShieldInputStream(tarStream), charset)) {
+                            getReceiver().process(reader);
+                        } finally {
+                            ((CountDownLatch) entry).countDown();
+                        }
+                    } else {
+                        throw new IOException((Throwable) entry);
+                    }
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MetafactureException(e);
+            } finally {
+                // The reader thread must not touch the stream once it is closed:
+                readerThread.interrupt();
+                join(readerThread);
+            }
+        }
+    }
+
+    private void readTar(final TarArchiveInputStream tarStream, final ByteBudget budget,
+            final BlockingQueue<Object> entries) {
+        try {
+            try {
+                ArchiveEntry entry;
+                while ((entry = tarStream.getNextEntry()) != null) {
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    if (isPrefetchable(entry.getSize())) {
+                        budget.acquire(entry.getSize());
+                        final byte[] data = IOUtils.toByteArray(tarStream);
+                        // Keep the budget in line with the bytes actually read:
+                        budget.adjust(entry.getSize(), data.length);
+                        entries.put(data);
+                    } else {
+                        final CountDownLatch streamed = new CountDownLatch(1);
+                        entries.put(streamed);
+                        streamed.await();
+                    }
+                }
+                entries.put(END_OF_ARCHIVE);
+            } catch (final IOException | RuntimeException e) {
+                entries.put(e);
+            }
+        } catch (final InterruptedException e) {
+            // The pipeline stopped reading the archive
+        }
+    }
+
+    private void emit(final byte[] data, final Charset charset) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(data), charset)) {
+            getReceiver().process(reader);
+        }
+    }
+
+    private static byte[] readZipEntry(final ZipFile zipFile, final ZipEntry entry) throws IOException {
+        try (InputStream stream = zipFile.getInputStream(entry)) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    private boolean isPrefetchable(final long size) {
+        return size >= 0 && size <= maxPrefetchSize && size <= prefetchBufferSize;
+    }
+
+    private static void join(final Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] await(final Future<byte[]> data) throws IOException {
+        try {
+            return data.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetafactureException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new MetafactureException(e.getCause());
+        }
+    }
+
+    /**
+     * A zip entry and its bytes if it is read ahead.
+     */
+    private static final class PendingEntry {
+
+        private final ZipEntry entry;
+        private final Future<byte[]> data;
+        private final long size;
+
+        PendingEntry(final ZipEntry entry, final Future<byte[]> data, final long size) {
+            this.entry = entry;
+            this.data = data;
+            this.size = size;
+        }
+
+    }
+
+    /**
+     * Limits the number of bytes of the tar entries which are read ahead.
+     */
+    private static final class ByteBudget {
+
+        private final long limit;
+        private long used;
+
+        ByteBudget(final long limit) {
+            this.limit = limit;
+        }
+
+        synchronized void acquire(final long bytes) throws InterruptedException {
+            while (used > 0 && used + bytes > limit) {
+                wait();
+            }
+            used += bytes;
+        }
+
+        synchronized void adjust(final long acquired, final long actual) {
+            used += actual - acquired;
+            notifyAll();
+        }
+
+        synchronized void release(final long bytes) {
+            used -= bytes;
+            notifyAll();
+        }
+
+    }
+
+}
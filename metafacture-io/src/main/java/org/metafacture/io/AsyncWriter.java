@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+
+/**
+ * Writes to a writer on a separate thread. Characters are collected in one
+ * of two buffers while a background thread writes the other buffer to the
+ * target writer. Thus the caller only waits for the target if it fills a
+ * buffer before the previous buffer has been written.
+ * <p>
+ * {@link #flush()} does not wait: it hands the buffered characters to the
+ * background thread, which writes them and then flushes the target. If a
+ * flush interval is set, buffered characters are handed over at least once
+ * per interval. {@link #close()} waits until all characters have been
+ * written and the target has been closed.
+ * <p>
+ * Exceptions thrown by the target are rethrown by the next call to one of
+ * the {@code write}, {@code flush} or {@code close} methods.
+ */
+final class AsyncWriter extends Writer {
+
+    private final Writer target;
+    private final long flushInterval;
+    private final Thread writerThread;
+
+    private char[] buffer;
+    private int length;
+    private char[] spareBuffer;
+
+    private long flushRequests;
+    private long completedFlushRequests;
+    private long lastDrainTime;
+    private boolean closed;
+    private boolean finished;
+    private IOException failure;
+
+    /**
+     * Creates a writer with two buffers of {@code bufferSize} characters.
+     *
+     * @param target the writer to write to
+     * @param bufferSize the size of each buffer in characters
+     * @param flushInterval the maximum time in milliseconds characters stay
+     *                      in the buffer, or 0 to wait until the buffer is
+     *                      full or flushed
+     */
+    AsyncWriter(final Writer target, final int bufferSize, final long flushInterval) {
+        this.target = target;
+        this.flushInterval = flushInterval;
+        buffer = new char[bufferSize];
+        spareBuffer = new char[bufferSize];
+        lastDrainTime = System.currentTimeMillis();
+        writerThread = new Thread(this::drain, "async-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public synchronized void write(final int c) throws IOException {
+        awaitSpace();
+        buffer[length++] = (char) c;
+    }
+
+    @Override
+    public synchronized void write(final char[] cbuf, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            awaitSpace();
+            final int count = Math.min(remaining, buffer.length - length);
+            System.arraycopy(cbuf, offset, buffer, length, count);
+            length += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public synchronized void write(final String str, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            awaitSpace();
+            final int count = Math.min(remaining, buffer.length - length);
+            str.getChars(offset, offset + count, buffer, length);
+            length += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        ++flushRequests;
+        notifyAll();
+    }
+
+    /**
+     * Writes all buffered characters and flushes the target. Unlike
+     * {@link #flush()}, this method waits until the target has been flushed.
+     *
+     * @throws IOException if writing or flushing fails
+     */
+    synchronized void sync() throws IOException {
+        checkOpen();
+        final long request = ++flushRequests;
+        notifyAll();
+        try {
+            while (completedFlushRequests < request && failure == null) {
+                wait();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        checkOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+            try {
+                while (!finished) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                writerThread.interrupt();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("writer closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void awaitSpace() throws IOException {
+        checkOpen();
+        if (length == buffer.length) {
+            notifyAll();
+            try {
+                while (length == buffer.length && failure == null) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            checkOpen();
+        }
+    }
+
+    private void drain() {
+        try {
+            boolean done = false;
+            while (!done) {
+                final char[] drainBuffer;
+                final int drainLength;
+                final long drainRequests;
+                synchronized (this) {
+                    while (!isDrainDue()) {
+                        if (flushInterval > 0) {
+                            wait(Math.max(1, lastDrainTime + flushInterval - System.currentTimeMillis()));
+                        } else {
+                            wait();
+                        }
+                    }
+                    drainBuffer = buffer;
+                    drainLength = length;
+                    drainRequests = flushRequests;
+                    done = closed;
+                    buffer = spareBuffer;
+                    length = 0;
+                    lastDrainTime = System.currentTimeMillis();
+                    notifyAll();
+                }
+                target.write(drainBuffer, 0, drainLength);
+                final boolean flush = drainRequests > completedFlushRequests ||
+                        drainLength < drainBuffer.length;
+                if (flush) {
+                    target.flush();
+                }
+                synchronized (this) {
+                    spareBuffer = drainBuffer;
+                    if (flush) {
+                        completedFlushRequests = drainRequests;
+                        notifyAll();
+                    }
+                }
+            }
+            target.close();
+        } catch (final IOException e) {
+            fail(e);
+        } catch (final InterruptedException e) {
+            fail(new InterruptedIOException());
+        } finally {
+            synchronized (this) {
+                finished = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean isDrainDue() {
+        return closed || length == buffer.length || flushRequests > completedFlushRequests ||
+                flushInterval > 0 && length > 0 &&
+                System.currentTimeMillis() - lastDrainTime >= flushInterval;
+    }
+
+    private synchronized void fail(final IOException e) {
+        failure = e;
+        notifyAll();
+        try {
+            target.close();
+        } catch (final IOException closeException) {
+            e.addSuppressed(closeException);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * <p>Reads data from an {@code InputStream} and splits it into individual
+ * records without decoding the bytes into characters.</p>
+ *
+ * <p>The records are emitted as {@link ByteBuffer}s which are slices of an
+ * internal read buffer. A buffer is only valid until the receiver returns
+ * from {@link ObjectReceiver#process(Object)}. Receivers which need to keep
+ * the record data must copy it. Records are only copied by the reader if
+ * they span the end of the read buffer.</p>
+ *
+ * <p>The default separator is the global separator character (0x1d).
+ * Empty records are skipped by default.</p>
+ */
+@Description("Reads data from an InputStream and splits it into individual records")
+@In(InputStream.class)
+@Out(ByteBuffer.class)
+@FluxCommand("as-byte-records")
+public final class ByteRecordReader extends
+        DefaultObjectPipe<InputStream, ObjectReceiver<ByteBuffer>> {
+
+    public static final byte DEFAULT_SEPARATOR = 0x1d;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_SEPARATOR_CHAR = 0x7f;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private byte separator = DEFAULT_SEPARATOR;
+    private boolean skipEmptyRecords = true;
+
+    /**
+     * Sets the record separator. Only the first character of the string is
+     * used. It must be an ASCII character so that it is encoded as a single
+     * byte. If the string is empty, the default separator is used.
+     *
+     * @param separator the record separator
+     */
+    public void setSeparator(final String separator) {
+        if (separator.length() >= 1) {
+            final char separatorChar = separator.charAt(0);
+            if (separatorChar > MAX_SEPARATOR_CHAR) {
+                throw new IllegalArgumentException(
+                        "separator must be an ASCII character");
+            }
+            this.separator = (byte) separatorChar;
+        } else {
+            this.separator = DEFAULT_SEPARATOR;
+        }
+    }
+
+    public void setSeparator(final byte separator) {
+        this.separator = separator;
+    }
+
+    public byte getSeparator() {
+        return separator;
+    }
+
+    public void setSkipEmptyRecords(final boolean skipEmptyRecords) {
+        this.skipEmptyRecords = skipEmptyRecords;
+    }
+
+    public boolean getSkipEmptyRecords() {
+        return skipEmptyRecords;
+    }
+
+    @Override
+    public void process(final InputStream stream) {
+        assert !isClosed();
+
+        try {
+            boolean nothingRead = true;
+            int end = 0;
+            int size;
+            while ((size = stream.read(buffer, end, buffer.length - end)) != -1) {
+                nothingRead = false;
+                int recordStart = 0;
+                for (int i = end; i < end + size; ++i) {
+                    if (buffer[i] == separator) {
+                        emitRecord(recordStart, i);
+                        recordStart = i + 1;
+                    }
+                }
+                end += size;
+                if (recordStart > 0) {
+                    System.arraycopy(buffer, recordStart, buffer, 0, end - recordStart);
+                    end -= recordStart;
+                }
+                if (end == buffer.length) {
+                    final byte[] largerBuffer = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, largerBuffer, 0, end);
+                    buffer = largerBuffer;
+                }
+            }
+            if (!nothingRead) {
+                emitRecord(0, end);
+            }
+
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private void emitRecord(final int start, final int end) {
+        if (!skipEmptyRecords || start < end) {
+            getReceiver().process(ByteBuffer.wrap(buffer, start, end - start).slice());
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.metafacture.commons.SizeUtil;
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Opens a file and passes an input stream for it to the receiver. Unlike
+ * {@link FileOpener}, the file contents are not decoded into characters.
+ * This allows binary record formats such as ISO 2709 to be split and parsed
+ * directly on the bytes. Compressed files are decompressed.
+ * <p>
+ * The stream is closed when the receiver returns from
+ * {@link ObjectReceiver#process(Object)}.
+ */
+@Description("Opens a file as a byte stream.")
+@In(String.class)
+@Out(java.io.InputStream.class)
+@FluxCommand("open-file-bytes")
+public final class ByteStreamFileOpener
+        extends DefaultObjectPipe<String, ObjectReceiver<InputStream>> {
+
+    private FileCompression compression = FileCompression.AUTO;
+    private boolean decompressConcatenated = FileCompression.DEFAULT_DECOMPRESS_CONCATENATED;
+    private long readahead;
+
+    public FileCompression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(final FileCompression compression) {
+        this.compression = compression;
+    }
+
+    public void setCompression(final String compression) {
+        setCompression(FileCompression.valueOf(compression.toUpperCase()));
+    }
+
+    public boolean getDecompressConcatenated() {
+        return decompressConcatenated;
+    }
+
+    public void setDecompressConcatenated(final boolean decompressConcatenated) {
+        this.decompressConcatenated = decompressConcatenated;
+    }
+
+    public long getReadahead() {
+        return readahead;
+    }
+
+    /**
+     * Sets the number of bytes which are decompressed ahead of the pipeline
+     * on a separate thread, for instance &quot;64MB&quot;. This overlaps
+     * decompressing the file with processing it. The default is 0 which
+     * disables reading ahead.
+     *
+     * @param readahead size of the read-ahead buffers
+     */
+    public void setReadahead(final String readahead) {
+        this.readahead = SizeUtil.parseSize(readahead);
+    }
+
+    private InputStream decompress(final InputStream fileStream) {
+        final InputStream decompressor = compression.createDecompressor(fileStream, decompressConcatenated);
+        return readahead > 0 ? new ReadAheadInputStream(decompressor, readahead) : decompressor;
+    }
+
+    @Override
+    public void process(final String file) {
+        try (InputStream fileStream = new FileInputStream(file);
+                InputStream decompressor = decompress(fileStream)) {
+            getReceiver().process(decompressor);
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.metafacture.framework.MetafactureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the progress of a pipeline in a state file so that an interrupted
+ * pipeline can be resumed. The stages of a pipeline which are configured
+ * with the same state file share one checkpoint:
+ * <ul>
+ * <li>{@link FileOpener} records which input files have been processed
+ * completely and skips these files when resuming. Completed files are
+ * appended to a log next to the state file ({@code <state file>.completed})
+ * and count towards the {@link #setInterval(int) interval} like records,
+ * so that reading many small files does not commit the checkpoint for
+ * each of them.</li>
+ * <li>{@link RecordReader} and {@link LineReader} count the records of the
+ * current file and commit the checkpoint every
+ * {@link #setInterval(int) interval} records. When resuming, the committed
+ * records of the current file are read but not emitted again. The readers
+ * fail if the opener of their input does not use the same checkpoint, as
+ * their records could not be assigned to a file.</li>
+ * <li>{@link ObjectFileWriter} and {@link ObjectWriter} writing to a file
+ * flush their files when the checkpoint is committed and record their
+ * lengths. When resuming, they truncate the files to these lengths and
+ * append to them.</li>
+ * </ul>
+ * If the state file exists when the pipeline starts, the pipeline resumes
+ * from the recorded state, which is logged. The state file and the log of
+ * completed files are deleted once all stages have been closed, i.e. when
+ * the pipeline finished successfully.
+ * <p>
+ * A record counts as committed once the receiver of the reader returns, so
+ * stages between the reader and the writer must not hold back records.
+ */
+final class Checkpoint {
+
+    public static final int DEFAULT_INTERVAL = 10000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(Checkpoint.class);
+
+    private static final String COMPLETED_LENGTH_KEY = "completed.length";
+    private static final String COMPLETED_SUFFIX = ".completed";
+    private static final String FILE_KEY = "file";
+    private static final String RECORDS_KEY = "records";
+
+    private static final Map<String, Checkpoint> CHECKPOINTS = new HashMap<>();
+
+    private final String name;
+    private final Path stateFile;
+    private final Path completedLog;
+    private final boolean resuming;
+    private final Set<String> completedFiles = new HashSet<>();
+    private final List<String> uncommittedCompletedFiles = new ArrayList<>();
+    private final Map<String, String> values = new HashMap<>();
+    private final List<Flushable> outputs = new ArrayList<>();
+
+    private int participants;
+    private int interval = DEFAULT_INTERVAL;
+
+    private String resumedFile;
+    private long resumedRecords;
+    private long completedLogLength;
+
+    private String currentFile;
+    private long records;
+    private long recordsToSkip;
+    private long uncommittedRecords;
+
+    private Checkpoint(final String name) {
+        this.name = name;
+        stateFile = Paths.get(name);
+        completedLog = stateFile.resolveSibling(stateFile.getFileName() + COMPLETED_SUFFIX);
+        resuming = Files.exists(stateFile);
+        if (resuming) {
+            load();
+            LOG.info("Resuming from checkpoint '{}': skipping {} completed files{}", name,
+                    completedFiles.size(), resumedFile == null ? "" :
+                    " and " + resumedRecords + " records of '" + resumedFile + "'");
+        } else {
+            try {
+                Files.deleteIfExists(completedLog);
+            } catch (final IOException e) {
+                throw new MetafactureException("Error deleting checkpoint '" + name + "'.", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the checkpoint for a state file and registers the caller as a
+     * participant. Each participant must call {@link #release()} when it is
+     * closed.
+     *
+     * @param stateFile path of the state file
+     * @return the checkpoint
+     */
+    static synchronized Checkpoint acquire(final String stateFile) {
+        final Checkpoint checkpoint = CHECKPOINTS.computeIfAbsent(stateFile, Checkpoint::new);
+        ++checkpoint.participants;
+        return checkpoint;
+    }
+
+    /**
+     * Deregisters a participant. The state file is deleted when the last
+     * participant has been released.
+     */
+    void release() {
+        synchronized (Checkpoint.class) {
+            if (--participants > 0) {
+                return;
+            }
+            CHECKPOINTS.remove(name);
+        }
+        try {
+            Files.deleteIfExists(stateFile);
+            Files.deleteIfExists(completedLog);
+        } catch (final IOException e) {
+            throw new MetafactureException("Error deleting checkpoint '" + name + "'.", e);
+        }
+    }
+
+    boolean isResuming() {
+        return resuming;
+    }
+
+    void setInterval(final int interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Registers an output which is flushed before the state is written.
+     *
+     * @param output the output to flush
+     */
+    void addOutput(final Flushable output) {
+        outputs.add(output);
+    }
+
+    String getValue(final String key) {
+        return values.get(key);
+    }
+
+    void setValue(final String key, final String value) {
+        values.put(key, value);
+    }
+
+    boolean isCompleted(final String file) {
+        return completedFiles.contains(file);
+    }
+
+    void startFile(final String file) {
+        currentFile = file;
+        records = 0;
+        recordsToSkip = file.equals(resumedFile) ? resumedRecords : 0;
+    }
+
+    void completeFile() {
+        completedFiles.add(currentFile);
+        uncommittedCompletedFiles.add(currentFile);
+        currentFile = null;
+        records = 0;
+        if (++uncommittedRecords >= interval) {
+            commit();
+        }
+    }
+
+    /**
+     * Returns whether the next record of the current file has been committed
+     * before and is to be skipped.
+     *
+     * @return true if the record is to be skipped
+     * @throws MetafactureException if no file has been started, i.e. the
+     *         opener does not use this checkpoint
+     */
+    boolean skipRecord() {
+        if (currentFile == null) {
+            throw new MetafactureException("Checkpoint '" + name + "' has no current file. " +
+                    "The opener of the input files must use the same checkpoint.");
+        }
+        if (recordsToSkip > 0) {
+            --recordsToSkip;
+            ++records;
+            return true;
+        }
+        return false;
+    }
+
+    void recordProcessed() {
+        ++records;
+        if (++uncommittedRecords >= interval) {
+            commit();
+        }
+    }
+
+    /**
+     * Flushes the outputs, appends the files completed since the last commit
+     * to the log of completed files and writes the state file. The state file
+     * is replaced atomically and records the length of the log, so that an
+     * interruption leaves the previous state.
+     */
+    void commit() {
+        uncommittedRecords = 0;
+        try {
+            for (final Flushable output : outputs) {
+                output.flush();
+            }
+            appendCompletedFiles();
+            final Properties state = new Properties();
+            state.putAll(values);
+            state.setProperty(COMPLETED_LENGTH_KEY, String.valueOf(completedLogLength));
+            if (currentFile != null) {
+                state.setProperty(FILE_KEY, currentFile);
+                state.setProperty(RECORDS_KEY, String.valueOf(records));
+            }
+            final Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                state.store(out, "metafacture checkpoint");
+            }
+            Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new MetafactureException("Error writing checkpoint '" + name + "'.", e);
+        }
+    }
+
+    private void appendCompletedFiles() throws IOException {
+        if (uncommittedCompletedFiles.isEmpty()) {
+            return;
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (final String file : uncommittedCompletedFiles) {
+            builder.append(file).append('\n');
+        }
+        final byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = Files.newOutputStream(completedLog, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            out.write(bytes);
+        }
+        completedLogLength += bytes.length;
+        uncommittedCompletedFiles.clear();
+    }
+
+    private void load() {
+        final Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            state.load(in);
+        } catch (final IOException e) {
+            throw new MetafactureException("Error reading checkpoint '" + name + "'.", e);
+        }
+        for (final String key : state.stringPropertyNames()) {
+            final String value = state.getProperty(key);
+            if (COMPLETED_LENGTH_KEY.equals(key)) {
+                completedLogLength = Long.parseLong(value);
+            } else if (FILE_KEY.equals(key)) {
+                resumedFile = value;
+            } else if (RECORDS_KEY.equals(key)) {
+                resumedRecords = Long.parseLong(value);
+            } else {
+                values.put(key, value);
+            }
+        }
+        loadCompletedFiles();
+    }
+
+    /**
+     * Reads the log of completed files up to the length recorded in the
+     * state file. Files appended after the last commit are discarded.
+     */
+    private void loadCompletedFiles() {
+        if (!Files.exists(completedLog)) {
+            return;
+        }
+        try {
+            try (FileChannel channel = FileChannel.open(completedLog, StandardOpenOption.WRITE)) {
+                channel.truncate(completedLogLength);
+            }
+            for (final String file : Files.readAllLines(completedLog, StandardCharsets.UTF_8)) {
+                completedFiles.add(file);
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException("Error reading checkpoint '" + name + "'.", e);
+        }
+    }
+
+}
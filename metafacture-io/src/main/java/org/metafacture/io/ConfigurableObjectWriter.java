@@ -30,6 +30,7 @@
     String DEFAULT_HEADER = "";
     String DEFAULT_FOOTER = "\n";
     String DEFAULT_SEPARATOR = "\n";
+    int DEFAULT_BUFFER_SIZE = 1024 * 1024;
 
     /**
      * Returns the encoding used by the underlying writer.
@@ -67,6 +68,105 @@
      */
     void setCompression(final String compression);
 
+    /**
+     * Returns the compression level.
+     *
+     * @return current compression level
+     */
+    int getCompressionLevel();
+
+    /**
+     * Sets the compression level. The range of valid levels depends on the
+     * compression mode, for instance 0 to 9 for gzip. The default is
+     * {@value FileCompression#DEFAULT_COMPRESSION_LEVEL} which selects the
+     * default level of the compression mode.
+     *
+     * @param compressionLevel compression level
+     */
+    void setCompressionLevel(final int compressionLevel);
+
+    /**
+     * Returns the number of threads used for compressing.
+     *
+     * @return current number of compression threads
+     */
+    int getCompressionThreads();
+
+    /**
+     * Sets the number of threads used for compressing. With more than one
+     * thread, gzip, bzip2 and xz output is compressed in independent blocks
+     * which are written as concatenated streams. The default is
+     * {@value FileCompression#DEFAULT_COMPRESSION_THREADS}.
+     *
+     * @param compressionThreads number of compression threads
+     */
+    void setCompressionThreads(final int compressionThreads);
+
+    /**
+     * Returns whether objects are written on a separate thread.
+     *
+     * @return true if objects are written asynchronously
+     */
+    boolean getAsync();
+
+    /**
+     * Sets whether objects are written on a separate thread. If true,
+     * objects are collected in a buffer while a background thread writes
+     * the previous buffer. This keeps slow disks or pipes from stalling the
+     * pipeline. The default is false.
+     *
+     * @param async true to write objects asynchronously
+     */
+    void setAsync(final boolean async);
+
+    /**
+     * Returns the size of the buffers used for writing asynchronously.
+     *
+     * @return buffer size in characters
+     */
+    int getBufferSize();
+
+    /**
+     * Sets the size of the buffers used for writing asynchronously, for
+     * instance &quot;8M&quot;. The size is given in characters. Two
+     * buffers of this size are allocated. The default is
+     * {@value #DEFAULT_BUFFER_SIZE}.
+     *
+     * @param bufferSize buffer size in characters
+     */
+    void setBufferSize(final String bufferSize);
+
+    /**
+     * Returns the flush interval.
+     *
+     * @return flush interval in milliseconds
+     */
+    long getFlushInterval();
+
+    /**
+     * Sets the maximum time objects are buffered before they are written
+     * and flushed when writing asynchronously. The default is 0 which
+     * writes objects only when the buffer is full.
+     *
+     * @param flushInterval flush interval in milliseconds
+     */
+    void setFlushInterval(final long flushInterval);
+
+    /**
+     * Returns the number of objects after which the output is flushed.
+     *
+     * @return number of objects between flushes
+     */
+    int getFlushRecords();
+
+    /**
+     * Sets the number of objects after which the output is flushed. The
+     * default is 0 which disables flushing after a number of objects.
+     *
+     * @param flushRecords number of objects between flushes
+     */
+    void setFlushRecords(final int flushRecords);
+
     /**
      * Returns the header which is output before the first object.
      *
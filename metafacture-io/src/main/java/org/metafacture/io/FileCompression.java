@@ -17,12 +17,19 @@
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.ProxyInputStream;
 import org.apache.commons.io.output.ProxyOutputStream;
 import org.metafacture.framework.MetafactureException;
@@ -53,32 +60,27 @@ public InputStream createDecompressor(final InputStream readFrom, final boolean
     AUTO {
         @Override
         public OutputStream createCompressor(final OutputStream writeTo, final String fileName) {
-            if (fileName == null) {
-                throw new IllegalArgumentException("fileName is required for auto-selecting compressor");
-            }
-
-            final String extension = FilenameUtils.getExtension(fileName);
-            final FileCompression compressor;
-            if ("gz".equalsIgnoreCase(extension)) {
-                compressor = GZIP;
-            } else if ("gzip".equalsIgnoreCase(extension)) {
-                compressor = GZIP;
-            } else if ("bz2".equalsIgnoreCase(extension)) {
-                compressor = BZIP2;
-            } else if ("bzip2".equalsIgnoreCase(extension)) {
-                compressor = BZIP2;
-            } else if ("xz".equalsIgnoreCase(extension)) {
-                compressor = XZ;
-            } else {
-                compressor = NONE;
-            }
+            return forFileName(fileName).createCompressor(writeTo, fileName);
+        }
 
-            return compressor.createCompressor(writeTo, fileName);
+        @Override
+        public OutputStream createCompressor(final OutputStream writeTo, final String fileName,
+                final int level, final int threads) {
+            return forFileName(fileName).createCompressor(writeTo, fileName, level, threads);
         }
 
         @Override
         public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated) {
+            return createDecompressor(readFrom, decompressConcatenated, DEFAULT_DECOMPRESSION_THREADS);
+        }
+
+        @Override
+        public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated,
+                final int threads) {
             final InputStream bufferedStream = bufferStream(readFrom);
+            if (decompressConcatenated && threads > 1 && startsWithGzipMagic(bufferedStream)) {
+                return GZIP.createDecompressor(bufferedStream, true, threads);
+            }
             try {
                 return decompressConcatenated ?
                     APACHE_COMPRESSOR_FACTORY_DECOMPRESS_CONCATENATED.createCompressorInputStream(bufferedStream) :
@@ -100,6 +102,23 @@ public OutputStream createCompressor(final OutputStream writeTo, final String fi
             }
         }
 
+        @Override
+        public OutputStream createCompressor(final OutputStream writeTo, final String fileName,
+                final int level, final int threads) {
+            checkCompressionLevel(level);
+            final int blockSize = level < 0 ? BZip2CompressorOutputStream.MAX_BLOCKSIZE : level;
+            return createBlockCompressor(writeTo, threads, BLOCK_SIZE,
+                    out -> new BZip2CompressorOutputStream(out, blockSize));
+        }
+
+        @Override
+        public void checkCompressionLevel(final int level) {
+            if (level != DEFAULT_COMPRESSION_LEVEL && (level < BZip2CompressorOutputStream.MIN_BLOCKSIZE
+                    || level > BZip2CompressorOutputStream.MAX_BLOCKSIZE)) {
+                throw new IllegalArgumentException("Invalid bzip2 compression level: " + level);
+            }
+        }
+
         @Override
         public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated) {
             try {
@@ -122,8 +141,26 @@ public OutputStream createCompressor(final OutputStream writeTo, final String fi
             }
         }
 
+        @Override
+        public OutputStream createCompressor(final OutputStream writeTo, final String fileName,
+                final int level, final int threads) {
+            final GzipParameters parameters = new GzipParameters();
+            parameters.setCompressionLevel(level);
+            return createBlockCompressor(writeTo, threads, BLOCK_SIZE,
+                    out -> new GzipCompressorOutputStream(out, parameters));
+        }
+
         @Override
         public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated) {
+            return createDecompressor(readFrom, decompressConcatenated, DEFAULT_DECOMPRESSION_THREADS);
+        }
+
+        @Override
+        public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated,
+                final int threads) {
+            if (decompressConcatenated && threads > 1) {
+                return new ParallelGzipInputStream(bufferStream(readFrom), threads);
+            }
             try {
                 return APACHE_COMPRESSOR_FACTORY.createCompressorInputStream(
                         CompressorStreamFactory.GZIP, bufferStream(readFrom), decompressConcatenated);
@@ -166,6 +203,14 @@ public OutputStream createCompressor(final OutputStream writeTo, final String fi
             }
         }
 
+        @Override
+        public OutputStream createCompressor(final OutputStream writeTo, final String fileName,
+                final int level, final int threads) {
+            final int preset = level < 0 ? XZ_DEFAULT_PRESET : level;
+            return createBlockCompressor(writeTo, threads, XZ_BLOCK_SIZE,
+                    out -> new XZCompressorOutputStream(out, preset));
+        }
+
         @Override
         public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated) {
             try {
@@ -178,6 +223,10 @@ public InputStream createDecompressor(final InputStream readFrom, final boolean
     };
 
     public static final boolean DEFAULT_DECOMPRESS_CONCATENATED = false;
+    public static final int DEFAULT_COMPRESSION_LEVEL = -1;
+    public static final int MAX_COMPRESSION_LEVEL = 9;
+    public static final int DEFAULT_COMPRESSION_THREADS = 1;
+    public static final int DEFAULT_DECOMPRESSION_THREADS = 1;
 
     private static final CompressorStreamFactory APACHE_COMPRESSOR_FACTORY_DECOMPRESS_CONCATENATED = new CompressorStreamFactory(true);
     private static final CompressorStreamFactory APACHE_COMPRESSOR_FACTORY_NO_DECOMPRESS_CONCATENATED = new CompressorStreamFactory(false);
@@ -186,14 +235,110 @@ public InputStream createDecompressor(final InputStream readFrom, final boolean
 
     private static final int BUFFER_SIZE = 8 * 1024 * 1024;
 
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final int XZ_BLOCK_SIZE = 8 * 1024 * 1024;
+    private static final int XZ_DEFAULT_PRESET = 6;
+
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+
     public abstract OutputStream createCompressor(final OutputStream writeTo, final String fileName);
 
+    /**
+     * Creates a compressor with the given compression level. If more than
+     * one thread is requested, the data is split into blocks which are
+     * compressed independently on {@code threads} threads and written as
+     * concatenated streams. Standard tools read such files like files
+     * compressed in one piece, but {@link FileOpener} must be configured to
+     * decompress concatenated streams to read them completely.
+     * <p>
+     * Compressions which support neither levels nor concatenated streams
+     * ignore these parameters.
+     *
+     * @param writeTo the stream to write the compressed data to
+     * @param fileName the name of the file, used for auto-selecting the compressor
+     * @param level the compression level, or {@value #DEFAULT_COMPRESSION_LEVEL}
+     *              for the default level of the compression
+     * @param threads the number of threads used for compressing
+     * @return the compressor
+     */
+    public OutputStream createCompressor(final OutputStream writeTo, final String fileName,
+            final int level, final int threads) {
+        return createCompressor(writeTo, fileName);
+    }
+
+    /**
+     * Checks whether a compression level is valid. Levels range from 0 to
+     * {@value #MAX_COMPRESSION_LEVEL}; some compressions accept a smaller
+     * range. The default level {@value #DEFAULT_COMPRESSION_LEVEL} is always
+     * valid.
+     *
+     * @param level the compression level
+     * @throws IllegalArgumentException if the level is not valid
+     */
+    public void checkCompressionLevel(final int level) {
+        if (level < DEFAULT_COMPRESSION_LEVEL || level > MAX_COMPRESSION_LEVEL) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+    }
+
     public abstract InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated);
 
+    /**
+     * Creates a decompressor which inflates concatenated gzip streams on
+     * {@code threads} threads.
+     * Concatenated streams are only decompressed in parallel if
+     * {@code decompressConcatenated} is true and more than one thread is
+     * requested. Other compressions ignore the number of threads.
+     *
+     * @param readFrom the stream to read the compressed data from
+     * @param decompressConcatenated whether to decompress concatenated streams
+     * @param threads the number of threads used for decompressing
+     * @return the decompressor
+     */
+    public InputStream createDecompressor(final InputStream readFrom, final boolean decompressConcatenated,
+            final int threads) {
+        return createDecompressor(readFrom, decompressConcatenated);
+    }
+
     public InputStream createDecompressor(final InputStream readFrom) {
         return createDecompressor(readFrom, DEFAULT_DECOMPRESS_CONCATENATED);
     }
 
+    private static FileCompression forFileName(final String fileName) {
+        if (fileName == null) {
+            throw new IllegalArgumentException("fileName is required for auto-selecting compressor");
+        }
+
+        final String extension = FilenameUtils.getExtension(fileName);
+        final FileCompression compressor;
+        if ("gz".equalsIgnoreCase(extension)) {
+            compressor = GZIP;
+        } else if ("gzip".equalsIgnoreCase(extension)) {
+            compressor = GZIP;
+        } else if ("bz2".equalsIgnoreCase(extension)) {
+            compressor = BZIP2;
+        } else if ("bzip2".equalsIgnoreCase(extension)) {
+            compressor = BZIP2;
+        } else if ("xz".equalsIgnoreCase(extension)) {
+            compressor = XZ;
+        } else {
+            compressor = NONE;
+        }
+        return compressor;
+    }
+
+    private static OutputStream createBlockCompressor(final OutputStream writeTo, final int threads,
+            final int blockSize, final ParallelCompressorOutputStream.CompressorFactory factory) {
+        if (threads > 1) {
+            return new ParallelCompressorOutputStream(writeTo, factory, threads, blockSize);
+        }
+        try {
+            return factory.create(bufferStream(writeTo));
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
     private static OutputStream bufferStream(final OutputStream stream) {
         if (stream instanceof BufferedOutputStream) {
             return stream;
@@ -201,6 +346,18 @@ private static OutputStream bufferStream(final OutputStream stream) {
         return new BufferedOutputStream(stream, BUFFER_SIZE);
     }
 
+    private static boolean startsWithGzipMagic(final InputStream stream) {
+        final byte[] magic = new byte[GZIP_MAGIC.length];
+        try {
+            stream.mark(magic.length);
+            final int count = IOUtils.read(stream, magic);
+            stream.reset();
+            return count == magic.length && Arrays.equals(GZIP_MAGIC, magic);
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
     private static InputStream bufferStream(final InputStream stream) {
         if (stream instanceof BufferedInputStream) {
             return stream;
@@ -22,6 +22,7 @@
 import java.io.Reader;
 
 import org.apache.commons.io.input.BOMInputStream;
+import org.metafacture.commons.SizeUtil;
 import org.metafacture.framework.FluxCommand;
 import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.ObjectReceiver;
@@ -47,6 +48,9 @@
     private String encoding = "UTF-8";
     private FileCompression compression = FileCompression.AUTO;
     private boolean decompressConcatenated = FileCompression.DEFAULT_DECOMPRESS_CONCATENATED;
+    private int decompressionThreads = FileCompression.DEFAULT_DECOMPRESSION_THREADS;
+    private long readahead;
+    private Checkpoint checkpoint;
 
     /**
      * Returns the encoding used to open the resource.
@@ -87,17 +91,77 @@ public void setDecompressConcatenated(final boolean decompressConcatenated) {
         this.decompressConcatenated = decompressConcatenated;
     }
 
+    public int getDecompressionThreads() {
+        return decompressionThreads;
+    }
+
+    /**
+     * Sets the number of threads which decompress concatenated gzip streams
+     * (such as BGZF files) if {@link #setDecompressConcatenated(boolean)
+     * decompressConcatenated} is true. The default is 1 which decompresses
+     * on the pipeline thread.
+     *
+     * @param decompressionThreads number of threads
+     */
+    public void setDecompressionThreads(final int decompressionThreads) {
+        this.decompressionThreads = decompressionThreads;
+    }
+
+    public long getReadahead() {
+        return readahead;
+    }
+
+    /**
+     * Sets the number of bytes which are decompressed ahead of the pipeline
+     * on a separate thread, for instance &quot;64MB&quot;. This overlaps
+     * decompressing the file with processing it. The default is 0 which
+     * disables reading ahead.
+     *
+     * @param readahead size of the read-ahead buffers
+     */
+    public void setReadahead(final String readahead) {
+        this.readahead = SizeUtil.parseSize(readahead);
+    }
+
+    /**
+     * Sets the state file of a checkpoint. Files which have been processed
+     * completely are recorded in the checkpoint and are skipped if an
+     * interrupted pipeline is resumed. See {@link RecordReader#setCheckpoint(String)}
+     * and {@link ObjectFileWriter#setCheckpoint(String)} for the other stages
+     * which take part in checkpointing.
+     *
+     * @param stateFile path of the state file
+     */
+    public void setCheckpoint(final String stateFile) {
+        checkpoint = Checkpoint.acquire(stateFile);
+    }
+
+    private InputStream decompress(final InputStream fileStream) {
+        final InputStream decompressor = compression.createDecompressor(fileStream, decompressConcatenated,
+                decompressionThreads);
+        return readahead > 0 ? new ReadAheadInputStream(decompressor, readahead) : decompressor;
+    }
+
     @Override
     public void process(final String file) {
+        if (checkpoint != null) {
+            if (checkpoint.isCompleted(file)) {
+                return;
+            }
+            checkpoint.startFile(file);
+        }
         try {
             final InputStream fileStream = new FileInputStream(file);
             try {
-                final InputStream decompressor = compression.createDecompressor(fileStream, decompressConcatenated);
+                final InputStream decompressor = decompress(fileStream);
                 try {
 
                     final Reader reader = new InputStreamReader(new BOMInputStream(
                             decompressor), encoding);
                     getReceiver().process(reader);
+                    if (checkpoint != null) {
+                        checkpoint.completeFile();
+                    }
                 } catch (final IOException | MetafactureException e) {
                     decompressor.close();
                     throw e;
@@ -111,4 +175,11 @@ public void process(final String file) {
         }
     }
 
+    @Override
+    protected void onCloseStream() {
+        if (checkpoint != null) {
+            checkpoint.release();
+        }
+    }
+
 }
@@ -15,12 +15,33 @@
  */
 package org.metafacture.io;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.metafacture.framework.FluxCommand;
 import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.ObjectReceiver;
@@ -32,6 +53,27 @@
 
 /**
  * Opens a {@link URLConnection} and passes a reader to the receiver.
+ * <p>
+ * Responses compressed with gzip or deflate are decompressed. The charset of
+ * the response is taken from its {@code Content-Type} header; if the header
+ * does not specify a charset, the {@link #setEncoding(String) encoding} is
+ * used.
+ * <p>
+ * By default, the urls are fetched one after the other on the pipeline
+ * thread and the responses are streamed to the receiver. If
+ * {@link #setThreads(int) threads} is greater than one, up to this number of
+ * requests are sent concurrently and the responses are read into memory.
+ * They are passed to the receiver in the order of the urls on the pipeline
+ * thread. Responses are always read completely and closed, so the
+ * connections are kept alive and reused for following requests to the same
+ * host. The number of idle connections kept per host is controlled by the
+ * system property {@code http.maxConnections} (default 5).
+ * <p>
+ * If a {@link #setCacheDir(String) cache directory} is set, responses which
+ * carry an {@code ETag} header are stored in it. When a cached url is
+ * requested again, the request is sent with an {@code If-None-Match} header
+ * and the cached response is used if the server answers
+ * {@code 304 Not Modified}.
  *
  * @author Christoph Böhme
  * @author Jan Schnasse
@@ -43,8 +85,28 @@
 public final class HttpOpener
         extends DefaultObjectPipe<String, ObjectReceiver<Reader>> {
 
+    public static final int DEFAULT_RETRY_DELAY = 1000;
+
+    private static final int PENDING_REQUESTS_PER_THREAD = 2;
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final String CHARSET_PARAMETER = "charset=";
+
+    private static final String CACHE_URL_KEY = "url";
+    private static final String CACHE_ETAG_KEY = "etag";
+    private static final String CACHE_CHARSET_KEY = "charset";
+
     private String encoding = "UTF-8";
     private String accept = "*/*";
+    private int connectTimeout;
+    private int readTimeout;
+    private int retries;
+    private int retryDelay = DEFAULT_RETRY_DELAY;
+    private int threads = 1;
+    private Path cacheDir;
+
+    private final Deque<Future<Response>> pending = new ArrayDeque<>();
+    private ExecutorService executor;
 
     /**
      * Sets the HTTP accept header value. This is a mime-type such as text/plain
@@ -70,20 +132,377 @@ public void setEncoding(final String encoding) {
         this.encoding = encoding;
     }
 
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the timeout in milliseconds for establishing a connection. The
+     * default is 0, which means no timeout.
+     *
+     * @param connectTimeout timeout in milliseconds
+     */
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the timeout in milliseconds for waiting for data from the server.
+     * The default is 0, which means no timeout.
+     *
+     * @param readTimeout timeout in milliseconds
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Sets how often a request is repeated if it fails with an I/O error,
+     * a server error (5xx) or {@code 429 Too Many Requests}. Streamed
+     * responses are only retried until the receiver starts reading them. The
+     * default is 0.
+     *
+     * @param retries number of retries
+     */
+    public void setRetries(final int retries) {
+        this.retries = retries;
+    }
+
+    public int getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait before the first retry. The
+     * delay doubles with every further retry. The default is
+     * {@value #DEFAULT_RETRY_DELAY} milliseconds.
+     *
+     * @param retryDelay delay in milliseconds
+     */
+    public void setRetryDelay(final int retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the maximum number of requests which are sent concurrently. The
+     * default is 1, which streams each response to the receiver before the
+     * next url is requested.
+     *
+     * @param threads number of concurrent requests
+     */
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public String getCacheDir() {
+        return cacheDir == null ? null : cacheDir.toString();
+    }
+
+    /**
+     * Sets a directory in which responses are cached. The directory is
+     * created if it does not exist. By default, responses are not cached.
+     *
+     * @param cacheDir path of the cache directory
+     */
+    public void setCacheDir(final String cacheDir) {
+        this.cacheDir = Paths.get(cacheDir);
+    }
+
     @Override
     public void process(final String urlStr) {
         try {
-            final URL url = new URL(urlStr);
-            final URLConnection con = url.openConnection();
+            if (threads > 1) {
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(threads, runnable -> {
+                        final Thread thread = new Thread(runnable, "http-opener");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                pending.add(executor.submit(() -> fetch(urlStr)));
+                while (pending.size() > threads * PENDING_REQUESTS_PER_THREAD) {
+                    emit(await(pending.remove()));
+                }
+            } else if (cacheDir != null) {
+                emit(fetch(urlStr));
+            } else {
+                final URLConnection con = connect(urlStr, null, (connection, responseCode) -> connection);
+                try (Reader reader = new InputStreamReader(openBody(con), getCharset(con))) {
+                    getReceiver().process(reader);
+                }
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    @Override
+    protected void onResetStream() {
+        emitPending();
+    }
+
+    @Override
+    protected void onCloseStream() {
+        try {
+            emitPending();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    private void emitPending() {
+        try {
+            while (!pending.isEmpty()) {
+                emit(await(pending.remove()));
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private void emit(final Response response) throws IOException {
+        try (Reader reader = new InputStreamReader(
+                new ByteArrayInputStream(response.body), response.charset)) {
+            getReceiver().process(reader);
+        }
+    }
+
+    private Response fetch(final String urlStr) throws IOException {
+        final Properties cached = cacheDir == null ? null : readCacheEntry(urlStr);
+        final String cachedETag = cached == null ? null : cached.getProperty(CACHE_ETAG_KEY);
+        final Response response = connect(urlStr, cachedETag, (con, responseCode) -> {
+            if (cachedETag != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                IOUtils.closeQuietly(((HttpURLConnection) con).getErrorStream());
+                return null;
+            }
+            // Read the body while the request can still be retried:
+            try (InputStream body = openBody(con)) {
+                return new Response(IOUtils.toByteArray(body), getCharset(con), con.getHeaderField("ETag"));
+            }
+        });
+        if (response == null) {
+            return new Response(Files.readAllBytes(getCacheBody(urlStr, cachedETag)),
+                    cached.getProperty(CACHE_CHARSET_KEY), cachedETag);
+        }
+        if (cacheDir != null && response.eTag != null) {
+            writeCacheEntry(urlStr, response.eTag, response, cachedETag);
+        }
+        return response;
+    }
+
+    /**
+     * Sends a request and passes the response to a response reader. Failed
+     * requests and responses which the reader fails to read are retried with
+     * an increasing delay.
+     */
+    private <T> T connect(final String urlStr, final String eTag,
+            final ResponseReader<T> responseReader) throws IOException {
+        int attempt = 0;
+        while (true) {
+            final URLConnection con = new URL(urlStr).openConnection();
+            con.setConnectTimeout(connectTimeout);
+            con.setReadTimeout(readTimeout);
             con.addRequestProperty("Accept", accept);
             con.addRequestProperty("Accept-Charset", encoding);
-            String enc = con.getContentEncoding();
-            if (enc == null) {
-                enc = encoding;
+            con.addRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+            if (eTag != null) {
+                con.addRequestProperty("If-None-Match", eTag);
+            }
+            final int responseCode;
+            try {
+                responseCode = getResponseCode(con);
+                if (responseCode < HttpURLConnection.HTTP_BAD_REQUEST) {
+                    return responseReader.read(con, responseCode);
+                }
+                // Read the error response so that the connection can be reused:
+                final InputStream errorStream = ((HttpURLConnection) con).getErrorStream();
+                if (errorStream != null) {
+                    try (InputStream in = errorStream) {
+                        IOUtils.skip(in, Long.MAX_VALUE);
+                    }
+                }
+            } catch (final IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                awaitRetry(attempt++);
+                continue;
             }
-            getReceiver().process(new InputStreamReader(con.getInputStream(), enc));
-        } catch (IOException e) {
+            if (!isRetryable(responseCode) || attempt >= retries) {
+                throw new IOException("HTTP " + responseCode + " for " + urlStr);
+            }
+            awaitRetry(attempt++);
+        }
+    }
+
+    private static int getResponseCode(final URLConnection con) throws IOException {
+        if (con instanceof HttpURLConnection) {
+            return ((HttpURLConnection) con).getResponseCode();
+        }
+        con.connect();
+        return HttpURLConnection.HTTP_OK;
+    }
+
+    private static boolean isRetryable(final int responseCode) {
+        return responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR || responseCode == 429;
+    }
+
+    private void awaitRetry(final int attempt) {
+        try {
+            Thread.sleep((long) retryDelay << Math.min(attempt, 16));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new MetafactureException(e);
         }
     }
+
+    private static InputStream openBody(final URLConnection con) throws IOException {
+        final InputStream body = con.getInputStream();
+        final String contentEncoding = con.getContentEncoding();
+        if (contentEncoding == null) {
+            return body;
+        }
+        switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body);
+            case "deflate":
+                return new InflaterInputStream(body);
+            default:
+                return body;
+        }
+    }
+
+    private String getCharset(final URLConnection con) {
+        final String contentType = con.getContentType();
+        if (contentType != null) {
+            for (final String parameter : contentType.split(";")) {
+                final String trimmed = parameter.trim();
+                if (trimmed.toLowerCase().startsWith(CHARSET_PARAMETER)) {
+                    return trimmed.substring(CHARSET_PARAMETER.length()).replace("\"", "");
+                }
+            }
+        }
+        return encoding;
+    }
+
+    private Properties readCacheEntry(final String urlStr) throws IOException {
+        final Path entryFile = cacheDir.resolve(hash(urlStr) + ".properties");
+        if (!Files.exists(entryFile)) {
+            return null;
+        }
+        final Properties entry = new Properties();
+        try (InputStream in = Files.newInputStream(entryFile)) {
+            entry.load(in);
+        }
+        if (!urlStr.equals(entry.getProperty(CACHE_URL_KEY)) ||
+                !Files.exists(getCacheBody(urlStr, entry.getProperty(CACHE_ETAG_KEY)))) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a response in the cache. The body is stored in a file named
+     * after the url and the ETag, so a body file never changes once it has
+     * been written. The entry file, which refers to the current ETag, is
+     * replaced atomically.
+     */
+    private void writeCacheEntry(final String urlStr, final String eTag,
+            final Response response, final String previousETag) throws IOException {
+        Files.createDirectories(cacheDir);
+        final Path body = getCacheBody(urlStr, eTag);
+        final Path tempBody = Files.createTempFile(cacheDir, "body", ".tmp");
+        Files.write(tempBody, response.body);
+        Files.move(tempBody, body, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        final Properties entry = new Properties();
+        entry.setProperty(CACHE_URL_KEY, urlStr);
+        entry.setProperty(CACHE_ETAG_KEY, eTag);
+        entry.setProperty(CACHE_CHARSET_KEY, response.charset);
+        final Path tempEntry = Files.createTempFile(cacheDir, "entry", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempEntry)) {
+            entry.store(out, null);
+        }
+        Files.move(tempEntry, cacheDir.resolve(hash(urlStr) + ".properties"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (previousETag != null && !previousETag.equals(eTag)) {
+            Files.deleteIfExists(getCacheBody(urlStr, previousETag));
+        }
+    }
+
+    private Path getCacheBody(final String urlStr, final String eTag) {
+        return cacheDir.resolve(hash(urlStr + '\n' + eTag) + ".body");
+    }
+
+    private static String hash(final String value) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private static Response await(final Future<Response> response) throws IOException {
+        try {
+            return response.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetafactureException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new MetafactureException(e.getCause());
+        }
+    }
+
+    /**
+     * Reads a successful response within the retries of a request.
+     */
+    private interface ResponseReader<T> {
+
+        T read(URLConnection con, int responseCode) throws IOException;
+
+    }
+
+    /**
+     * The decompressed body of a response, its charset and its ETag.
+     */
+    private static final class Response {
+
+        private final byte[] body;
+        private final String charset;
+        private final String eTag;
+
+        Response(final byte[] body, final String charset, final String eTag) {
+            this.body = body;
+            this.charset = charset;
+            this.eTag = eTag;
+        }
+
+    }
+
 }
@@ -26,6 +26,7 @@
 import org.metafacture.framework.annotations.In;
 import org.metafacture.framework.annotations.Out;
 import org.metafacture.framework.helpers.DefaultObjectPipe;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
 
 /**
  * Processes input from a reader line by line.
@@ -41,11 +42,42 @@
         extends DefaultObjectPipe<Reader, ObjectReceiver<String>> {
     private static final int BUFFER_SIZE = 1024 * 1024 * 16;
 
+    private Checkpoint checkpoint;
+    private int checkpointInterval = Checkpoint.DEFAULT_INTERVAL;
+
+    /**
+     * Sets the state file of a checkpoint. See
+     * {@link RecordReader#setCheckpoint(String)}.
+     *
+     * @param stateFile path of the state file
+     */
+    public void setCheckpoint(final String stateFile) {
+        checkpoint = Checkpoint.acquire(stateFile);
+        checkpoint.setInterval(checkpointInterval);
+    }
+
+    /**
+     * Sets the number of lines after which the checkpoint is committed.
+     * The default is {@value Checkpoint#DEFAULT_INTERVAL}.
+     *
+     * @param checkpointInterval number of lines between commits
+     */
+    public void setCheckpointInterval(final int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+        if (checkpoint != null) {
+            checkpoint.setInterval(checkpointInterval);
+        }
+    }
+
     @Override
     public void process(final Reader reader) {
         assert !isClosed();
         assert null!=reader;
-        process(reader, getReceiver());
+        if (checkpoint == null) {
+            process(reader, getReceiver());
+        } else {
+            process(reader, new CheckpointedReceiver());
+        }
     }
 
     public static void process(final Reader reader, final ObjectReceiver<String> receiver) {
@@ -61,4 +93,26 @@ public static void process(final Reader reader, final ObjectReceiver<String> rec
         }
     }
 
+    @Override
+    protected void onCloseStream() {
+        if (checkpoint != null) {
+            checkpoint.release();
+        }
+    }
+
+    /**
+     * Skips the lines committed before and counts the processed lines.
+     */
+    private final class CheckpointedReceiver extends DefaultObjectReceiver<String> {
+
+        @Override
+        public void process(final String line) {
+            if (!checkpoint.skipRecord()) {
+                getReceiver().process(line);
+                checkpoint.recordProcessed();
+            }
+        }
+
+    }
+
 }
@@ -15,19 +15,33 @@
  */
 package org.metafacture.io;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.metafacture.commons.SizeUtil;
 import org.metafacture.framework.FluxCommand;
 import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.annotations.In;
 
 /**
+ * Writes objects to files. A new file is started on each
+ * {@link #resetStream()}, when a file reaches the size or number of objects
+ * set by {@link #setMaxFileSize(String)} and {@link #setMaxRecords(int)},
+ * and for each partition set by {@link #setPartitions(int)}. The variable
+ * {@code ${i}} in the path is replaced with the number of the file and
+ * {@code ${p}} with the number of the partition.
+ *
  * @param <T>
  *            object type
  *
@@ -42,25 +56,30 @@
     private static final String VAR = "${i}";
     private static final Pattern VAR_PATTERN = Pattern.compile(VAR, Pattern.LITERAL);
 
-    private String path;
-    private int count;
-    private Writer writer;
-    private boolean firstObject;
+    private static final String PARTITION_VAR = "${p}";
+    private static final Pattern PARTITION_VAR_PATTERN = Pattern.compile(PARTITION_VAR, Pattern.LITERAL);
+
+    private final String path;
+    private final boolean pathHasVar;
+    private List<OutputFile> files;
     private boolean closed;
 
     private String encoding = "UTF-8";
     private FileCompression compression = FileCompression.AUTO;
+    private int compressionLevel = FileCompression.DEFAULT_COMPRESSION_LEVEL;
+    private int compressionThreads = FileCompression.DEFAULT_COMPRESSION_THREADS;
+
+    private long maxFileSize;
+    private int maxRecords;
+    private int partitions = 1;
+    private Pattern partitionKey;
+    private Checkpoint checkpoint;
 
     public ObjectFileWriter(final String path) {
         super();
 
         this.path = path;
-        startNewFile();
-
-        final Matcher matcher = VAR_PATTERN.matcher(this.path);
-        if (!matcher.find()) {
-            this.path = this.path + VAR;
-        }
+        pathHasVar = VAR_PATTERN.matcher(path).find();
     }
 
     @Override
@@ -88,17 +107,128 @@ public void setCompression(final String compression) {
         setCompression(FileCompression.valueOf(compression.toUpperCase()));
     }
 
+    @Override
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    @Override
+    public void setCompressionLevel(final int compressionLevel) {
+        compression.checkCompressionLevel(compressionLevel);
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    @Override
+    public void setCompressionThreads(final int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Sets the size after which a new file is started, for instance
+     * &quot;1GB&quot;. The size is measured in encoded bytes before
+     * compression, and a file is closed after the object which reaches the
+     * size. The
+     * default is 0 which does not limit the file size.
+     *
+     * @param maxFileSize maximum size of a file
+     */
+    public void setMaxFileSize(final String maxFileSize) {
+        this.maxFileSize = SizeUtil.parseSize(maxFileSize);
+    }
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Sets the number of objects after which a new file is started. The
+     * default is 0 which does not limit the number of objects per file.
+     *
+     * @param maxRecords maximum number of objects in a file
+     */
+    public void setMaxRecords(final int maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Sets the number of partitions. Each object is written to the file of
+     * the partition selected by the hash code of its key (see
+     * {@link #setPartitionKey(String)}). The path must contain the variable
+     * {@code ${p}} which is replaced with the number of the partition. The
+     * default is 1.
+     *
+     * @param partitions number of partitions
+     */
+    public void setPartitions(final int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        if (partitions > 1 && !PARTITION_VAR_PATTERN.matcher(path).find()) {
+            throw new IllegalArgumentException("path must contain " + PARTITION_VAR + " for writing partitions");
+        }
+        this.partitions = partitions;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey == null ? null : partitionKey.pattern();
+    }
+
+    /**
+     * Sets a regular expression which selects the partition key from the
+     * string representation of an object. If the expression contains a
+     * group, the first group is the key, otherwise the whole match. Objects
+     * which do not match and all objects if no expression is set are
+     * partitioned by their whole string representation.
+     *
+     * @param partitionKey regular expression matching the key
+     */
+    public void setPartitionKey(final String partitionKey) {
+        this.partitionKey = Pattern.compile(partitionKey);
+    }
+
+    /**
+     * Sets the state file of a checkpoint. The files are flushed whenever
+     * the checkpoint is committed and their lengths are recorded. If an
+     * interrupted pipeline is resumed, the files are truncated to these
+     * lengths and appended to. Compressed files are written in independent
+     * blocks so that each commit ends at a block boundary. See
+     * {@link RecordReader#setCheckpoint(String)} for the reading stages.
+     *
+     * @param stateFile path of the state file
+     */
+    public void setCheckpoint(final String stateFile) {
+        checkpoint = Checkpoint.acquire(stateFile);
+        checkpoint.addOutput(() -> {
+            if (files != null) {
+                for (final OutputFile file : files) {
+                    file.commit();
+                }
+            }
+        });
+    }
+
     @Override
     public void process(final T obj) {
         assert !closed;
+        final String string = obj.toString();
+        final List<OutputFile> outputFiles = getFiles();
+        final OutputFile file = outputFiles.size() == 1 ? outputFiles.get(0) :
+            outputFiles.get(partitionOf(string, outputFiles.size()));
         try {
-            if (firstObject) {
-                writer.write(getHeader());
-                firstObject = false;
-            } else {
-                writer.write(getSeparator());
-            }
-            writer.write(obj.toString());
+            file.write(string);
         } catch (final IOException e) {
             throw new MetafactureException(e);
         }
@@ -106,60 +236,271 @@ public void process(final T obj) {
 
     @Override
     public void resetStream() {
+        for (final OutputFile file : getFiles()) {
+            file.close();
+            file.startNextOnReset();
+        }
+        closed = false;
+    }
+
+    @Override
+    public void closeStream() {
         if (!closed) {
             try {
-                if (!firstObject) {
-                    writer.write(getFooter());
+                for (final OutputFile file : getFiles()) {
+                    file.close();
                 }
-                writer.close();
-            } catch (final IOException e) {
-                throw new MetafactureException(e);
             } finally {
                 closed = true;
             }
+            if (checkpoint != null) {
+                checkpoint.release();
+                checkpoint = null;
+            }
         }
-        startNewFile();
-        ++count;
     }
 
-    @Override
-    public void closeStream() {
-        if (!closed) {
+    /**
+     * The files are created when the first object is written so that the
+     * settings made after constructing the writer apply to the first file.
+     */
+    private List<OutputFile> getFiles() {
+        if (files == null) {
+            files = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; ++i) {
+                files.add(new OutputFile(i));
+            }
+        }
+        return files;
+    }
+
+    private int partitionOf(final String string, final int count) {
+        String key = string;
+        if (partitionKey != null) {
+            final Matcher matcher = partitionKey.matcher(string);
+            if (matcher.find()) {
+                key = matcher.group(matcher.groupCount() > 0 ? 1 : 0);
+            }
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % count;
+    }
+
+    /**
+     * The first file is written to the unchanged path if the path does not
+     * contain {@code ${i}}. The following files are numbered from 0 then.
+     */
+    private String getFilePath(final int index, final int partition) {
+        String filePath;
+        if (pathHasVar) {
+            filePath = VAR_PATTERN.matcher(path).replaceAll(String.valueOf(index));
+        } else {
+            filePath = index == 0 ? path : path + (index - 1);
+        }
+        return PARTITION_VAR_PATTERN.matcher(filePath).replaceAll(String.valueOf(partition));
+    }
+
+    /**
+     * The sequence of files of a partition.
+     */
+    private final class OutputFile {
+
+        private final int partition;
+        private final String stateKey;
+        private int index;
+        private String filePath;
+        private Writer writer;
+        private OutputStream compressor;
+        private Charset charset;
+        private boolean createEmpty = true;
+        private boolean rolledOver;
+        private long size;
+        private int records;
+        private int unflushedRecords;
+        private long resumeLength = -1;
+
+        OutputFile(final int partition) {
+            this.partition = partition;
+            stateKey = "output." + path + "." + partition + ".";
+            if (checkpoint != null && checkpoint.isResuming() && getState("index") != null) {
+                index = Integer.parseInt(getState("index"));
+                createEmpty = Boolean.parseBoolean(getState("createEmpty"));
+                rolledOver = Boolean.parseBoolean(getState("rolledOver"));
+                size = Long.parseLong(getState("size"));
+                records = Integer.parseInt(getState("records"));
+                resumeLength = Long.parseLong(getState("length"));
+            }
+        }
+
+        void write(final String string) throws IOException {
+            if (writer == null) {
+                if (open()) {
+                    print(getSeparator());
+                } else {
+                    print(getHeader());
+                }
+            } else {
+                print(getSeparator());
+            }
+            print(string);
+            ++records;
+            unflushedRecords = recordWritten(writer, unflushedRecords);
+            if (maxRecords > 0 && records >= maxRecords || maxFileSize > 0 && size >= maxFileSize) {
+                close();
+                ++index;
+                rolledOver = true;
+            }
+        }
+
+        /**
+         * A reset directly after rolling over to a new file does not skip a
+         * file number.
+         */
+        void startNextOnReset() {
+            if (!rolledOver) {
+                ++index;
+            }
+            rolledOver = false;
+            createEmpty = true;
+        }
+
+        /**
+         * Flushes the file and records its state in the checkpoint.
+         */
+        void commit() throws IOException {
+            long length = resumeLength;
+            if (writer != null) {
+                if (writer instanceof AsyncWriter) {
+                    ((AsyncWriter) writer).sync();
+                } else {
+                    writer.flush();
+                }
+                if (compressor instanceof ParallelCompressorOutputStream) {
+                    ((ParallelCompressorOutputStream) compressor).finishBlock();
+                }
+                length = new File(filePath).length();
+            }
+            setState("index", String.valueOf(index));
+            setState("createEmpty", String.valueOf(createEmpty));
+            setState("rolledOver", String.valueOf(rolledOver));
+            setState("size", String.valueOf(size));
+            setState("records", String.valueOf(records));
+            setState("length", String.valueOf(length));
+        }
+
+        void close() {
             try {
-                if (!firstObject) {
-                    writer.write(getFooter());
+                if (writer == null && resumeLength >= 0) {
+                    // Complete the file which was open when the pipeline was interrupted:
+                    open();
+                }
+                if (writer != null) {
+                    print(getFooter());
+                    writer.close();
+                } else if (createEmpty) {
+                    // Create the file even if no objects were written:
+                    open();
+                    writer.close();
                 }
-                writer.close();
             } catch (final IOException e) {
                 throw new MetafactureException(e);
             } finally {
-                closed = true;
+                writer = null;
+                compressor = null;
+                createEmpty = false;
+                unflushedRecords = 0;
             }
         }
-    }
 
-    private void startNewFile() {
-        final Matcher matcher = VAR_PATTERN.matcher(this.path);
-        final String path = matcher.replaceAll(String.valueOf(count));
-        try {
-            final OutputStream file = new FileOutputStream(path);
+        private void print(final String string) throws IOException {
+            writer.write(string);
+            if (maxFileSize > 0) {
+                size += encodedLength(string);
+            }
+        }
+
+        /**
+         * Computes the number of bytes of a string in the encoding of the
+         * file. The length is computed for UTF-8 without encoding the string.
+         */
+        private long encodedLength(final String string) {
+            if (charset != StandardCharsets.UTF_8) {
+                return string.getBytes(charset).length;
+            }
+            long length = 0;
+            final int stringLength = string.length();
+            for (int i = 0; i < stringLength; ++i) {
+                final char c = string.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < stringLength &&
+                        Character.isLowSurrogate(string.charAt(i + 1))) {
+                    length += 4;
+                    ++i;
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates are replaced with '?'
+                    length += 1;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        private String getState(final String key) {
+            return checkpoint.getValue(stateKey + key);
+        }
+
+        private void setState(final String key, final String value) {
+            checkpoint.setValue(stateKey + key, value);
+        }
+
+        /**
+         * Opens the current file of the partition. If the pipeline is
+         * resumed, the file is truncated to the length recorded in the
+         * checkpoint and appended to.
+         *
+         * @return true if the file is appended to
+         */
+        private boolean open() {
+            filePath = getFilePath(index, partition);
+            final boolean append = resumeLength >= 0;
+            if (!append) {
+                size = 0;
+                records = 0;
+            }
+            rolledOver = false;
             try {
-                final OutputStream compressor = compression.createCompressor(file, path);
+                if (append) {
+                    try (RandomAccessFile file = new RandomAccessFile(filePath, "rw")) {
+                        file.setLength(resumeLength);
+                    }
+                    resumeLength = -1;
+                }
+                final OutputStream file = new FileOutputStream(filePath, append);
                 try {
-                    writer = new OutputStreamWriter(compressor, encoding);
-                    firstObject = true;
-                    closed = false;
+                    // Commits end the current block of a block compressor:
+                    final int threads = checkpoint == null ? compressionThreads : Math.max(2, compressionThreads);
+                    compressor = compression.createCompressor(file, filePath,
+                            compressionLevel, threads);
+                    try {
+                        writer = createWriter(new OutputStreamWriter(compressor, encoding));
+                        charset = Charset.forName(encoding);
+                    } catch (final IOException e) {
+                        compressor.close();
+                        throw e;
+                    }
                 } catch (final IOException e) {
-                    compressor.close();
+                    file.close();
                     throw e;
                 }
             } catch (final IOException e) {
-                file.close();
-                throw e;
+                throw new MetafactureException("Error creating file '" + filePath + "'.", e);
             }
-        } catch (final IOException e) {
-            throw new MetafactureException("Error creating file '" + path + "'.", e);
+            return append;
         }
+
     }
 
 }
@@ -15,9 +15,14 @@
  */
 package org.metafacture.io;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.annotations.Description;
 import org.metafacture.framework.annotations.In;
 
@@ -37,6 +42,7 @@
 
     private boolean firstObject = true;
     private boolean closed;
+    private Writer writer;
 
     @Override
     public String getEncoding() {
@@ -63,30 +69,81 @@ public void setCompression(final String compression) {
         throw new UnsupportedOperationException(SET_COMPRESSION_ERROR);
     }
 
+    @Override
+    public int getCompressionLevel() {
+        return FileCompression.DEFAULT_COMPRESSION_LEVEL;
+    }
+
+    @Override
+    public void setCompressionLevel(final int compressionLevel) {
+        throw new UnsupportedOperationException(SET_COMPRESSION_ERROR);
+    }
+
+    @Override
+    public int getCompressionThreads() {
+        return FileCompression.DEFAULT_COMPRESSION_THREADS;
+    }
+
+    @Override
+    public void setCompressionThreads(final int compressionThreads) {
+        throw new UnsupportedOperationException(SET_COMPRESSION_ERROR);
+    }
+
     @Override
     public void process(final T obj) {
         assert !closed;
-
-        if (firstObject) {
-            System.out.print(getHeader());
-            firstObject = false;
-        } else {
-            System.out.print(getSeparator());
+        try {
+            if (writer == null && getAsync()) {
+                writer = createWriter(new OutputStreamWriter(
+                        new CloseShieldOutputStream(System.out), Charset.defaultCharset()));
+            }
+            if (firstObject) {
+                print(getHeader());
+                firstObject = false;
+            } else {
+                print(getSeparator());
+            }
+            print(String.valueOf(obj));
+            recordWritten(writer != null ? writer : System.out);
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
         }
-        System.out.print(obj);
     }
 
     @Override
     public void resetStream() {
         firstObject = true;
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (final IOException e) {
+                throw new MetafactureException(e);
+            }
+        }
     }
 
     @Override
     public void closeStream() {
-        if (!firstObject) {
-            System.out.print(getFooter());
+        try {
+            if (!firstObject) {
+                print(getFooter());
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        } finally {
+            closed = true;
+        }
+    }
+
+    private void print(final String string) throws IOException {
+        if (writer != null) {
+            writer.write(string);
+        } else {
+            System.out.print(string);
         }
-        closed = true;
     }
 
 }
@@ -42,6 +42,7 @@
 public final class ObjectWriter<T> implements ConfigurableObjectWriter<T> {
 
     private static final String STDOUT = "stdout";
+    private static final String CHECKPOINT_ERROR = "Cannot resume output written to standard out";
     private static final List<String> ARGUMENTS = Collections.unmodifiableList(Arrays.asList(STDOUT, "PATH"));
 
     private final ConfigurableObjectWriter<T> objectWriter;
@@ -83,6 +84,66 @@ public void setCompression(final String compression) {
         objectWriter.setCompression(compression);
     }
 
+    @Override
+    public int getCompressionLevel() {
+        return objectWriter.getCompressionLevel();
+    }
+
+    @Override
+    public void setCompressionLevel(final int compressionLevel) {
+        objectWriter.setCompressionLevel(compressionLevel);
+    }
+
+    @Override
+    public int getCompressionThreads() {
+        return objectWriter.getCompressionThreads();
+    }
+
+    @Override
+    public void setCompressionThreads(final int compressionThreads) {
+        objectWriter.setCompressionThreads(compressionThreads);
+    }
+
+    @Override
+    public boolean getAsync() {
+        return objectWriter.getAsync();
+    }
+
+    @Override
+    public void setAsync(final boolean async) {
+        objectWriter.setAsync(async);
+    }
+
+    @Override
+    public int getBufferSize() {
+        return objectWriter.getBufferSize();
+    }
+
+    @Override
+    public void setBufferSize(final String bufferSize) {
+        objectWriter.setBufferSize(bufferSize);
+    }
+
+    @Override
+    public long getFlushInterval() {
+        return objectWriter.getFlushInterval();
+    }
+
+    @Override
+    public void setFlushInterval(final long flushInterval) {
+        objectWriter.setFlushInterval(flushInterval);
+    }
+
+    @Override
+    public int getFlushRecords() {
+        return objectWriter.getFlushRecords();
+    }
+
+    @Override
+    public void setFlushRecords(final int flushRecords) {
+        objectWriter.setFlushRecords(flushRecords);
+    }
+
 
     @Override
     public String getHeader() {
@@ -114,6 +175,20 @@ public void setSeparator(final String separator) {
         objectWriter.setSeparator(separator);
     }
 
+    /**
+     * Sets the state file of a checkpoint. Only output written to a file can
+     * be resumed.
+     *
+     * @param stateFile path of the state file
+     * @see ObjectFileWriter#setCheckpoint(String)
+     */
+    public void setCheckpoint(final String stateFile) {
+        if (!(objectWriter instanceof ObjectFileWriter)) {
+            throw new UnsupportedOperationException(CHECKPOINT_ERROR);
+        }
+        ((ObjectFileWriter<T>) objectWriter).setCheckpoint(stateFile);
+    }
+
     @Override
     public void process(final T obj) {
         objectWriter.process(obj);
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses blocks of the written data independently on several threads
+ * and writes the compressed blocks in order. Each block is a complete
+ * compressed stream, for example a gzip member or an xz stream. The gzip and
+ * xz formats allow such streams to be concatenated, so standard tools read
+ * the output like a file compressed in one piece. Readers based on
+ * commons-compress must be configured to decompress concatenated streams
+ * ({@code open-file(decompressConcatenated="true")}).
+ * <p>
+ * Blocks end when they are full, on {@link #finishBlock()} and on
+ * {@link #close()}. A plain {@link #flush()} does not end the current block,
+ * so frequent flushing does not result in many small blocks. If no data is
+ * written at all, an empty block is compressed on close so that the output
+ * is a valid compressed stream.
+ */
+final class ParallelCompressorOutputStream extends OutputStream {
+
+    private static final int PENDING_BLOCKS_PER_THREAD = 2;
+
+    /**
+     * Creates a compressor which writes a complete compressed stream to
+     * {@code out} when it is closed.
+     */
+    @FunctionalInterface
+    interface CompressorFactory {
+
+        OutputStream create(OutputStream out) throws IOException;
+
+    }
+
+    private final OutputStream out;
+    private final CompressorFactory compressorFactory;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final int blockSize;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private boolean submitted;
+    private boolean closed;
+
+    ParallelCompressorOutputStream(final OutputStream out,
+            final CompressorFactory compressorFactory, final int threads, final int blockSize) {
+        this.out = out;
+        this.compressorFactory = compressorFactory;
+        this.blockSize = blockSize;
+        maxPending = threads * PENDING_BLOCKS_PER_THREAD;
+        block = new byte[blockSize];
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "block-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public synchronized void write(final int b) throws IOException {
+        if (blockLength == block.length) {
+            submitBlock();
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (blockLength == block.length) {
+                submitBlock();
+            }
+            final int count = Math.min(remaining, block.length - blockLength);
+            System.arraycopy(b, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Writes all completed blocks to the underlying stream and flushes it.
+     * Data of the current block remains buffered until the block is full or
+     * ended by {@link #finishBlock()}.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNextBlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Compresses the data written so far as a block of its own and writes
+     * all compressed blocks to the underlying stream. Afterwards the
+     * underlying stream ends with a complete compressed stream.
+     *
+     * @throws IOException if compressing or writing fails
+     */
+    public synchronized void finishBlock() throws IOException {
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                if (!submitted) {
+                    submitBlock();
+                }
+                finishBlock();
+            } finally {
+                executor.shutdownNow();
+                out.close();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        submitted = true;
+        pending.add(executor.submit(() -> {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+            try (OutputStream compressor = compressorFactory.create(compressed)) {
+                compressor.write(data, 0, length);
+            }
+            return compressed.toByteArray();
+        }));
+        block = new byte[blockSize];
+        blockLength = 0;
+        while (pending.size() > maxPending) {
+            writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        final Future<byte[]> next = pending.remove();
+        try {
+            out.write(next.get());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+}
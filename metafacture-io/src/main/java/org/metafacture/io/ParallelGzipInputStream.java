@@ -0,0 +1,478 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses gzip data consisting of one or more members on several
+ * threads. BGZF files are multi-member gzip files and are handled as well.
+ * <p>
+ * The compressed input is read on the calling thread and cut into segments
+ * of about {@link #DEFAULT_SEGMENT_SIZE} bytes. A segment ends where the
+ * bytes look like the header of a gzip member. The segments are inflated on
+ * worker threads and the decompressed bytes are returned in order. The CRC
+ * and size of every member are checked.
+ * <p>
+ * A cut is only a guess: compressed data may contain bytes which look like a
+ * member header, and a single large member contains no headers at all. If a
+ * segment ends inside a member, the state of its inflater is kept and the
+ * following segments are inflated with it on the calling thread until the
+ * member ends. Hence, the output is always correct, but files with a single
+ * member are not decompressed faster than by a sequential decompressor.
+ */
+final class ParallelGzipInputStream extends InputStream {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final int MAX_SEGMENT_SIZE_FACTOR = 4;
+    private static final int PENDING_SEGMENTS_PER_THREAD = 2;
+
+    private static final int MIN_HEADER_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 8;
+    private static final int ID1 = 0x1f;
+    private static final int ID2 = 0x8b;
+    private static final int CM_DEFLATE = 8;
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+    private static final int FRESERVED = 0xe0;
+    private static final int MAX_OS = 13;
+    private static final int OS_UNKNOWN = 0xff;
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final int segmentSize;
+    private final int maxSegmentSize;
+    private final int maxPending;
+
+    private final Deque<Segment> pending = new ArrayDeque<>();
+    private final byte[] input;
+    private int inputLength;
+    private boolean endOfInput;
+
+    private MemberDecoder carry;
+
+    private byte[] output = new byte[0];
+    private int outputPosition;
+    private boolean closed;
+
+    ParallelGzipInputStream(final InputStream in, final int threads) {
+        this(in, threads, DEFAULT_SEGMENT_SIZE);
+    }
+
+    ParallelGzipInputStream(final InputStream in, final int threads,
+            final int segmentSize) {
+        this.in = in;
+        this.segmentSize = segmentSize;
+        maxSegmentSize = segmentSize * MAX_SEGMENT_SIZE_FACTOR;
+        maxPending = threads * PENDING_SEGMENTS_PER_THREAD;
+        input = new byte[maxSegmentSize + MIN_HEADER_LENGTH];
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "gzip-inflater");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillOutput()) {
+            return -1;
+        }
+        return output[outputPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillOutput()) {
+            return -1;
+        }
+        final int count = Math.min(len, output.length - outputPosition);
+        System.arraycopy(output, outputPosition, b, off, count);
+        outputPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return output.length - outputPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            executor.shutdownNow();
+            for (final Segment segment : pending) {
+                segment.discard();
+            }
+            pending.clear();
+            if (carry != null) {
+                carry.end();
+            }
+            in.close();
+        }
+    }
+
+    private boolean fillOutput() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (outputPosition == output.length) {
+            final byte[] next = nextOutput();
+            if (next == null) {
+                return false;
+            }
+            output = next;
+            outputPosition = 0;
+        }
+        return true;
+    }
+
+    private byte[] nextOutput() throws IOException {
+        Segment segment;
+        while (pending.size() < maxPending && (segment = readSegment()) != null) {
+            final Segment submitted = segment;
+            segment.result = executor.submit(() -> submitted.complete(decodeSegment(submitted.bytes)));
+            pending.add(segment);
+        }
+        segment = pending.poll();
+        if (segment == null) {
+            if (carry != null) {
+                throw new EOFException("Unexpected end of gzip input");
+            }
+            return null;
+        }
+        if (carry != null) {
+            segment.discard();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            carry.decode(segment.bytes, 0, segment.bytes.length, out);
+            if (carry.isAtMemberBoundary()) {
+                carry.end();
+                carry = null;
+            }
+            return out.toByteArray();
+        }
+        final SegmentResult result = await(segment.result);
+        if (result.decoder.isAtMemberBoundary()) {
+            result.decoder.end();
+        } else {
+            carry = result.decoder;
+        }
+        return result.output;
+    }
+
+    private Segment readSegment() throws IOException {
+        while (inputLength < input.length && !endOfInput) {
+            final int count = in.read(input, inputLength, input.length - inputLength);
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                inputLength += count;
+            }
+        }
+        if (inputLength == 0) {
+            return null;
+        }
+        final int cut = findCut();
+        final Segment segment = new Segment(Arrays.copyOf(input, cut));
+        System.arraycopy(input, cut, input, 0, inputLength - cut);
+        inputLength -= cut;
+        return segment;
+    }
+
+    private int findCut() {
+        final int searchEnd = Math.min(inputLength - MIN_HEADER_LENGTH, maxSegmentSize);
+        for (int i = segmentSize; i <= searchEnd; ++i) {
+            if (looksLikeHeader(input, i)) {
+                return i;
+            }
+        }
+        return Math.min(inputLength, maxSegmentSize);
+    }
+
+    private static boolean looksLikeHeader(final byte[] bytes, final int offset) {
+        final int xfl = bytes[offset + 8] & 0xff;
+        final int os = bytes[offset + 9] & 0xff;
+        return (bytes[offset] & 0xff) == ID1
+                && (bytes[offset + 1] & 0xff) == ID2
+                && bytes[offset + 2] == CM_DEFLATE
+                && (bytes[offset + 3] & FRESERVED) == 0
+                && (xfl == 0 || xfl == 2 || xfl == 4)
+                && (os <= MAX_OS || os == OS_UNKNOWN);
+    }
+
+    private static SegmentResult decodeSegment(final byte[] bytes) throws IOException {
+        final MemberDecoder decoder = new MemberDecoder();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+        try {
+            decoder.decode(bytes, 0, bytes.length, out);
+        } catch (final IOException | RuntimeException e) {
+            decoder.end();
+            throw e;
+        }
+        return new SegmentResult(out.toByteArray(), decoder);
+    }
+
+    private static SegmentResult await(final Future<SegmentResult> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Compressed bytes of a segment and the future for its decompressed bytes.
+     * The inflater of a segment which is not needed any more is ended as soon
+     * as it is no longer used.
+     */
+    private static final class Segment {
+
+        private final byte[] bytes;
+        private Future<SegmentResult> result;
+        private SegmentResult completed;
+        private boolean discarded;
+
+        Segment(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        synchronized SegmentResult complete(final SegmentResult segmentResult) {
+            if (discarded) {
+                segmentResult.decoder.end();
+            } else {
+                completed = segmentResult;
+            }
+            return segmentResult;
+        }
+
+        synchronized void discard() {
+            discarded = true;
+            result.cancel(false);
+            if (completed != null) {
+                completed.decoder.end();
+                completed = null;
+            }
+        }
+
+    }
+
+    /**
+     * Decompressed bytes of a segment and the decoder which produced them.
+     */
+    private static final class SegmentResult {
+
+        private final byte[] output;
+        private final MemberDecoder decoder;
+
+        SegmentResult(final byte[] output, final MemberDecoder decoder) {
+            this.output = output;
+            this.decoder = decoder;
+        }
+
+    }
+
+    /**
+     * Decodes a sequence of gzip members which may be passed in arbitrary
+     * pieces.
+     */
+    private static final class MemberDecoder {
+
+        private static final int WINDOW_SIZE = 64 * 1024;
+
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        private final byte[] trailer = new byte[TRAILER_LENGTH];
+        private final byte[] window = new byte[WINDOW_SIZE];
+
+        private State state = State.HEADER;
+        private int trailerLength;
+
+        private enum State { HEADER, DEFLATE, TRAILER }
+
+        boolean isAtMemberBoundary() {
+            return state == State.HEADER && header.size() == 0;
+        }
+
+        void decode(final byte[] bytes, final int offset, final int length,
+                final ByteArrayOutputStream out) throws IOException {
+            final int end = offset + length;
+            int position = offset;
+            while (position < end) {
+                switch (state) {
+                    case HEADER:
+                        position = readHeader(bytes, position, end);
+                        break;
+                    case DEFLATE:
+                        position = inflate(bytes, position, end, out);
+                        break;
+                    case TRAILER:
+                        position = readTrailer(bytes, position, end);
+                        break;
+                    default:
+                        throw new AssertionError(state);
+                }
+            }
+        }
+
+        void end() {
+            inflater.end();
+        }
+
+        private int readHeader(final byte[] bytes, final int start, final int end)
+                throws ZipException {
+            int position = start;
+            while (position < end) {
+                header.write(bytes[position]);
+                position += 1;
+                if (headerLength(header.toByteArray()) == header.size()) {
+                    header.reset();
+                    state = State.DEFLATE;
+                    break;
+                }
+            }
+            return position;
+        }
+
+        private static int headerLength(final byte[] bytes) throws ZipException {
+            final int length = bytes.length;
+            if (length >= 2 && ((bytes[0] & 0xff) != ID1 || (bytes[1] & 0xff) != ID2)) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (length < MIN_HEADER_LENGTH) {
+                return -1;
+            }
+            if (bytes[2] != CM_DEFLATE || (bytes[3] & FRESERVED) != 0) {
+                throw new ZipException("Unsupported GZIP header");
+            }
+            final int flags = bytes[3];
+            int position = MIN_HEADER_LENGTH;
+            if ((flags & FEXTRA) != 0) {
+                if (length < position + 2) {
+                    return -1;
+                }
+                position += 2 + ((bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                position = skipZeroTerminated(bytes, position);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                position = skipZeroTerminated(bytes, position);
+            }
+            if ((flags & FHCRC) != 0) {
+                position += 2;
+            }
+            return position <= length ? position : -1;
+        }
+
+        /**
+         * Returns the position after the zero byte terminating the string
+         * starting at {@code start} or a position beyond the end of
+         * {@code bytes} if the string is not terminated yet.
+         */
+        private static int skipZeroTerminated(final byte[] bytes, final int start) {
+            for (int i = start; i < bytes.length; ++i) {
+                if (bytes[i] == 0) {
+                    return i + 1;
+                }
+            }
+            return Math.max(start, bytes.length) + 1;
+        }
+
+        private int inflate(final byte[] bytes, final int start, final int end,
+                final ByteArrayOutputStream out) throws ZipException {
+            inflater.setInput(bytes, start, end - start);
+            try {
+                while (!inflater.finished() && !inflater.needsInput()) {
+                    final int count = inflater.inflate(window);
+                    if (count == 0 && inflater.needsDictionary()) {
+                        throw new ZipException("Corrupt GZIP data");
+                    }
+                    crc.update(window, 0, count);
+                    out.write(window, 0, count);
+                }
+            } catch (final DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+            if (inflater.finished()) {
+                state = State.TRAILER;
+                return end - inflater.getRemaining();
+            }
+            return end;
+        }
+
+        private int readTrailer(final byte[] bytes, final int start, final int end)
+                throws ZipException {
+            final int count = Math.min(end - start, TRAILER_LENGTH - trailerLength);
+            System.arraycopy(bytes, start, trailer, trailerLength, count);
+            trailerLength += count;
+            if (trailerLength == TRAILER_LENGTH) {
+                if (readUInt32(trailer, 0) != crc.getValue()) {
+                    throw new ZipException("Corrupt GZIP trailer: CRC mismatch");
+                }
+                if (readUInt32(trailer, 4) != (inflater.getBytesWritten() & 0xffffffffL)) {
+                    throw new ZipException("Corrupt GZIP trailer: size mismatch");
+                }
+                inflater.reset();
+                crc.reset();
+                trailerLength = 0;
+                state = State.HEADER;
+            }
+            return start + count;
+        }
+
+        private static long readUInt32(final byte[] bytes, final int offset) {
+            return (bytes[offset] & 0xffL)
+                    | (bytes[offset + 1] & 0xffL) << 8
+                    | (bytes[offset + 2] & 0xffL) << 16
+                    | (bytes[offset + 3] & 0xffL) << 24;
+        }
+
+    }
+
+}
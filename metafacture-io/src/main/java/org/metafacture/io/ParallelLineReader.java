@@ -0,0 +1,360 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.metafacture.framework.FluxCommand;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.annotations.Description;
+import org.metafacture.framework.annotations.In;
+import org.metafacture.framework.annotations.Out;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+
+/**
+ * Reads an uncompressed file line by line using several threads. The file is
+ * memory-mapped and split into ranges of about {@link #setChunkSize(int)
+ * chunkSize} bytes which end at line breaks. The ranges are decoded on
+ * {@link #setThreads(int) threads} worker threads. The lines are always
+ * emitted on the thread calling {@link #process(String)}:
+ * <ul>
+ *   <li>if {@link #setOrdered(boolean) ordered} is true (the default), in the
+ *   order in which they appear in the file,
+ *   <li>otherwise, range by range in the order in which the ranges finish
+ *   decoding. The lines of a range are emitted together and in order. Use
+ *   {@code thread-object-tee} to process the lines on parallel downstream
+ *   workers.
+ * </ul>
+ * Lines are terminated by line feed, carriage return or carriage return
+ * followed by line feed, as in {@link LineReader}. The encoding must encode
+ * the line feed as a single byte 0x0a, which is the case for UTF-8 and the
+ * ISO-8859 family but not for UTF-16. A leading UTF-8 byte order mark is
+ * skipped.
+ * <p>
+ * The input is a file name, so the reader can be used directly after
+ * {@code read-dir}. Compressed files are not supported; use
+ * {@code open-file} and {@code as-lines} for those.
+ */
+@Description("Reads an uncompressed file line by line. The file is memory-mapped and decoded on several threads.")
+@In(String.class)
+@Out(String.class)
+@FluxCommand("as-lines-parallel")
+public final class ParallelLineReader
+        extends DefaultObjectPipe<String, ObjectReceiver<String>> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte[] UTF8_BOM = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf};
+    private static final int PENDING_RANGES_PER_THREAD = 2;
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private Charset charset = StandardCharsets.UTF_8;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean ordered = true;
+
+    private ExecutorService executor;
+
+    public String getEncoding() {
+        return charset.name();
+    }
+
+    /**
+     * Sets the encoding of the files. The encoding must encode the line feed
+     * character as the single byte 0x0a.
+     *
+     * @param encoding name of the encoding
+     */
+    public void setEncoding(final String encoding) {
+        final Charset newCharset = Charset.forName(encoding);
+        if (!Arrays.equals(new byte[] {LINE_FEED}, "\n".getBytes(newCharset))) {
+            throw new IllegalArgumentException(
+                    "encoding does not encode line feeds as single bytes: " + encoding);
+        }
+        this.charset = newCharset;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used for decoding. The default is the number
+     * of available processors. This parameter must be set before the first
+     * file is processed.
+     *
+     * @param threads number of decoding threads
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the approximate size in bytes of the ranges into which the files
+     * are split. A range is extended to the end of the line in which it would
+     * end otherwise. The default is {@value #DEFAULT_CHUNK_SIZE}.
+     *
+     * @param chunkSize size of the ranges in bytes
+     */
+    public void setChunkSize(final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean getOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Controls whether the lines are emitted in file order. If false, the lines
+     * of each range are emitted as soon as the range is decoded. The default
+     * is true.
+     *
+     * @param ordered true if lines should be emitted in file order
+     */
+    public void setOrdered(final boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    @Override
+    public void process(final String file) {
+        assert !isClosed();
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                StandardOpenOption.READ)) {
+            if (ordered) {
+                processOrdered(channel);
+            } else {
+                processUnordered(channel);
+            }
+        } catch (final IOException e) {
+            throw new MetafactureException(e);
+        }
+    }
+
+    private void processOrdered(final FileChannel channel) throws IOException {
+        final Deque<Future<List<String>>> pending = new ArrayDeque<>();
+        final int maxPending = threads * PENDING_RANGES_PER_THREAD;
+        long start = skipBom(channel);
+        final long size = channel.size();
+        while (start < size) {
+            final long end = findRangeEnd(channel, start);
+            pending.add(getExecutor().submit(newDecodeTask(channel, start, end)));
+            if (pending.size() >= maxPending) {
+                emitLines(await(pending.remove()));
+            }
+            start = end;
+        }
+        while (!pending.isEmpty()) {
+            emitLines(await(pending.remove()));
+        }
+    }
+
+    private void processUnordered(final FileChannel channel) throws IOException {
+        final CompletionService<List<String>> completionService =
+                new ExecutorCompletionService<>(getExecutor());
+        final int maxPending = threads * PENDING_RANGES_PER_THREAD;
+        int pending = 0;
+        long start = skipBom(channel);
+        final long size = channel.size();
+        while (start < size) {
+            final long end = findRangeEnd(channel, start);
+            completionService.submit(newDecodeTask(channel, start, end));
+            pending += 1;
+            if (pending >= maxPending) {
+                emitLines(await(take(completionService)));
+                pending -= 1;
+            }
+            start = end;
+        }
+        for (; pending > 0; --pending) {
+            emitLines(await(take(completionService)));
+        }
+    }
+
+    private void emitLines(final List<String> lines) {
+        final ObjectReceiver<String> receiver = getReceiver();
+        for (final String line : lines) {
+            receiver.process(line);
+        }
+    }
+
+    private long skipBom(final FileChannel channel) throws IOException {
+        if (!StandardCharsets.UTF_8.equals(charset)) {
+            return 0;
+        }
+        final ByteBuffer head = ByteBuffer.allocate(UTF8_BOM.length);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // Read until the buffer is full or the file ends
+        }
+        return Arrays.equals(UTF8_BOM, head.array()) ? UTF8_BOM.length : 0;
+    }
+
+    /**
+     * Returns the position after the first line feed at or after
+     * {@code start + chunkSize} or the size of the file if there is none.
+     */
+    private long findRangeEnd(final FileChannel channel, final long start)
+            throws IOException {
+        final long size = channel.size();
+        long position = start + chunkSize - 1;
+        final ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < size) {
+            scanBuffer.clear();
+            final int count = channel.read(scanBuffer, position);
+            for (int i = 0; i < count; ++i) {
+                if (scanBuffer.get(i) == LINE_FEED) {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+        return size;
+    }
+
+    private DecodeTask newDecodeTask(final FileChannel channel, final long start,
+            final long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new MetafactureException("line is too long to be mapped at byte " + start);
+        }
+        return new DecodeTask(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                end - start), charset);
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread thread = new Thread(runnable, "as-lines-parallel");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private static Future<List<String>> take(
+            final CompletionService<List<String>> completionService) {
+        try {
+            return completionService.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetafactureException(e);
+        }
+    }
+
+    private static List<String> await(final Future<List<String>> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetafactureException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new MetafactureException(e.getCause());
+        }
+    }
+
+    @Override
+    protected void onResetStream() {
+        shutdownExecutor();
+    }
+
+    @Override
+    protected void onCloseStream() {
+        shutdownExecutor();
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Copies a mapped range of the file to the heap, splits it into lines and
+     * decodes them.
+     */
+    private static final class DecodeTask implements Callable<List<String>> {
+
+        private final ByteBuffer range;
+        private final Charset charset;
+
+        DecodeTask(final ByteBuffer range, final Charset charset) {
+            this.range = range;
+            this.charset = charset;
+        }
+
+        @Override
+        public List<String> call() {
+            final byte[] bytes = new byte[range.remaining()];
+            range.get(bytes);
+            final List<String> lines = new ArrayList<>();
+            int lineStart = 0;
+            int i = 0;
+            while (i < bytes.length) {
+                final byte b = bytes[i];
+                if (b == LINE_FEED || b == CARRIAGE_RETURN) {
+                    lines.add(new String(bytes, lineStart, i - lineStart, charset));
+                    i += 1;
+                    if (b == CARRIAGE_RETURN && i < bytes.length && bytes[i] == LINE_FEED) {
+                        i += 1;
+                    }
+                    lineStart = i;
+                } else {
+                    i += 1;
+                }
+            }
+            if (lineStart < bytes.length) {
+                lines.add(new String(bytes, lineStart, bytes.length - lineStart, charset));
+            }
+            return lines;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a stream on a separate thread ahead of the consumer. The read-ahead
+ * thread fills a ring of {@value #BUFFER_COUNT} buffers while the consumer
+ * processes the buffers filled before. This lets an expensive source such
+ * as a bzip2 or xz decompressor run in parallel with the pipeline.
+ * <p>
+ * Exceptions thrown by the source are rethrown by the {@code read} methods
+ * once the consumer has read all bytes before the failure.
+ */
+final class ReadAheadInputStream extends InputStream {
+
+    static final int BUFFER_COUNT = 4;
+
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    private static final Chunk END_OF_STREAM = new Chunk(new byte[0], 0, null);
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<Chunk> filledChunks = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final Thread readAheadThread;
+    private volatile boolean reading;
+
+    private Chunk current = new Chunk(new byte[0], 0, null);
+    private int position;
+    private boolean closed;
+
+    /**
+     * Creates a stream which reads up to {@code readAhead} bytes ahead of the
+     * consumer.
+     *
+     * @param source the stream to read from
+     * @param readAhead the total size of the read-ahead buffers
+     */
+    ReadAheadInputStream(final InputStream source, final long readAhead) {
+        this.source = source;
+        final int bufferSize = (int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max(MIN_BUFFER_SIZE, readAhead / BUFFER_COUNT));
+        for (int i = 0; i < BUFFER_COUNT; ++i) {
+            freeBuffers.add(new byte[bufferSize]);
+        }
+        readAheadThread = new Thread(this::readAhead, "read-ahead");
+        readAheadThread.setDaemon(true);
+        readAheadThread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillCurrent()) {
+            return -1;
+        }
+        return current.buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillCurrent()) {
+            return -1;
+        }
+        final int count = Math.min(len, current.length - position);
+        System.arraycopy(current.buffer, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            readAheadThread.interrupt();
+            // Closing the source ends most reads which block the read-ahead thread:
+            source.close();
+            // Reads from stdin or sockets without timeout may block
+            // regardless. The daemon thread is then left behind:
+            if (!reading) {
+                try {
+                    readAheadThread.join(CLOSE_TIMEOUT);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private boolean fillCurrent() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        while (position == current.length) {
+            if (current == END_OF_STREAM) {
+                return false;
+            }
+            if (current.exception != null) {
+                throw current.exception;
+            }
+            if (current.length > 0) {
+                freeBuffers.add(current.buffer);
+            }
+            try {
+                current = filledChunks.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    private void readAhead() {
+        try {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                final byte[] buffer = freeBuffers.take();
+                int length = 0;
+                IOException exception = null;
+                try {
+                    int count = 0;
+                    reading = true;
+                    try {
+                        while (length < buffer.length && count >= 0) {
+                            count = source.read(buffer, length, buffer.length - length);
+                            length += Math.max(count, 0);
+                        }
+                    } finally {
+                        reading = false;
+                    }
+                    endOfStream = count < 0;
+                } catch (final IOException e) {
+                    exception = e;
+                } catch (final RuntimeException e) {
+                    exception = new IOException(e);
+                }
+                if (length > 0) {
+                    filledChunks.put(new Chunk(buffer, length, null));
+                }
+                if (exception != null) {
+                    filledChunks.put(new Chunk(new byte[0], 0, exception));
+                    return;
+                }
+            }
+            filledChunks.put(END_OF_STREAM);
+        } catch (final InterruptedException e) {
+            // The stream was closed
+        }
+    }
+
+    /**
+     * A filled buffer or the end of the stream or an exception.
+     */
+    private static final class Chunk {
+
+        private final byte[] buffer;
+        private final int length;
+        private final IOException exception;
+
+        Chunk(final byte[] buffer, final int length, final IOException exception) {
+            this.buffer = buffer;
+            this.length = length;
+            this.exception = exception;
+        }
+
+    }
+
+}
@@ -52,6 +52,8 @@ public final class RecordReader extends
 
     private char separator = DEFAULT_SEPARATOR;
     private boolean skipEmptyRecords = true;
+    private Checkpoint checkpoint;
+    private int checkpointInterval = Checkpoint.DEFAULT_INTERVAL;
 
     public void setSeparator(final String separator) {
         if (separator.length() >= 1) {
@@ -77,6 +79,33 @@ public boolean getSkipEmptyRecords() {
         return skipEmptyRecords;
     }
 
+    /**
+     * Sets the state file of a checkpoint. The records of the current file
+     * are counted and the checkpoint is committed regularly. If an
+     * interrupted pipeline is resumed, the records committed before are
+     * skipped. The file name is provided by {@link FileOpener}, which must
+     * use the same checkpoint.
+     *
+     * @param stateFile path of the state file
+     */
+    public void setCheckpoint(final String stateFile) {
+        checkpoint = Checkpoint.acquire(stateFile);
+        checkpoint.setInterval(checkpointInterval);
+    }
+
+    /**
+     * Sets the number of records after which the checkpoint is committed.
+     * The default is {@value Checkpoint#DEFAULT_INTERVAL}.
+     *
+     * @param checkpointInterval number of records between commits
+     */
+    public void setCheckpointInterval(final int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+        if (checkpoint != null) {
+            checkpoint.setInterval(checkpointInterval);
+        }
+    }
+
     @Override
     public void process(final Reader reader) {
         assert !isClosed();
@@ -108,9 +137,21 @@ public void process(final Reader reader) {
     private void emitRecord() {
         final String record = builder.toString();
         if (!skipEmptyRecords || !record.isEmpty()) {
-            getReceiver().process(record);
+            if (checkpoint == null) {
+                getReceiver().process(record);
+            } else if (!checkpoint.skipRecord()) {
+                getReceiver().process(record);
+                checkpoint.recordProcessed();
+            }
             builder.delete(0, builder.length());
         }
     }
 
+    @Override
+    protected void onCloseStream() {
+        if (checkpoint != null) {
+            checkpoint.release();
+        }
+    }
+
 }
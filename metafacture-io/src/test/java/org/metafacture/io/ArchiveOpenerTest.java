@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+/**
+ * Tests for class {@link ArchiveOpener}.
+ */
+public final class ArchiveOpenerTest {
+
+    private static final int ENTRIES = 100;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final List<String> expected = new ArrayList<>();
+    private final List<String> entries = new ArrayList<>();
+
+    private String prefetchBufferSize;
+    private int failAfter = -1;
+
+    @Test
+    public void shouldPassZipEntriesInOrder() throws IOException {
+        final File archive = writeZip();
+
+        open(archive, "1MB");
+
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void shouldLimitZipEntriesReadAheadToPrefetchBufferSize() throws IOException {
+        final File archive = writeZip();
+
+        prefetchBufferSize = "100";
+        open(archive, "1MB");
+
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void shouldPassTarEntriesInOrder() throws IOException {
+        final File archive = writeTarGz();
+
+        open(archive, "1MB");
+
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void shouldLimitTarEntriesReadAheadToPrefetchBufferSize() throws IOException {
+        final File archive = writeTarGz();
+
+        prefetchBufferSize = "100";
+        open(archive, "1MB");
+
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void shouldStreamEntriesLargerThanPrefetchBufferSize() throws IOException {
+        final File archive = writeTarGz();
+
+        prefetchBufferSize = "10";
+        open(archive, "1MB");
+
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void shouldStopReadingTarBeforeClosingIt() throws IOException {
+        final File archive = writeTarGz();
+
+        failAfter = 1;
+        try {
+            open(archive, "1MB");
+            fail("Expected MetafactureException");
+        } catch (final MetafactureException e) {
+            assertEquals(1, entries.size());
+        }
+        for (final StackTraceElement[] stackTrace : Thread.getAllStackTraces().values()) {
+            for (final StackTraceElement element : stackTrace) {
+                assertFalse(element.getMethodName().contains("readTar"));
+            }
+        }
+    }
+
+    @Test
+    public void shouldStreamEntriesLargerThanMaxPrefetchSize() throws IOException {
+        final File archive = writeTarGz();
+
+        open(archive, "0");
+
+        assertEquals(expected, entries);
+    }
+
+    private File writeZip() throws IOException {
+        final File archive = tempFolder.newFile("archive.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("dir/"));
+            for (int i = 0; i < ENTRIES; ++i) {
+                zip.putNextEntry(new ZipEntry("dir/" + i + ".xml"));
+                zip.write(entryData(i));
+            }
+        }
+        return archive;
+    }
+
+    private File writeTarGz() throws IOException {
+        final File archive = tempFolder.newFile("archive.tar.gz");
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                new GZIPOutputStream(new FileOutputStream(archive)))) {
+            for (int i = 0; i < ENTRIES; ++i) {
+                final byte[] data = entryData(i);
+                final TarArchiveEntry entry = new TarArchiveEntry(i + ".xml");
+                entry.setSize(data.length);
+                tar.putArchiveEntry(entry);
+                tar.write(data);
+                tar.closeArchiveEntry();
+            }
+        }
+        return archive;
+    }
+
+    private byte[] entryData(final int i) {
+        final String text = "<record id=\"" + i + "\">Überfacture</record>";
+        expected.add(text);
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void open(final File archive, final String maxPrefetchSize) {
+        final ArchiveOpener opener = new ArchiveOpener();
+        opener.setThreads(3);
+        opener.setMaxPrefetchSize(maxPrefetchSize);
+        if (prefetchBufferSize != null) {
+            opener.setPrefetchBufferSize(prefetchBufferSize);
+        }
+        opener.setReceiver(new DefaultObjectReceiver<Reader>() {
+            @Override
+            public void process(final Reader reader) {
+                if (entries.size() == failAfter) {
+                    throw new MetafactureException("Receiver failed");
+                }
+                try {
+                    entries.add(IOUtils.toString(reader));
+                } catch (final IOException e) {
+                    throw new MetafactureException(e);
+                }
+            }
+        });
+        opener.process(archive.getAbsolutePath());
+        opener.closeStream();
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.junit.Test;
+
+/**
+ * Tests for class {@link AsyncWriter}.
+ */
+public final class AsyncWriterTest {
+
+    private static final int BUFFER_SIZE = 16;
+    private static final long TIMEOUT = 10000;
+
+    @Test
+    public void shouldWriteAllCharactersInOrder() throws IOException {
+        final StringWriter target = new StringWriter();
+        final StringBuilder expected = new StringBuilder();
+
+        try (Writer writer = new AsyncWriter(target, BUFFER_SIZE, 0)) {
+            for (int i = 0; i < 1000; ++i) {
+                writer.write("record " + i);
+                writer.write('\n');
+                expected.append("record ").append(i).append('\n');
+            }
+        }
+
+        assertEquals(expected.toString(), target.toString());
+    }
+
+    @Test
+    public void shouldWriteBufferedCharactersAfterFlushInterval() throws Exception {
+        final StringWriter target = new StringWriter();
+
+        try (Writer writer = new AsyncWriter(target, BUFFER_SIZE, 10)) {
+            writer.write("abc");
+            final long start = System.currentTimeMillis();
+            while (!"abc".equals(contents(target))) {
+                assertTrue(System.currentTimeMillis() - start < TIMEOUT);
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRethrowExceptionOfTarget() throws IOException {
+        final Writer failingTarget = new Writer() {
+            @Override
+            public void write(final char[] cbuf, final int off, final int len) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+                // nothing to do
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+
+        final Writer writer = new AsyncWriter(failingTarget, BUFFER_SIZE, 0);
+        writer.write("abc");
+        try {
+            writer.close();
+            fail("exception expected");
+        } catch (final IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    private static String contents(final StringWriter writer) {
+        synchronized (writer.getBuffer()) {
+            return writer.toString();
+        }
+    }
+
+}
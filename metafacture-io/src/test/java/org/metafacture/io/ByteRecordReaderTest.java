@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+/**
+ * Tests for {@link ByteRecordReader}.
+ */
+public final class ByteRecordReaderTest {
+
+    private static final String SEPARATOR = "\u001d";
+
+    private ByteRecordReader byteRecordReader;
+
+    private final List<String> records = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        byteRecordReader = new ByteRecordReader();
+        // The emitted buffers are only valid during the call. Hence, they
+        // are decoded immediately:
+        byteRecordReader.setReceiver(new DefaultObjectReceiver<ByteBuffer>() {
+            @Override
+            public void process(final ByteBuffer obj) {
+                records.add(StandardCharsets.UTF_8.decode(obj).toString());
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        byteRecordReader.closeStream();
+    }
+
+    @Test
+    public void shouldSplitRecordsAtDefaultSeparator() {
+        byteRecordReader.process(streamOf(
+                "record1" + SEPARATOR + "record2" + SEPARATOR));
+
+        assertEquals(Arrays.asList("record1", "record2"), records);
+    }
+
+    @Test
+    public void shouldEmitEmptyRecordsIfNotSkipped() {
+        byteRecordReader.setSeparator(":");
+        byteRecordReader.setSkipEmptyRecords(false);
+
+        byteRecordReader.process(streamOf(":record1::äöü"));
+
+        assertEquals(Arrays.asList("", "record1", "", "äöü"), records);
+    }
+
+    @Test
+    public void shouldSplitRecordsLargerThanReadBuffer() {
+        final char[] chars = new char[3 * 1024 * 1024];
+        Arrays.fill(chars, 'x');
+        final String largeRecord = String.valueOf(chars);
+
+        byteRecordReader.process(streamOf(
+                "record1" + SEPARATOR + largeRecord + SEPARATOR + "record2"));
+
+        assertEquals(Arrays.asList("record1", largeRecord, "record2"), records);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonAsciiSeparator() {
+        byteRecordReader.setSeparator("ä");
+    }
+
+    private static ByteArrayInputStream streamOf(final String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
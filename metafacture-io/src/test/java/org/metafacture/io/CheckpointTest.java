@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.metafacture.framework.helpers.DefaultObjectPipe;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+/**
+ * Tests for class {@link Checkpoint}.
+ */
+public final class CheckpointTest {
+
+    private static final int LINES = 10;
+    private static final int INTERVAL = 3;
+    private static final String FAILING_LINE = "line 8";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File inputFile;
+    private File stateFile;
+    private String expected;
+
+    @Before
+    public void setup() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 1; i <= LINES; ++i) {
+            builder.append("line ").append(i).append('\n');
+        }
+        expected = builder.toString();
+        inputFile = tempFolder.newFile("input.txt");
+        Files.write(inputFile.toPath(), expected.getBytes(StandardCharsets.UTF_8));
+        stateFile = new File(tempFolder.getRoot(), "state.properties");
+    }
+
+    @Test
+    public void shouldResumeInterruptedPipeline() throws Exception {
+        final File outputFile = new File(tempFolder.getRoot(), "output.txt");
+
+        runInterruptedAndResume(outputFile, false);
+
+        assertEquals(expected, new String(Files.readAllBytes(outputFile.toPath()),
+                StandardCharsets.UTF_8));
+        assertFalse(stateFile.exists());
+    }
+
+    @Test
+    public void shouldResumeInterruptedPipelineWithCompressedOutput() throws Exception {
+        final File outputFile = new File(tempFolder.getRoot(), "output.txt.gz");
+
+        runInterruptedAndResume(outputFile, false);
+
+        try (InputStream in = new GZIPInputStream(new FileInputStream(outputFile))) {
+            assertEquals(expected, IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void shouldResumeInterruptedPipelineEndingInWrite() throws Exception {
+        final File outputFile = new File(tempFolder.getRoot(), "output.txt");
+
+        runInterruptedAndResume(outputFile, true);
+
+        assertEquals(expected, new String(Files.readAllBytes(outputFile.toPath()),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldSkipCompletedFilesWhenResuming() throws Exception {
+        final File completedFile = tempFolder.newFile("completed.txt");
+        final String completed = "a 1\na 2\na 3\na 4\n";
+        Files.write(completedFile.toPath(), completed.getBytes(StandardCharsets.UTF_8));
+        final File outputFile = new File(tempFolder.getRoot(), "output.txt");
+
+        runInterruptedAndResume(outputFile, false, completedFile.getAbsolutePath(),
+                inputFile.getAbsolutePath());
+
+        assertEquals(completed + expected, new String(Files.readAllBytes(outputFile.toPath()),
+                StandardCharsets.UTF_8));
+        assertFalse(new File(stateFile.getPath() + ".completed").exists());
+    }
+
+    @Test(expected = MetafactureException.class)
+    public void shouldFailIfOpenerDoesNotUseCheckpoint() {
+        final LineReader lineReader = new LineReader();
+        lineReader.setCheckpoint(stateFile.getAbsolutePath());
+        lineReader.setReceiver(new DefaultObjectReceiver<String>());
+        try {
+            lineReader.process(new StringReader("line 1\n"));
+        } finally {
+            lineReader.closeStream();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotResumeOutputWrittenToStdout() {
+        new ObjectWriter<String>("stdout").setCheckpoint(stateFile.getAbsolutePath());
+    }
+
+    /**
+     * Runs the interrupted pipeline with its own copy of the classes of this
+     * package, so that the checkpoints it registered are gone afterwards as
+     * if its process had been terminated.
+     */
+    private void runInterruptedAndResume(final File outputFile, final boolean useWrite)
+            throws Exception {
+        runInterruptedAndResume(outputFile, useWrite, inputFile.getAbsolutePath());
+    }
+
+    private void runInterruptedAndResume(final File outputFile, final boolean useWrite,
+            final String... inputFiles) throws Exception {
+        final URL[] urls = {
+            Checkpoint.class.getProtectionDomain().getCodeSource().getLocation(),
+            Pipeline.class.getProtectionDomain().getCodeSource().getLocation(),
+        };
+        try (URLClassLoader loader = new IsolatingClassLoader(urls, getClass().getClassLoader())) {
+            final Runnable interrupted = (Runnable) loader.loadClass(Pipeline.class.getName())
+                    .getConstructor(String[].class, String.class, String.class, boolean.class, boolean.class)
+                    .newInstance(inputFiles, outputFile.getAbsolutePath(),
+                            stateFile.getAbsolutePath(), useWrite, true);
+            try {
+                interrupted.run();
+                fail("exception expected");
+            } catch (final IllegalStateException e) {
+                // The pipeline was interrupted
+            }
+        }
+        assertTrue(stateFile.exists());
+
+        new Pipeline(inputFiles, outputFile.getAbsolutePath(),
+                stateFile.getAbsolutePath(), useWrite, false).run();
+    }
+
+    /**
+     * Reads lines from files and writes them to an output file using a
+     * checkpoint. Optionally, the pipeline fails while processing a line.
+     */
+    public static final class Pipeline implements Runnable {
+
+        private final String[] inputFiles;
+        private final FileOpener opener = new FileOpener();
+        private final ObjectReceiver<String> writer;
+
+        public Pipeline(final String[] inputFiles, final String outputFile, final String stateFile,
+                final boolean useWrite, final boolean fail) {
+            this.inputFiles = inputFiles;
+            opener.setCheckpoint(stateFile);
+            final LineReader lineReader = new LineReader();
+            lineReader.setCheckpoint(stateFile);
+            lineReader.setCheckpointInterval(INTERVAL);
+            if (useWrite) {
+                final ObjectWriter<String> objectWriter = new ObjectWriter<>(outputFile);
+                objectWriter.setCheckpoint(stateFile);
+                writer = objectWriter;
+            } else {
+                final ObjectFileWriter<String> fileWriter = new ObjectFileWriter<>(outputFile);
+                fileWriter.setCheckpoint(stateFile);
+                writer = fileWriter;
+            }
+            opener.setReceiver(lineReader)
+                    .setReceiver(new FailingPipe(fail))
+                    .setReceiver(writer);
+        }
+
+        @Override
+        public void run() {
+            for (final String inputFile : inputFiles) {
+                opener.process(inputFile);
+            }
+            opener.closeStream();
+        }
+
+    }
+
+    private static final class FailingPipe extends DefaultObjectPipe<String, ObjectReceiver<String>> {
+
+        private final boolean fail;
+
+        FailingPipe(final boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void process(final String line) {
+            if (fail && FAILING_LINE.equals(line)) {
+                throw new IllegalStateException("interrupted");
+            }
+            getReceiver().process(line);
+        }
+
+    }
+
+    /**
+     * Loads the classes of this package itself instead of delegating to its
+     * parent.
+     */
+    private static final class IsolatingClassLoader extends URLClassLoader {
+
+        private static final String PACKAGE_PREFIX = Checkpoint.class.getPackage().getName() + ".";
+
+        IsolatingClassLoader(final URL[] urls, final ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve)
+                throws ClassNotFoundException {
+            if (!name.startsWith(PACKAGE_PREFIX)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass == null) {
+                    try {
+                        loadedClass = findClass(name);
+                    } catch (final ClassNotFoundException e) {
+                        loadedClass = super.loadClass(name, false);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loadedClass);
+                }
+                return loadedClass;
+            }
+        }
+
+    }
+
+}
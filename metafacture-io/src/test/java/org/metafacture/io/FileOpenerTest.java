@@ -84,15 +84,21 @@ public void testUtf8IsDefaultEncoding() throws IOException {
 
     @Test
     public void testNoDecompressConcatenated() throws IOException {
-        testDecompressConcatenated(false);
+        testDecompressConcatenated(false, 1);
     }
 
     @Test
     public void testDecompressConcatenated() throws IOException {
-        testDecompressConcatenated(true);
+        testDecompressConcatenated(true, 1);
     }
 
-    private void testDecompressConcatenated(final boolean decompressConcatenated) throws IOException {
+    @Test
+    public void testDecompressConcatenatedOnSeveralThreads() throws IOException {
+        testDecompressConcatenated(true, 4);
+    }
+
+    private void testDecompressConcatenated(final boolean decompressConcatenated,
+            final int decompressionThreads) throws IOException {
         final int maxBytes = (int) Math.pow(2, 16);  // BGZF max compressed block size
         final StringBuilder sb = new StringBuilder();
 
@@ -110,6 +116,7 @@ private void testDecompressConcatenated(final boolean decompressConcatenated) th
 
         final FileOpener opener = new FileOpener();
         opener.setDecompressConcatenated(decompressConcatenated);
+        opener.setDecompressionThreads(decompressionThreads);
         opener.setReceiver(receiver);
         opener.process(testFile.getAbsolutePath());
         opener.closeStream();
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for class {@link HttpOpener} against a local http server.
+ */
+public final class HttpOpenerTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final List<String> responses = new ArrayList<>();
+
+    private HttpServer server;
+    private HttpOpener opener;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/text/", exchange -> {
+            requests.incrementAndGet();
+            final String name = exchange.getRequestURI().getPath().substring("/text/".length());
+            send(exchange, 200, "text/plain; charset=ISO-8859-1",
+                    ("text " + name + " ä").getBytes(StandardCharsets.ISO_8859_1));
+        });
+        server.createContext("/gzip", exchange -> {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("compressed ä".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, 200, "text/plain", compressed.toByteArray());
+        });
+        server.createContext("/unavailable", exchange -> {
+            if (failures.getAndIncrement() < 2) {
+                send(exchange, 503, "text/plain", "busy".getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 200, "text/plain", "available".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/truncated", exchange -> {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("complete".getBytes(StandardCharsets.UTF_8));
+            }
+            final byte[] body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            if (failures.getAndIncrement() < 2) {
+                send(exchange, 200, "text/plain", Arrays.copyOf(body, body.length / 2));
+            } else {
+                send(exchange, 200, "text/plain", body);
+            }
+        });
+        server.createContext("/etag", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                send(exchange, 200, "text/plain", "tagged".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+
+        opener = new HttpOpener();
+        opener.setReceiver(new DefaultObjectReceiver<Reader>() {
+            @Override
+            public void process(final Reader reader) {
+                try {
+                    responses.add(IOUtils.toString(reader));
+                } catch (final IOException e) {
+                    throw new MetafactureException(e);
+                }
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldDecodeResponseWithCharsetFromContentType() {
+        opener.process(url("/text/a"));
+        opener.closeStream();
+
+        assertEquals(Arrays.asList("text a ä"), responses);
+    }
+
+    @Test
+    public void shouldDecompressGzipResponses() {
+        opener.process(url("/gzip"));
+        opener.closeStream();
+
+        assertEquals(Arrays.asList("compressed ä"), responses);
+    }
+
+    @Test
+    public void shouldPassConcurrentResponsesInOrder() {
+        opener.setThreads(4);
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            opener.process(url("/text/" + i));
+            expected.add("text " + i + " ä");
+        }
+        opener.closeStream();
+
+        assertEquals(expected, responses);
+    }
+
+    @Test
+    public void shouldRetryServerErrors() {
+        opener.setRetries(2);
+        opener.setRetryDelay(1);
+
+        opener.process(url("/unavailable"));
+        opener.closeStream();
+
+        assertEquals(Arrays.asList("available"), responses);
+    }
+
+    @Test
+    public void shouldRetryIncompleteBodiesOfBufferedResponses() {
+        opener.setThreads(2);
+        opener.setRetries(2);
+        opener.setRetryDelay(1);
+
+        opener.process(url("/truncated"));
+        opener.closeStream();
+
+        assertEquals(Arrays.asList("complete"), responses);
+        assertEquals(3, failures.get());
+    }
+
+    @Test(expected = MetafactureException.class)
+    public void shouldFailIfRetriesAreExhausted() {
+        opener.setRetries(1);
+        opener.setRetryDelay(1);
+
+        opener.process(url("/unavailable"));
+    }
+
+    @Test
+    public void shouldUseCachedResponseIfNotModified() throws IOException {
+        opener.setCacheDir(tempFolder.newFolder("cache").getPath());
+
+        opener.process(url("/etag"));
+        opener.process(url("/etag"));
+        opener.closeStream();
+
+        assertEquals(Arrays.asList("tagged", "tagged"), responses);
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+    }
+
+    private String url(final String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static void send(final HttpExchange exchange, final int status,
+            final String contentType, final byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.metafacture.io;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assume.assumeFalse;
 
 import java.io.File;
@@ -69,6 +70,97 @@ public void shouldWriteUTF8EncodedOutput() throws IOException {
                 bytesWritten); // FileObjectWriter appends new lines
     }
 
+    @Test
+    public void shouldWriteAsynchronously() throws IOException {
+        writer.setAsync(true);
+        writer.setBufferSize("4");
+        writer.setSeparator(",");
+        writer.process(DATA);
+        writer.process(DATA);
+        writer.closeStream();
+
+        assertEquals(DATA + "," + DATA + "\n", getOutput());
+    }
+
+    @Test
+    public void shouldStartNewFileAfterMaxRecords() throws IOException {
+        final String path = tempFolder.getRoot().getAbsolutePath() + "/out${i}.txt";
+        final ObjectFileWriter<String> rollingWriter = new ObjectFileWriter<String>(path);
+        rollingWriter.setMaxRecords(2);
+        rollingWriter.process("a");
+        rollingWriter.process("b");
+        rollingWriter.process("c");
+        rollingWriter.resetStream();
+        rollingWriter.process("d");
+        rollingWriter.closeStream();
+
+        assertEquals("a\nb\n", readFile("out0.txt"));
+        assertEquals("c\n", readFile("out1.txt"));
+        assertEquals("d\n", readFile("out2.txt"));
+    }
+
+    @Test
+    public void shouldStartNewFileAfterMaxFileSizeInBytes() throws IOException {
+        final String path = tempFolder.getRoot().getAbsolutePath() + "/out${i}.txt";
+        final ObjectFileWriter<String> rollingWriter = new ObjectFileWriter<String>(path);
+        rollingWriter.setMaxFileSize("6");
+        rollingWriter.process("ÄÖÜ");
+        rollingWriter.process("äöü");
+        rollingWriter.closeStream();
+
+        assertEquals("ÄÖÜ\n", readFile("out0.txt"));
+        assertEquals("äöü\n", readFile("out1.txt"));
+    }
+
+    @Test
+    public void shouldWritePartitionsByKey() throws IOException {
+        final String path = tempFolder.getRoot().getAbsolutePath() + "/part${p}.txt";
+        final ObjectFileWriter<String> partitionWriter = new ObjectFileWriter<String>(path);
+        partitionWriter.setPartitions(2);
+        partitionWriter.setPartitionKey("^(\\w+):");
+        // "a".hashCode() is odd and "b".hashCode() is even:
+        partitionWriter.process("a:1");
+        partitionWriter.process("b:1");
+        partitionWriter.process("a:2");
+        partitionWriter.closeStream();
+
+        assertEquals("b:1\n", readFile("part0.txt"));
+        assertEquals("a:1\na:2\n", readFile("part1.txt"));
+    }
+
+    @Test
+    public void shouldFlushEachPartitionAfterFlushRecords() throws IOException {
+        final String path = tempFolder.getRoot().getAbsolutePath() + "/part${p}.txt";
+        final ObjectFileWriter<String> partitionWriter = new ObjectFileWriter<String>(path);
+        partitionWriter.setPartitions(2);
+        partitionWriter.setPartitionKey("^(\\w+):");
+        partitionWriter.setFlushRecords(2);
+        partitionWriter.process("a:1");
+        partitionWriter.process("b:1");
+        partitionWriter.process("a:2");
+
+        assertEquals("", readFile("part0.txt"));
+        assertEquals("a:1\na:2", readFile("part1.txt"));
+
+        partitionWriter.closeStream();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCompressionLevel() {
+        writer.setCompressionLevel(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidBzip2CompressionLevel() {
+        writer.setCompression(FileCompression.BZIP2);
+        writer.setCompressionLevel(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePartitionVariableInPath() {
+        writer.setPartitions(2);
+    }
+
     @Override
     protected ConfigurableObjectWriter<String> getWriter() {
         return writer;
@@ -82,4 +174,9 @@ protected String getOutput() throws IOException {
         }
     }
 
+    private String readFile(final String name) throws IOException {
+        return new String(Files.readAllBytes(tempFolder.getRoot().toPath().resolve(name)),
+                StandardCharsets.UTF_8);
+    }
+
 }
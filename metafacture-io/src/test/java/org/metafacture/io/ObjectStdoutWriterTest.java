@@ -15,11 +15,14 @@
  */
 package org.metafacture.io;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 
 import org.junit.Before;
+import org.junit.Test;
 
 /**
  * Tests for class {@link ObjectStdoutWriter}.
@@ -43,6 +46,18 @@ public void setup() {
         System.setOut(new PrintStream(stdoutBuffer));
     }
 
+    @Test
+    public void shouldWriteAsynchronously() throws IOException {
+        writer.setAsync(true);
+        writer.setBufferSize("4");
+        writer.setSeparator(",");
+        writer.process("first");
+        writer.process("second");
+        writer.closeStream();
+
+        assertEquals("first,second\n", getOutput());
+    }
+
     @Override
     protected ConfigurableObjectWriter<String> getWriter() {
         return writer;
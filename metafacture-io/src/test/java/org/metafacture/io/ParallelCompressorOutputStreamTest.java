@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link ParallelCompressorOutputStream}.
+ */
+public final class ParallelCompressorOutputStreamTest {
+
+    private static final int THREADS = 3;
+    private static final int BLOCK_SIZE = 1000;
+
+    // Members written by GZIPOutputStream have a header without optional fields:
+    private static final int GZIP_HEADER_LENGTH = 10;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    @Test
+    public void shouldWriteConcatenatedGzipMembers() throws IOException {
+        final byte[] data = new byte[BLOCK_SIZE * 20 + 7];
+        new Random(42).nextBytes(data);
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelCompressorOutputStream(compressed,
+                GZIPOutputStream::new, THREADS, BLOCK_SIZE)) {
+            out.write(data, 0, 10);
+            out.write(data[10]);
+            out.write(data, 11, data.length - 11);
+        }
+
+        assertArrayEquals(data, gunzip(compressed.toByteArray()));
+        assertEquals(21, countMembers(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldNotEndBlockOnFlush() throws IOException {
+        final byte[] data = new byte[BLOCK_SIZE * 3];
+        new Random(42).nextBytes(data);
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelCompressorOutputStream(compressed,
+                GZIPOutputStream::new, THREADS, BLOCK_SIZE)) {
+            for (int i = 0; i < data.length; i += 100) {
+                out.write(data, i, 100);
+                out.flush();
+            }
+        }
+
+        assertArrayEquals(data, gunzip(compressed.toByteArray()));
+        assertEquals(3, countMembers(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldEndBlockOnFinishBlock() throws IOException {
+        final byte[] data = new byte[BLOCK_SIZE];
+        new Random(42).nextBytes(data);
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelCompressorOutputStream out = new ParallelCompressorOutputStream(compressed,
+                GZIPOutputStream::new, THREADS, BLOCK_SIZE)) {
+            out.write(data, 0, 10);
+            out.finishBlock();
+
+            assertArrayEquals(Arrays.copyOf(data, 10), gunzip(compressed.toByteArray()));
+
+            out.write(data, 10, data.length - 10);
+        }
+
+        assertArrayEquals(data, gunzip(compressed.toByteArray()));
+        assertEquals(2, countMembers(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldWriteEmptyStreamIfNoDataIsWritten() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelCompressorOutputStream(compressed,
+                GZIPOutputStream::new, THREADS, BLOCK_SIZE).close();
+
+        assertArrayEquals(new byte[0], gunzip(compressed.toByteArray()));
+        assertEquals(1, countMembers(compressed.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRethrowCompressorExceptions() throws IOException {
+        try (OutputStream out = new ParallelCompressorOutputStream(new ByteArrayOutputStream(),
+                stream -> {
+                    throw new IOException("broken compressor");
+                }, THREADS, BLOCK_SIZE)) {
+            out.write(new byte[BLOCK_SIZE * 2]);
+        }
+    }
+
+    private static byte[] gunzip(final byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static int countMembers(final byte[] compressed) throws IOException {
+        int members = 0;
+        int position = 0;
+        while (position < compressed.length) {
+            final Inflater inflater = new Inflater(true);
+            inflater.setInput(compressed, position + GZIP_HEADER_LENGTH,
+                    compressed.length - position - GZIP_HEADER_LENGTH);
+            try {
+                while (!inflater.finished()) {
+                    inflater.inflate(new byte[BLOCK_SIZE]);
+                }
+                position = compressed.length - inflater.getRemaining() + GZIP_TRAILER_LENGTH;
+            } catch (final DataFormatException e) {
+                throw new IOException(e);
+            } finally {
+                inflater.end();
+            }
+            ++members;
+        }
+        return members;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link ParallelGzipInputStream}.
+ */
+public final class ParallelGzipInputStreamTest {
+
+    private static final int THREADS = 3;
+    private static final int SEGMENT_SIZE = 64;
+    private static final byte FNAME = 0x08;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void shouldDecompressMultipleMembers() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; ++i) {
+            final byte[] member = randomText(random.nextInt(300));
+            compressed.write(gzip(member, Deflater.DEFAULT_COMPRESSION));
+            expected.write(member);
+        }
+
+        assertArrayEquals(expected.toByteArray(), gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldSkipFileNamesInHeaders() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 50; ++i) {
+            final byte[] member = randomText(random.nextInt(300));
+            final byte[] gzip = gzip(member, Deflater.DEFAULT_COMPRESSION);
+            gzip[3] = FNAME;
+            compressed.write(gzip, 0, 10);
+            compressed.write(("file" + i + "\0").getBytes(StandardCharsets.UTF_8));
+            compressed.write(gzip, 10, gzip.length - 10);
+            expected.write(member);
+        }
+
+        assertArrayEquals(expected.toByteArray(), gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldDecompressMemberLargerThanSegments() throws IOException {
+        final byte[] data = randomText(100000);
+
+        assertArrayEquals(data, gunzip(gzip(data, Deflater.DEFAULT_COMPRESSION)));
+    }
+
+    @Test
+    public void shouldNotCutAtHeadersInsideCompressedData() throws IOException {
+        final byte[] fakeHeader = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < 500; ++i) {
+            data.write(randomText(random.nextInt(50)));
+            data.write(fakeHeader);
+        }
+        final byte[] member = data.toByteArray();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(member, Deflater.NO_COMPRESSION));
+        compressed.write(gzip(member, Deflater.NO_COMPRESSION));
+
+        final byte[] expected = new byte[member.length * 2];
+        System.arraycopy(member, 0, expected, 0, member.length);
+        System.arraycopy(member, 0, expected, member.length, member.length);
+        assertArrayEquals(expected, gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    public void shouldDecompressBgzf() throws IOException {
+        try (InputStream in = new ParallelGzipInputStream(getClass()
+                .getResourceAsStream("compressed.txt.bgzf"), THREADS, SEGMENT_SIZE)) {
+            assertEquals("This could have been a remarkable sentence.",
+                    IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void shouldCloseBeforeAllSegmentsAreRead() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; ++i) {
+            compressed.write(gzip(randomText(300), Deflater.DEFAULT_COMPRESSION));
+        }
+
+        final InputStream in = new ParallelGzipInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()), THREADS, SEGMENT_SIZE);
+        assertEquals(100, in.read(new byte[100]));
+        in.close();
+    }
+
+    @Test(expected = ZipException.class)
+    public void shouldDetectCorruptMembers() throws IOException {
+        final byte[] compressed = gzip(randomText(1000), Deflater.DEFAULT_COMPRESSION);
+        compressed[compressed.length - 8] ^= 1;
+
+        gunzip(compressed);
+    }
+
+    private byte[] randomText(final int length) {
+        final byte[] text = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            text[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return text;
+    }
+
+    private static byte[] gzip(final byte[] data, final int level) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(final byte[] compressed) throws IOException {
+        try (InputStream in = new ParallelGzipInputStream(
+                new ByteArrayInputStream(compressed), THREADS, SEGMENT_SIZE)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.metafacture.framework.helpers.DefaultObjectReceiver;
+
+/**
+ * Tests for class {@link ParallelLineReader}.
+ */
+public final class ParallelLineReaderTest {
+
+    private static final String DATA = "first\nsecond\r\nthird\rfourth\n\nsixth äöü\nlast";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private ParallelLineReader parallelLineReader;
+
+    private final List<String> lines = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        parallelLineReader = new ParallelLineReader();
+        parallelLineReader.setThreads(3);
+        parallelLineReader.setChunkSize(4);
+        parallelLineReader.setReceiver(new DefaultObjectReceiver<String>() {
+            @Override
+            public void process(final String obj) {
+                lines.add(obj);
+            }
+        });
+    }
+
+    @After
+    public void cleanup() {
+        parallelLineReader.closeStream();
+    }
+
+    @Test
+    public void shouldEmitSameLinesAsLineReader() throws IOException {
+        parallelLineReader.process(createFile(DATA));
+
+        assertEquals(readWithLineReader(DATA), lines);
+    }
+
+    @Test
+    public void shouldEmitAllLinesIfNotOrdered() throws IOException {
+        parallelLineReader.setOrdered(false);
+
+        parallelLineReader.process(createFile(DATA));
+
+        final List<String> expected = readWithLineReader(DATA);
+        Collections.sort(expected);
+        Collections.sort(lines);
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    public void shouldSkipByteOrderMark() throws IOException {
+        parallelLineReader.process(createFile("\ufeffline1\nline2\n"));
+
+        assertEquals(Arrays.asList("line1", "line2"), lines);
+    }
+
+    private String createFile(final String data) throws IOException {
+        final File file = tempFolder.newFile();
+        Files.write(file.toPath(), data.getBytes(StandardCharsets.UTF_8));
+        return file.getAbsolutePath();
+    }
+
+    private static List<String> readWithLineReader(final String data) {
+        final List<String> expected = new ArrayList<>();
+        LineReader.process(new StringReader(data), new DefaultObjectReceiver<String>() {
+            @Override
+            public void process(final String obj) {
+                expected.add(obj);
+            }
+        });
+        return expected;
+    }
+
+}
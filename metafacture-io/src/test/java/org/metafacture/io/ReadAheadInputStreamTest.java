@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests for class {@link ReadAheadInputStream}.
+ */
+public final class ReadAheadInputStreamTest {
+
+    private static final int READ_AHEAD = 1024;
+
+    @Test
+    public void shouldReturnAllBytesOfSource() throws IOException {
+        final byte[] data = new byte[1024 * 1024];
+        new Random(42).nextBytes(data);
+
+        try (InputStream in = new ReadAheadInputStream(
+                new ByteArrayInputStream(data), READ_AHEAD)) {
+            assertArrayEquals(data, IOUtils.toByteArray(in));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void shouldRethrowExceptionAfterPrecedingBytes() throws IOException {
+        final InputStream failingStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("corrupt");
+            }
+        };
+        final byte[] data = {1, 2, 3};
+
+        try (InputStream in = new ReadAheadInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(data), failingStream), READ_AHEAD)) {
+            assertEquals(1, in.read());
+            assertEquals(2, in.read());
+            assertEquals(3, in.read());
+            try {
+                in.read();
+                fail("exception expected");
+            } catch (final IOException e) {
+                assertEquals("corrupt", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotWaitForReadWhichIgnoresClose() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final InputStream blockingSource = new InputStream() {
+            @Override
+            public int read() {
+                reading.countDown();
+                // Like a read from stdin, neither interrupts nor close end it:
+                while (released.getCount() > 0) {
+                    try {
+                        released.await();
+                    } catch (final InterruptedException e) {
+                        // Ignored
+                    }
+                }
+                return -1;
+            }
+        };
+        final InputStream in = new ReadAheadInputStream(blockingSource, READ_AHEAD);
+        reading.await();
+
+        final long start = System.nanoTime();
+        in.close();
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        released.countDown();
+
+        assertTrue("close took " + millis + "ms", millis < 500);
+    }
+
+}
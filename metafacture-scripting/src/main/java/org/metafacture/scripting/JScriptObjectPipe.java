@@ -16,13 +16,14 @@
 package org.metafacture.scripting;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
-import org.metafacture.commons.ResourceUtil;
+import org.metafacture.commons.ScriptEnginePool;
 import org.metafacture.framework.FluxCommand;
 import org.metafacture.framework.MetafactureException;
 import org.metafacture.framework.ObjectReceiver;
@@ -33,6 +34,14 @@
 
 /**
  * Executes the function process(obj) in a given jscript.
+ * <p>
+ * The script is loaded and compiled once. Each thread which calls
+ * {@link #process(Object)} uses its own script state.
+ * <p>
+ * If a batch size greater than one is set, objects are collected and the
+ * function is called with a {@link List} of objects instead. It must return
+ * an array or a collection whose elements are forwarded one by one.
+ * Incomplete batches are processed when the stream is reset or closed.
  *
  * @author Markus Geipel
  *
@@ -43,9 +52,13 @@
 @FluxCommand("jscript")
 public final class JScriptObjectPipe extends DefaultObjectPipe<Object, ObjectReceiver<Object>> {
 
+    public static final int DEFAULT_BATCH_SIZE = 1;
+
     private static final String PROCESS = "process";
     private String invoke = PROCESS;
-    private Invocable invocable;
+    private ScriptEnginePool engines;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private final List<Object> batch = new ArrayList<>();
 
     public JScriptObjectPipe(final String script) {
         setScript(script);
@@ -55,34 +68,84 @@ public void setInvoke(final String invoke) {
         this.invoke = invoke;
     }
 
-    private void setScript(final String file) {
+    /**
+     * Sets the number of objects passed to the script in a single call.
+     *
+     * @param batchSize the number of objects per call
+     */
+    public void setBatchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
 
-        final ScriptEngineManager manager = new ScriptEngineManager();
-        final ScriptEngine engine = manager.getEngineByName("JavaScript");
+    private void setScript(final String file) {
         try {
-            // LOG.info("loading code from '" + file + "'");
-            engine.eval(ResourceUtil.getReader(file));
+            engines = ScriptEnginePool.forFile(ScriptEnginePool.JAVASCRIPT, file);
         } catch (ScriptException e) {
             throw new MetafactureException("Error in script", e);
         } catch (FileNotFoundException e) {
             throw new MetafactureException("Error loading script '" + file + "'", e);
         }
-        invocable = (Invocable) engine;
     }
 
-
-
     @Override
     public void process(final Object obj) {
         assert !isClosed();
-        try {
+        if (batchSize > 1) {
+            batch.add(obj);
+            if (batch.size() >= batchSize) {
+                processBatch();
+            }
+        } else {
+            getReceiver().process(invoke(obj));
+        }
+    }
 
-            // LOG.info("processing: " + value);
-            final Object retObj = invocable.invokeFunction(invoke, obj);
-            // LOG.info("returning: " + obj);
+    @Override
+    protected void onResetStream() {
+        processBatch();
+    }
+
+    @Override
+    protected void onCloseStream() {
+        processBatch();
+    }
 
-            getReceiver().process(retObj);
+    private void processBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final List<Object> objects = new ArrayList<>(batch);
+        batch.clear();
+        final Object retObj = invoke(Collections.unmodifiableList(objects));
+        if (retObj instanceof Object[]) {
+            for (final Object element : (Object[]) retObj) {
+                getReceiver().process(element);
+            }
+        } else if (retObj instanceof Iterable) {
+            for (final Object element : (Iterable<?>) retObj) {
+                getReceiver().process(element);
+            }
+        } else if (retObj instanceof Map) {
+            // Script arrays are exposed as maps from indices to elements
+            for (final Object element : ((Map<?, ?>) retObj).values()) {
+                getReceiver().process(element);
+            }
+        } else {
+            throw new MetafactureException("'" + invoke
+                    + "' method must return an array or collection in batch mode");
+        }
+    }
 
+    private Object invoke(final Object arg) {
+        try {
+            return engines.invokeFunction(invoke, arg);
         } catch (ScriptException e) {
             throw new MetafactureException("Error in script while evaluating 'process' method", e);
         } catch (NoSuchMethodException e) {
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.scripting;
+
+import static org.mockito.Mockito.inOrder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.metafacture.framework.MetafactureException;
+import org.metafacture.framework.ObjectReceiver;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/**
+ * Tests for class {@link JScriptObjectPipe}.
+ */
+public final class JScriptObjectPipeTest {
+
+    private static final String SCRIPT = "org/metafacture/scripting/jscript-test.js";
+
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private ObjectReceiver<Object> receiver;
+
+    private JScriptObjectPipe pipe;
+
+    @Before
+    public void setup() {
+        pipe = new JScriptObjectPipe(SCRIPT);
+        pipe.setReceiver(receiver);
+    }
+
+    @Test
+    public void shouldPassObjectsToProcessFunction() {
+        pipe.process("a");
+        pipe.process("b");
+        pipe.closeStream();
+
+        final InOrder ordered = inOrder(receiver);
+        ordered.verify(receiver).process("a!");
+        ordered.verify(receiver).process("b!");
+        ordered.verify(receiver).closeStream();
+        ordered.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void shouldForwardElementsOfScriptArraysInBatchMode() {
+        pipe.setInvoke("processArray");
+        pipe.setBatchSize(2);
+
+        pipe.process("a");
+        pipe.process("b");
+        pipe.process("c");
+        pipe.closeStream();
+
+        final InOrder ordered = inOrder(receiver);
+        ordered.verify(receiver).process("a!");
+        ordered.verify(receiver).process("b!");
+        ordered.verify(receiver).process("c!");
+        ordered.verify(receiver).closeStream();
+        ordered.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void shouldForwardElementsOfCollectionsInBatchMode() {
+        pipe.setInvoke("processList");
+        pipe.setBatchSize(2);
+
+        pipe.process("a");
+        pipe.process("b");
+        pipe.process("c");
+        pipe.resetStream();
+
+        final InOrder ordered = inOrder(receiver);
+        ordered.verify(receiver).process("a");
+        ordered.verify(receiver).process("b");
+        ordered.verify(receiver).process("c");
+        ordered.verify(receiver).resetStream();
+        ordered.verifyNoMoreInteractions();
+    }
+
+    @Test(expected = MetafactureException.class)
+    public void shouldRejectOtherReturnValuesInBatchMode() {
+        pipe.setInvoke("processInvalid");
+        pipe.setBatchSize(2);
+
+        pipe.process("a");
+        pipe.process("b");
+    }
+
+}
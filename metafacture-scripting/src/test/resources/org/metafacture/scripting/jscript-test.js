@@ -0,0 +1,19 @@
+function process(obj) {
+    return obj + "!";
+}
+
+function processArray(objs) {
+    var result = [];
+    for (var i = 0; i < objs.size(); i++) {
+        result.push(objs.get(i) + "!");
+    }
+    return result;
+}
+
+function processList(objs) {
+    return objs;
+}
+
+function processInvalid(objs) {
+    return objs.size();
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.collectors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.metafacture.framework.helpers.DefaultStreamReceiver;
+import org.metafacture.metamorph.InlineMorph;
+import org.metafacture.metamorph.Metamorph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of the <code>combine</code> and
+ * <code>concat</code> collectors. Each record resembles a bibliographic
+ * record with a few fields of several subfields which are combined, and a
+ * repeated field whose values are concatenated.
+ * <p>
+ * Run with {@code ./gradlew :metamorph:jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectorBenchmark {
+
+    private static final int COMBINED_FIELDS = 10;
+    private static final int SUBFIELDS = 5;
+
+    @Param({"10", "100", "1000"})
+    private int repetitions;
+
+    @Param({"false", "true"})
+    private boolean reverse;
+
+    private Metamorph metamorph;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        final InlineMorph morph = InlineMorph.in(this).with("<rules>");
+        for (int i = 0; i < COMBINED_FIELDS; ++i) {
+            final StringBuilder value = new StringBuilder();
+            for (int j = 0; j < SUBFIELDS; ++j) {
+                value.append("${s").append(j).append("} ");
+            }
+            morph.with("<combine name='field" + i + "' value='" + value
+                    + "' flushWith='record'>");
+            for (int j = 0; j < SUBFIELDS; ++j) {
+                morph.with("<data source='f" + i + j + "' name='s" + j + "' />");
+            }
+            morph.with("</combine>");
+        }
+        metamorph = morph
+                .with("<concat name='repeated' delimiter='; ' reverse='" + reverse + "'>")
+                .with("  <data source='r' />")
+                .with("</concat>")
+                .with("</rules>")
+                .createConnectedTo(new DefaultStreamReceiver() {
+
+                    @Override
+                    public void literal(final String name, final String value) {
+                        blackhole.consume(value);
+                    }
+
+                });
+    }
+
+    @Benchmark
+    public void processRecord() {
+        metamorph.startRecord("1");
+        for (int i = 0; i < COMBINED_FIELDS; ++i) {
+            for (int j = 0; j < SUBFIELDS; ++j) {
+                metamorph.literal("f" + i + j, "value " + j);
+            }
+        }
+        for (int i = 0; i < repetitions; ++i) {
+            metamorph.literal("r", "repeated value");
+        }
+        metamorph.endRecord();
+    }
+
+}
@@ -432,6 +432,15 @@ public Map<String, String> putMap(final String mapName, final Map<String, String
         return maps.put(mapName, map);
     }
 
+    /**
+     * Registers a resource which is closed when the stream is closed.
+     *
+     * @param resource the resource to close on {@link #closeStream()}
+     */
+    protected void registerResource(final Closeable resource) {
+        resources.add(resource);
+    }
+
     @Override
     public String putValue(final String mapName, final String key, final String value) {
         return maps.computeIfAbsent(mapName, k -> new HashMap<>()).put(key, value);
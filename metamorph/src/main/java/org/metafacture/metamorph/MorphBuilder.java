@@ -15,6 +15,7 @@
  */
 package org.metafacture.metamorph;
 
+import java.io.Closeable;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.Map;
@@ -30,6 +31,8 @@
 import org.metafacture.metamorph.api.Maps;
 import org.metafacture.metamorph.api.MorphBuildException;
 import org.metafacture.metamorph.api.NamedValuePipe;
+import org.metafacture.metamorph.functions.Regexp;
+import org.metafacture.metamorph.functions.RegexpPrefilter;
 import org.metafacture.metamorph.xml.Location;
 import org.w3c.dom.Node;
 
@@ -52,6 +55,7 @@ public final class MorphBuilder extends AbstractMetamorphDomWalker {
     private final Metamorph metamorph;
     private final InterceptorFactory interceptorFactory;
     private final Deque<StackFrame> stack = new LinkedList<StackFrame>();
+    private final RegexpPrefilter regexpPrefilter = new RegexpPrefilter();
 
     private static final class StackFrame {
 
@@ -364,6 +368,14 @@ protected void handleFunction(final Node functionNode) {
 
         function.setMaps(metamorph);
 
+        if (function instanceof Regexp) {
+            ((Regexp) function).setPrefilter(regexpPrefilter);
+        }
+
+        if (function instanceof Closeable) {
+            metamorph.registerResource((Closeable) function);
+        }
+
         // add key value entries...
         for (Node mapEntryNode = functionNode.getFirstChild(); mapEntryNode != null; mapEntryNode = mapEntryNode
                 .getNextSibling()) {
@@ -15,30 +15,39 @@
  */
 package org.metafacture.metamorph.collectors;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.metafacture.commons.StringUtil;
 import org.metafacture.metamorph.api.NamedValueSource;
 import org.metafacture.metamorph.api.helpers.AbstractFlushingCollect;
 
 /**
  * Corresponds to the <code>&lt;collect&gt;</code> tag.
+ * <p>
+ * The name and value templates are compiled once. Received values are stored
+ * in an array indexed by the slots of the template variables; values whose
+ * names do not occur in the templates are not stored.
  *
  * @author Markus Michael Geipel
  */
 public final class Combine extends AbstractFlushingCollect {
 
-    private final Map<String, String> variables = new HashMap<String, String>();
     private final Set<NamedValueSource> sources = new HashSet<NamedValueSource>();
     private final Set<NamedValueSource> sourcesLeft = new HashSet<NamedValueSource>();
 
+    private Map<String, Integer> slotIndexes;
+    private VariableTemplate nameTemplate;
+    private VariableTemplate valueTemplate;
+    private String[] variables;
+
     @Override
     protected void emit() {
-        final String name = StringUtil.format(getName(), variables);
-        final String value = StringUtil.format(getValue(), variables);
+        compileTemplates();
+        final String name = nameTemplate.format(variables);
+        final String value = valueTemplate.format(variables);
         getNamedValueReceiver().receive(name, value, this, getRecordCount(),
                 getEntityCount());
     }
@@ -51,7 +60,11 @@ protected boolean isComplete() {
     @Override
     protected void receive(final String name, final String value,
             final NamedValueSource source) {
-        variables.put(name, value);
+        compileTemplates();
+        final Integer slot = slotIndexes.get(name);
+        if (slot != null) {
+            variables[slot.intValue()] = value;
+        }
         sourcesLeft.remove(source);
     }
 
@@ -64,7 +77,20 @@ public void onNamedValueSourceAdded(final NamedValueSource namedValueSource) {
     @Override
     protected void clear() {
         sourcesLeft.addAll(sources);
-        variables.clear();
+        if (variables != null) {
+            Arrays.fill(variables, null);
+        }
+    }
+
+    private void compileTemplates() {
+        // Name and value are set after construction, so the templates
+        // cannot be compiled earlier
+        if (slotIndexes == null) {
+            slotIndexes = new HashMap<String, Integer>();
+            nameTemplate = VariableTemplate.compile(getName(), slotIndexes);
+            valueTemplate = VariableTemplate.compile(getValue(), slotIndexes);
+            variables = new String[slotIndexes.size()];
+        }
     }
 
 }
@@ -15,6 +15,9 @@
  */
 package org.metafacture.metamorph.collectors;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.metafacture.metamorph.api.NamedValueSource;
 import org.metafacture.metamorph.api.helpers.AbstractFlushingCollect;
 
@@ -26,6 +29,9 @@
 public final class Concat extends AbstractFlushingCollect {
 
     private final StringBuilder builder = new StringBuilder();
+    // Values are only joined on emit in reverse mode to avoid inserting at
+    // the start of the builder for every value
+    private final List<String> reverseValues = new ArrayList<String>();
 
     private String prefix = "";
     private String postfix = "";
@@ -52,6 +58,15 @@ public void setReverse(final boolean reverse) {
 
     @Override
     protected void emit() {
+        if (reverse) {
+            builder.setLength(0);
+            for (int i = reverseValues.size() - 1; i >= 0; --i) {
+                builder.append(reverseValues.get(i));
+                if (i > 0) {
+                    builder.append(delimiter);
+                }
+            }
+        }
         if (builder.length() != 0) {
             final String value = prefix + builder.toString() + postfix;
             getNamedValueReceiver().receive(getName(), value, this,
@@ -69,18 +84,18 @@ protected void receive(final String name, final String value,
             final NamedValueSource source) {
 
         if (reverse) {
-            builder.insert(0, currentDelimiter);
-            builder.insert(0, value);
+            reverseValues.add(value);
         } else {
             builder.append(currentDelimiter);
             builder.append(value);
+            currentDelimiter = delimiter;
         }
-        currentDelimiter = delimiter;
     }
 
     @Override
     protected void clear() {
         builder.delete(0, builder.length());
+        reverseValues.clear();
         currentDelimiter = "";
     }
 
@@ -22,18 +22,29 @@
 import org.metafacture.commons.types.ListMap;
 import org.metafacture.metamorph.api.NamedValueSource;
 import org.metafacture.metamorph.api.helpers.AbstractFlushingCollect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Builds the cross product of the data sources.
+ * <p>
+ * Tuples are generated one at a time, so that the cross product is never held
+ * in memory. The number of tuples emitted per flush can be capped with
+ * {@code maxTuples}. Flushes in which tuples were dropped because of the cap
+ * are counted.
  *
  * @author Markus Michael Geipel
  *
  */
 public final class Tuples extends AbstractFlushingCollect {
 
+    private static final Logger LOG = LoggerFactory.getLogger(Tuples.class);
+
     private final ListMap<String, String> listMap = new ListMap<String, String>();
     private int minN = 1;
     private String separator = "";
+    private long maxTuples;
+    private long truncatedCount;
 
     public void setMinN(final int minN) {
         this.minN = minN;
@@ -43,6 +54,24 @@ public void setSeparator(final String separator) {
         this.separator = separator;
     }
 
+    /**
+     * Sets the maximum number of tuples emitted per flush. The default is
+     * zero which means no limit.
+     *
+     * @param maxTuples maximum number of tuples or zero
+     */
+    public void setMaxTuples(final int maxTuples) {
+        this.maxTuples = maxTuples;
+    }
+
+    /**
+     * @return number of flushes in which tuples were dropped because of
+     *         {@code maxTuples}
+     */
+    public long getTruncatedCount() {
+        return truncatedCount;
+    }
+
     @Override
     protected void receive(final String name, final String value,
             final NamedValueSource source) {
@@ -70,25 +99,44 @@ protected void emit() {
         keys.addAll(listMap.keySet());
         Collections.sort(keys);
 
-        List<String> temp = new ArrayList<String>();
-        List<String> nextTemp = new ArrayList<String>();
-        temp.add("");
-
+        final List<List<String>> valueLists = new ArrayList<List<String>>(keys.size());
         for (final String key : keys) {
-            final List<String> values = listMap.get(key);
-            nextTemp = new ArrayList<String>(temp.size() * values.size());
-            for (final String value : values) {
-                for (final String base : temp) {
-                    nextTemp.add(base + separator + value);
-                }
-            }
-            temp = nextTemp;
+            valueLists.add(listMap.get(key));
         }
 
-        for (final String string : temp) {
-            getNamedValueReceiver().receive(getName(),
-                    string.substring(separator.length()), this,
+        // Odometer over the value lists with the first list turning fastest
+        final int[] indices = new int[valueLists.size()];
+        final StringBuilder builder = new StringBuilder();
+        long count = 0;
+        while (true) {
+            if (maxTuples > 0 && count >= maxTuples) {
+                if (truncatedCount == 0) {
+                    LOG.warn("tuples '{}': more than {} tuples, further tuples are dropped",
+                            getName(), maxTuples);
+                }
+                ++truncatedCount;
+                break;
+            }
+            builder.setLength(0);
+            for (int i = 0; i < indices.length; ++i) {
+                if (i > 0) {
+                    builder.append(separator);
+                }
+                builder.append(valueLists.get(i).get(indices[i]));
+            }
+            getNamedValueReceiver().receive(getName(), builder.toString(), this,
                     getRecordCount(), getEntityCount());
+            ++count;
+
+            int digit = 0;
+            while (digit < indices.length
+                    && ++indices[digit] == valueLists.get(digit).size()) {
+                indices[digit] = 0;
+                ++digit;
+            }
+            if (digit == indices.length) {
+                break;
+            }
         }
         clear();
     }
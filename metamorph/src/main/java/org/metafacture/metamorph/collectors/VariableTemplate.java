@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.collectors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A format string with <code>${name}</code> variables which has been split
+ * into literal parts and slot indices. Formatting it with an array of
+ * variable values gives the same result as
+ * {@link org.metafacture.commons.StringUtil#format(String, Map)} with a map
+ * of the same values.
+ */
+final class VariableTemplate {
+
+    private static final String VAR_START = "${";
+    private static final String VAR_END = "}";
+
+    private final String[] literals;
+    private final int[] slots;
+
+    private VariableTemplate(final String[] literals, final int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    /**
+     * Compiles a format string.
+     *
+     * @param format the format string
+     * @param slotIndexes slot indices of the variable names. Variables which
+     *                    are not yet in the map are added with the next free
+     *                    index.
+     * @return the compiled template
+     */
+    static VariableTemplate compile(final String format,
+            final Map<String, Integer> slotIndexes) {
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> slots = new ArrayList<>();
+        int oldEnd = 0;
+        while (true) {
+            final int varStart = format.indexOf(VAR_START, oldEnd);
+            final int varEnd = format.indexOf(VAR_END, varStart);
+            if (varStart < 0 || varEnd < 0) {
+                literals.add(format.substring(oldEnd));
+                break;
+            }
+            literals.add(format.substring(oldEnd, varStart));
+            final String varName = format.substring(varStart + VAR_START.length(), varEnd);
+            Integer slot = slotIndexes.get(varName);
+            if (slot == null) {
+                slot = Integer.valueOf(slotIndexes.size());
+                slotIndexes.put(varName, slot);
+            }
+            slots.add(slot);
+            oldEnd = varEnd + VAR_END.length();
+        }
+        final int[] slotArray = new int[slots.size()];
+        for (int i = 0; i < slotArray.length; ++i) {
+            slotArray[i] = slots.get(i).intValue();
+        }
+        return new VariableTemplate(literals.toArray(new String[0]), slotArray);
+    }
+
+    /**
+     * Formats the template. Missing variables are replaced by an empty string.
+     *
+     * @param values the variable values indexed by slot
+     * @return the formatted string
+     */
+    String format(final String[] values) {
+        if (slots.length == 0) {
+            return literals[0];
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < slots.length; ++i) {
+            builder.append(literals[i]);
+            final String value = values[slots[i]];
+            if (value != null) {
+                builder.append(value);
+            }
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+
+}
@@ -15,16 +15,86 @@
  */
 package org.metafacture.metamorph.functions;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.metafacture.commons.types.BloomFilter;
+import org.metafacture.metamorph.api.Maps;
+import org.metafacture.metamorph.api.MorphExecutionException;
 import org.metafacture.metamorph.api.helpers.AbstractSimpleStatelessFunction;
+import org.metafacture.metamorph.maps.JndiSqlMap;
+import org.metafacture.metamorph.maps.RestMap;
+import org.metafacture.metamorph.maps.SqlMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Base class for functions which look up values in maps.
+ * <p>
+ * Lookups can optionally be guarded by a {@link BloomFilter} which
+ * short-circuits keys that are definitely not contained in the map. The filter
+ * is built on first use from a key list file if one is set and from the keys
+ * of the map otherwise. Maps whose keys cannot be enumerated (such as file,
+ * sql or rest maps) require a key list file. The key list file contains one
+ * key per line; anything following a tab is ignored, so the tab-separated
+ * files of a file map can be used as key list.
+ * <p>
+ * If a filter file is set, the filter is stored in this file together with a
+ * fingerprint of its key source. The fingerprint consists of the size and
+ * modification time of the key list file or of the number and hash of the
+ * keys of the map. The filter is only read from the file if the fingerprint
+ * still matches; otherwise it is rebuilt and the file is replaced.
+ * <p>
+ * Keys rejected by the filter are mapped to the default value of the map. Only
+ * maps which can be enumerated support a default value for these keys; the
+ * default of other maps is not requested.
  *
  * @author Markus Michael Geipel
  */
-abstract class AbstractLookup extends AbstractSimpleStatelessFunction {
+abstract class AbstractLookup extends AbstractSimpleStatelessFunction
+        implements Closeable {
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractLookup.class);
+
+    private static final int FILTER_FILE_MAGIC = 0x4d464c42; // "MFLB"
+    private static final char KEY_SEPARATOR = '\t';
+
+    private boolean bloomFilterEnabled;
+    private double falsePositiveRate = DEFAULT_FALSE_POSITIVE_RATE;
+    private String bloomFilterFile;
+    private String bloomFilterKeys;
+
+    private BloomFilter bloomFilter;
+    private String mapDefault;
+    private long lookupCount;
+    private long avoidedLookupCount;
 
     protected final String lookup(final String key) {
+        if (bloomFilterEnabled || bloomFilterFile != null || bloomFilterKeys != null) {
+            if (bloomFilter == null) {
+                initBloomFilter();
+            }
+            ++lookupCount;
+            if (!bloomFilter.mightContain(key)) {
+                ++avoidedLookupCount;
+                return mapDefault;
+            }
+        }
         final String returnValue;
         if (getMapName() == null) {
             returnValue = getLocalValue(key);
@@ -34,4 +104,173 @@ protected final String lookup(final String key) {
         return returnValue;
     }
 
+    public void setBloomFilter(final boolean bloomFilterEnabled) {
+        this.bloomFilterEnabled = bloomFilterEnabled;
+    }
+
+    /**
+     * Sets the false positive rate of the bloom filter. The rate is only used
+     * when a filter is built. The default is
+     * {@value #DEFAULT_FALSE_POSITIVE_RATE}.
+     *
+     * @param falsePositiveRate a decimal number between 0 and 1
+     */
+    public void setBloomFilterFpp(final String falsePositiveRate) {
+        this.falsePositiveRate = Double.parseDouble(falsePositiveRate);
+    }
+
+    /**
+     * Sets the file in which the bloom filter is stored. Setting a file
+     * enables the bloom filter.
+     *
+     * @param bloomFilterFile path of the filter file
+     */
+    public void setBloomFilterFile(final String bloomFilterFile) {
+        this.bloomFilterFile = bloomFilterFile;
+    }
+
+    /**
+     * Sets a file listing the keys of the map from which the bloom filter is
+     * built. Setting a key list file enables the bloom filter.
+     *
+     * @param bloomFilterKeys path of the key list file
+     */
+    public void setBloomFilterKeys(final String bloomFilterKeys) {
+        this.bloomFilterKeys = bloomFilterKeys;
+    }
+
+    /**
+     * @return number of lookups which were checked against the bloom filter
+     */
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * @return number of lookups which the bloom filter identified as misses
+     *         without consulting the map
+     */
+    public long getAvoidedLookupCount() {
+        return avoidedLookupCount;
+    }
+
+    @Override
+    public void close() {
+        if (lookupCount > 0) {
+            LOG.info("{}: bloom filter avoided {} of {} lookups in map '{}'",
+                    getClass().getSimpleName(), avoidedLookupCount, lookupCount,
+                    getMapName() == null ? "(local)" : getMapName());
+        }
+    }
+
+    private void initBloomFilter() {
+        final Map<String, String> map = getMap();
+        // The default of a remote map would cost a request for every lookup:
+        if (getMapName() == null || map instanceof RestMap || map instanceof SqlMap ||
+                map instanceof JndiSqlMap) {
+            mapDefault = null;
+        } else {
+            mapDefault = map.get(Maps.DEFAULT_MAP_KEY);
+        }
+        final String fingerprint = computeFingerprint();
+        if (bloomFilterFile != null && new File(bloomFilterFile).exists()) {
+            bloomFilter = readBloomFilter(fingerprint);
+            if (bloomFilter != null) {
+                return;
+            }
+            LOG.info("Rebuilding stale bloom filter {}", bloomFilterFile);
+        }
+        bloomFilter = buildBloomFilter();
+        if (bloomFilterFile != null) {
+            writeBloomFilter(fingerprint);
+        }
+    }
+
+    private String computeFingerprint() {
+        if (bloomFilterKeys != null) {
+            final File keysFile = new File(bloomFilterKeys);
+            if (!keysFile.isFile()) {
+                throw new MorphExecutionException("Cannot read bloom filter keys from "
+                        + bloomFilterKeys);
+            }
+            return "keys:" + keysFile.length() + ":" + keysFile.lastModified()
+                    + ":" + falsePositiveRate;
+        }
+        final Set<String> keys = getMapKeys();
+        long hash = 0;
+        for (final String key : keys) {
+            hash += key.hashCode();
+        }
+        return "map:" + keys.size() + ":" + hash + ":" + falsePositiveRate;
+    }
+
+    private BloomFilter buildBloomFilter() {
+        if (bloomFilterKeys == null) {
+            final Set<String> keys = getMapKeys();
+            final BloomFilter filter = BloomFilter.create(keys.size(), falsePositiveRate);
+            keys.forEach(filter::put);
+            return filter;
+        }
+        final long[] keyCount = new long[1];
+        forEachListedKey(key -> ++keyCount[0]);
+        final BloomFilter filter = BloomFilter.create(keyCount[0], falsePositiveRate);
+        forEachListedKey(filter::put);
+        return filter;
+    }
+
+    private Set<String> getMapKeys() {
+        try {
+            return getMap().keySet();
+        } catch (final UnsupportedOperationException e) {
+            throw new MorphExecutionException("Cannot build bloom filter for map '"
+                    + getMapName() + "' since its keys cannot be enumerated. "
+                    + "Use a key list file instead.", e);
+        }
+    }
+
+    private void forEachListedKey(final Consumer<String> consumer) {
+        try (BufferedReader reader = Files.newBufferedReader(
+                new File(bloomFilterKeys).toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf(KEY_SEPARATOR);
+                consumer.accept(separator < 0 ? line : line.substring(0, separator));
+            }
+        } catch (final IOException e) {
+            throw new MorphExecutionException("Cannot read bloom filter keys from "
+                    + bloomFilterKeys, e);
+        }
+    }
+
+    /**
+     * Reads the filter file.
+     *
+     * @param fingerprint the fingerprint of the current key source
+     * @return the filter or null if the file is stale or not a filter file
+     */
+    private BloomFilter readBloomFilter(final String fingerprint) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(bloomFilterFile)))) {
+            if (in.readInt() != FILTER_FILE_MAGIC || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            return BloomFilter.readFrom(in);
+        } catch (final IOException e) {
+            LOG.warn("Cannot read bloom filter from {}", bloomFilterFile, e);
+            return null;
+        }
+    }
+
+    private void writeBloomFilter(final String fingerprint) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(bloomFilterFile)))) {
+            out.writeInt(FILTER_FILE_MAGIC);
+            out.writeUTF(fingerprint);
+            bloomFilter.writeTo(out);
+        } catch (final IOException e) {
+            throw new MorphExecutionException("Cannot write bloom filter to "
+                    + bloomFilterFile, e);
+        }
+    }
+
 }
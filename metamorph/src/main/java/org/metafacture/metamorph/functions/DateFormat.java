@@ -15,13 +15,23 @@
  */
 package org.metafacture.metamorph.functions;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.chrono.IsoChronology;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.FormatStyle;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
 import java.util.Collections;
-import java.util.GregorianCalendar;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.metafacture.metamorph.api.MorphBuildException;
 import org.metafacture.metamorph.api.helpers.AbstractSimpleStatelessFunction;
@@ -50,6 +60,12 @@
  *   <li>Read ISO-dates and generate German style dates:
  *   {@code <dateformat inputformat="yyyy-MM-dd" outputformat="dd.MM.yyyy" />}
  * </ul>
+ * Dates are parsed and formatted with immutable {@link DateTimeFormatter}s
+ * which are shared between all instances. Input dates are parsed leniently
+ * like {@link java.text.SimpleDateFormat} does: two-digit years are resolved
+ * relative to the current date and out-of-range fields roll over. Dates
+ * before 1582 are interpreted in the proleptic Gregorian calendar. Recently
+ * converted values are memoised per instance.
  *
  * @author Michael Büchner
  */
@@ -62,6 +78,31 @@ public class DateFormat extends AbstractSimpleStatelessFunction {
 
     private static final Set<String> SUPPORTED_LANGUAGES;
 
+    private static final int MEMO_SIZE = 256;
+    private static final int TWO_DIGIT_YEAR_WINDOW = 80;
+    private static final int ERA_BC = 0;
+    private static final int ERA_AD = 1;
+
+    private static final Pattern LEADING_ZEROS = Pattern.compile("([0]{1,})([0-9]{1,})");
+    // Locale data may use any number of y's for the year (e.g. "y" in CLDR)
+    private static final Pattern YEAR = Pattern.compile("(y+)");
+
+    private static final Map<String, DateTimeFormatter> INPUT_FORMATTERS =
+            new ConcurrentHashMap<>();
+    private static final Map<OutputKey, DateTimeFormatter> OUTPUT_FORMATTERS =
+            new ConcurrentHashMap<>();
+
+    private final Map<String, String> memo = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > MEMO_SIZE;
+        }
+
+    };
+
     private String inputFormat = DEFAULT_INPUT_FORMAT;
     private DateFormats outputFormat = DEFAULT_OUTPUT_FORMAT;
     private Era era = DEFAULT_ERA;
@@ -75,21 +116,27 @@ public class DateFormat extends AbstractSimpleStatelessFunction {
      * @author Christoph Böhme
      */
     public enum DateFormats {
-        FULL(java.text.DateFormat.FULL),
-        LONG(java.text.DateFormat.LONG),
-        MEDIUM(java.text.DateFormat.MEDIUM),
-        SHORT(java.text.DateFormat.SHORT);
+        FULL(java.text.DateFormat.FULL, FormatStyle.FULL),
+        LONG(java.text.DateFormat.LONG, FormatStyle.LONG),
+        MEDIUM(java.text.DateFormat.MEDIUM, FormatStyle.MEDIUM),
+        SHORT(java.text.DateFormat.SHORT, FormatStyle.SHORT);
 
         private final int formatId;
+        private final FormatStyle formatStyle;
 
-        DateFormats(final int formatId) {
+        DateFormats(final int formatId, final FormatStyle formatStyle) {
             this.formatId = formatId;
+            this.formatStyle = formatStyle;
         }
 
         int getFormatId() {
             return formatId;
         }
 
+        FormatStyle getFormatStyle() {
+            return formatStyle;
+        }
+
     }
 
     /**
@@ -99,8 +146,8 @@ int getFormatId() {
      * @author Michael Büchner
      */
     public enum Era {
-        AD(GregorianCalendar.AD),
-        BC(GregorianCalendar.BC),
+        AD(java.util.GregorianCalendar.AD),
+        BC(java.util.GregorianCalendar.BC),
         AUTO(-1);
 
         private final int eraId;
@@ -123,52 +170,120 @@ int getEraId() {
 
     @Override
     public final String process(final String value) {
+        String result = memo.get(value);
+        if (result == null) {
+            result = convert(value);
+            memo.put(value, result);
+        }
+        return result;
+    }
+
+    private String convert(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final DateTimeFormatter inputFormatter;
+        try {
+            inputFormatter = INPUT_FORMATTERS.computeIfAbsent(inputFormat,
+                    DateFormat::createInputFormatter);
+        } catch (final IllegalArgumentException e) {
+            throw new MorphBuildException("The date/time format is not supported.", e);
+        }
         String result;
         try {
-            final Calendar c = Calendar.getInstance();
-            final SimpleDateFormat sdf = new SimpleDateFormat(inputFormat);
-            c.setTime(sdf.parse(value));
+            LocalDate date = LocalDate.from(inputFormatter.parse(value, new ParsePosition(0)));
             if (era == Era.BC) {
-                c.set(Calendar.ERA, GregorianCalendar.BC);
+                date = date.with(ChronoField.ERA, ERA_BC);
             } else if (era == Era.AD) {
-                c.set(Calendar.ERA, GregorianCalendar.AD);
-            }
-
-            final SimpleDateFormat sdfp = (SimpleDateFormat) java.text.DateFormat.getDateInstance(outputFormat.getFormatId(), outputLocale);
-            String p = sdfp.toPattern();
-            if (c.get(Calendar.ERA) == GregorianCalendar.BC) {
-                p = p.replace("yyyy", "yyyy G");
+                date = date.with(ChronoField.ERA, ERA_AD);
             }
 
-            final SimpleDateFormat sdfo = new SimpleDateFormat(p, outputLocale);
-            result = sdfo.format(c.getTime());
+            final boolean isBc = date.get(ChronoField.ERA) == ERA_BC;
+            result = OUTPUT_FORMATTERS.computeIfAbsent(
+                    new OutputKey(outputFormat, outputLocale, isBc),
+                    DateFormat::createOutputFormatter).format(date);
 
             if (removeLeadingZeros) {
-                result = result.replaceAll("([0]{1,})([0-9]{1,})", "$2");
+                result = LEADING_ZEROS.matcher(result).replaceAll("$2");
             }
-
-        } catch (final IllegalArgumentException e) {
-            throw new MorphBuildException("The date/time format is not supported.", e);
-        } catch (final Exception e) {
+        } catch (final DateTimeException e) {
             result = value;
         }
         return result;
     }
 
+    /**
+     * Creates a formatter from a {@link java.text.SimpleDateFormat} pattern.
+     * The formatter parses as leniently as {@code SimpleDateFormat}. In
+     * particular, years with one or two letters are parsed as two-digit
+     * years in a window starting 80 years before today.
+     */
+    private static DateTimeFormatter createInputFormatter(final String pattern) {
+        final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder()
+                .parseCaseInsensitive()
+                .parseLenient();
+        final LocalDate twoDigitYearBase = LocalDate.now().minusYears(TWO_DIGIT_YEAR_WINDOW);
+        final StringBuilder segment = new StringBuilder();
+        boolean inQuotes = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            if (c == '\'') {
+                inQuotes = !inQuotes;
+            }
+            if (!inQuotes && c == 'y') {
+                int end = i;
+                while (end < pattern.length() && pattern.charAt(end) == 'y') {
+                    ++end;
+                }
+                if (end - i <= 2) {
+                    builder.appendPattern(segment.toString());
+                    segment.setLength(0);
+                    builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, 2,
+                            twoDigitYearBase);
+                } else {
+                    segment.append(pattern, i, end);
+                }
+                i = end;
+                continue;
+            }
+            segment.append(c);
+            ++i;
+        }
+        builder.appendPattern(segment.toString());
+        // Like SimpleDateFormat, patterns without month or day parse the first:
+        builder.parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+                .parseDefaulting(ChronoField.DAY_OF_MONTH, 1);
+        return builder.toFormatter().withResolverStyle(ResolverStyle.LENIENT);
+    }
+
+    private static DateTimeFormatter createOutputFormatter(final OutputKey key) {
+        String pattern = DateTimeFormatterBuilder.getLocalizedDateTimePattern(
+                key.format.getFormatStyle(), null, IsoChronology.INSTANCE, key.locale);
+        if (key.isBc) {
+            pattern = YEAR.matcher(pattern).replaceFirst("$1 G");
+        }
+        return DateTimeFormatter.ofPattern(pattern, key.locale);
+    }
+
     public final void setInputFormat(final String inputFormat) {
         this.inputFormat = inputFormat;
+        memo.clear();
     }
 
     public final void setOutputFormat(final DateFormats outputFormat) {
         this.outputFormat = outputFormat;
+        memo.clear();
     }
 
     public final void setEra(final Era era) {
         this.era = era;
+        memo.clear();
     }
 
     public final void setRemoveLeadingZeros(final boolean removeLeadingZeros) {
         this.removeLeadingZeros = removeLeadingZeros;
+        memo.clear();
     }
 
     public final void setLanguage(final String language) {
@@ -176,5 +291,40 @@ public final void setLanguage(final String language) {
             throw new MorphBuildException("Language '" + language + "' not supported.");
         }
         this.outputLocale = new Locale(language);
+        memo.clear();
+    }
+
+    /**
+     * Key of the output formatter cache.
+     */
+    private static final class OutputKey {
+
+        private final DateFormats format;
+        private final Locale locale;
+        private final boolean isBc;
+
+        OutputKey(final DateFormats format, final Locale locale, final boolean isBc) {
+            this.format = format;
+            this.locale = locale;
+            this.isBc = isBc;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof OutputKey)) {
+                return false;
+            }
+            final OutputKey other = (OutputKey) obj;
+            return format == other.format && isBc == other.isBc
+                    && locale.equals(other.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return (format.hashCode() * 31 + locale.hashCode()) * 31
+                    + Boolean.hashCode(isBc);
+        }
+
     }
+
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.functions;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A set of name-value pairs which is keyed by 64 bit fingerprints. The
+ * fingerprints are stored in a primitive open-addressing table. Pairs with
+ * equal fingerprints are compared with the stored name and value, so that
+ * collisions never cause false positives. No key strings are allocated.
+ * <p>
+ * Clearing the set takes constant time and keeps the allocated table for
+ * reuse. The number of entries can be capped; once the cap is reached, new
+ * pairs are no longer stored.
+ */
+final class FingerprintSet {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int maxSize;
+
+    private long[] fingerprints;
+    private String[] names;
+    private String[] values;
+    private int[] generations;
+    private int generation = 1;
+    private int size;
+    private long overflowCount;
+
+    /**
+     * @param maxSize maximum number of stored pairs or zero for no limit
+     */
+    FingerprintSet(final int maxSize) {
+        this.maxSize = maxSize;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a name-value pair to the set.
+     *
+     * @param name the name or null
+     * @param value the value or null
+     * @return true if the pair was not yet in the set
+     */
+    boolean add(final String name, final String value) {
+        final long fingerprint = fingerprint(name, value);
+        final int mask = fingerprints.length - 1;
+        int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        while (generations[index] == generation) {
+            if (fingerprints[index] == fingerprint && Objects.equals(names[index], name)
+                    && Objects.equals(values[index], value)) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        if (maxSize > 0 && size >= maxSize) {
+            ++overflowCount;
+            return true;
+        }
+        fingerprints[index] = fingerprint;
+        names[index] = name;
+        values[index] = value;
+        generations[index] = generation;
+        ++size;
+        if (size * 2 > fingerprints.length) {
+            resize(fingerprints.length * 2);
+        }
+        return true;
+    }
+
+    void clear() {
+        size = 0;
+        ++generation;
+        if (generation == 0) {
+            // Wrapped around after 2^32 clears: stale stamps may match again
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of pairs which were not stored because the set was full
+     */
+    long getOverflowCount() {
+        return overflowCount;
+    }
+
+    private void allocate(final int capacity) {
+        fingerprints = new long[capacity];
+        names = new String[capacity];
+        values = new String[capacity];
+        generations = new int[capacity];
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldFingerprints = fingerprints;
+        final String[] oldNames = names;
+        final String[] oldValues = values;
+        final int[] oldGenerations = generations;
+        allocate(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldFingerprints.length; ++i) {
+            if (oldGenerations[i] == generation) {
+                final long fingerprint = oldFingerprints[i];
+                int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+                while (generations[index] == generation) {
+                    index = (index + 1) & mask;
+                }
+                fingerprints[index] = fingerprint;
+                names[index] = oldNames[i];
+                values[index] = oldValues[i];
+                generations[index] = generation;
+            }
+        }
+    }
+
+    private static long fingerprint(final String name, final String value) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = update(hash, name);
+        // Separate name and value by a zero char
+        hash *= FNV_PRIME;
+        hash = update(hash, value);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long update(final long hash, final String str) {
+        if (str == null) {
+            return hash;
+        }
+        long result = hash;
+        final int length = str.length();
+        for (int i = 0; i < length; ++i) {
+            result ^= str.charAt(i);
+            result *= FNV_PRIME;
+        }
+        return result;
+    }
+
+}
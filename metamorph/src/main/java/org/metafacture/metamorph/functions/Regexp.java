@@ -15,6 +15,7 @@
  */
 package org.metafacture.metamorph.functions;
 
+import java.io.Closeable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -23,18 +24,31 @@
 import org.metafacture.commons.StringUtil;
 import org.metafacture.metamorph.api.NamedValueSource;
 import org.metafacture.metamorph.api.helpers.AbstractFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Performs regexp matching.
+ * <p>
+ * If a {@link RegexpPrefilter} is set, values which cannot match the pattern
+ * are skipped without evaluating the regular expression.
  *
  * @author Markus Michael Geipel
  */
-public final class Regexp extends AbstractFunction {
+public final class Regexp extends AbstractFunction implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Regexp.class);
 
     private Matcher matcher;
     private String format;
     private final Map<String, String> tempVars = new HashMap<String, String>();
 
+    private boolean combine;
+    private RegexpPrefilter prefilter;
+    private int patternId;
+    private long receivedCount;
+    private long skippedCount;
+
     @Override
     public void receive(final String name, final String value,
             final NamedValueSource source, final int recordCount,
@@ -42,6 +56,13 @@ public void receive(final String name, final String value,
         if (null == value) {
             return;
         }
+        if (prefilter != null) {
+            ++receivedCount;
+            if (!prefilter.mightMatch(patternId, value)) {
+                ++skippedCount;
+                return;
+            }
+        }
         matcher.reset(value);
         if (null == format) {
             while (matcher.find()) {
@@ -81,4 +102,43 @@ public void setFormat(final String format) {
         this.format = format;
     }
 
+    /**
+     * Allows the pattern to be combined with other patterns in the
+     * {@link RegexpPrefilter} if no required literal can be extracted from
+     * it. The default is false.
+     *
+     * @param combine true to allow combining the pattern
+     */
+    public void setCombine(final boolean combine) {
+        this.combine = combine;
+    }
+
+    /**
+     * Registers the pattern with a prefilter shared with other regexp
+     * functions. Must be called after the pattern has been set.
+     *
+     * @param prefilter the prefilter to use
+     */
+    public void setPrefilter(final RegexpPrefilter prefilter) {
+        this.prefilter = prefilter;
+        patternId = prefilter.register(matcher.pattern(), combine);
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    @Override
+    public void close() {
+        if (receivedCount > 0) {
+            LOG.info("regexp '{}': prefilter skipped {} of {} values ({}%)",
+                    matcher.pattern(), skippedCount, receivedCount,
+                    skippedCount * 100 / receivedCount);
+        }
+    }
+
 }
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.functions;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.metafacture.commons.tries.SetMatcher;
+
+/**
+ * Decides for a group of {@link Regexp} functions whether their patterns can
+ * possibly match a value, so that the full regular expression only needs to be
+ * evaluated for values which pass the filter.
+ * <p>
+ * For each pattern a literal is extracted which every match must contain. All
+ * literals are searched with a single Aho-Corasick scan per value. Patterns
+ * without such a literal can optionally be combined into a single alternation
+ * which is evaluated once per value: if it does not match, none of the
+ * combined patterns can match. Patterns with back-references or named groups
+ * are never combined.
+ * <p>
+ * Functions receiving the same value (all functions attached to the same
+ * source receive the identical string instance) share the results of the scans.
+ * Instances are not thread-safe.
+ */
+public final class RegexpPrefilter {
+
+    private static final int NO_LITERAL = -1;
+    private static final int COMBINED = -2;
+
+    private final Map<String, Integer> literalIds = new HashMap<>();
+    private final List<Integer> patternLiterals = new ArrayList<>();
+    private final List<String> combinedPatterns = new ArrayList<>();
+
+    private SetMatcher<Integer> literalMatcher;
+    private Pattern combinedPattern;
+
+    private String lastValue;
+    private final BitSet foundLiterals = new BitSet();
+    private boolean literalsScanned;
+    private boolean combinedEvaluated;
+    private boolean combinedMatched;
+
+    /**
+     * Registers a pattern.
+     *
+     * @param pattern the pattern to register
+     * @param combine whether the pattern may be combined with others if it has
+     *                no required literal
+     * @return the id of the pattern which must be passed to
+     *         {@link #mightMatch(int, String)}
+     */
+    public int register(final Pattern pattern, final boolean combine) {
+        final String literal = pattern.flags() == 0 ? requiredLiteral(pattern.pattern()) : null;
+        if (literal != null) {
+            Integer literalId = literalIds.get(literal);
+            if (literalId == null) {
+                literalId = Integer.valueOf(literalIds.size());
+                literalIds.put(literal, literalId);
+                literalMatcher = null;
+            }
+            patternLiterals.add(literalId);
+        } else if (combine && isCombinable(pattern.pattern())) {
+            combinedPatterns.add("(?:" + pattern.pattern() + ")");
+            combinedPattern = null;
+            patternLiterals.add(Integer.valueOf(COMBINED));
+        } else {
+            patternLiterals.add(Integer.valueOf(NO_LITERAL));
+        }
+        lastValue = null;
+        return patternLiterals.size() - 1;
+    }
+
+    /**
+     * Checks whether a pattern might match somewhere in a value.
+     *
+     * @param patternId the id returned by {@link #register(Pattern, boolean)}
+     * @param value the value to check
+     * @return false if the pattern cannot match the value
+     */
+    public boolean mightMatch(final int patternId, final String value) {
+        if (value != lastValue) {
+            lastValue = value;
+            literalsScanned = false;
+            combinedEvaluated = false;
+        }
+        final int literalId = patternLiterals.get(patternId).intValue();
+        if (literalId == NO_LITERAL) {
+            return true;
+        }
+        if (literalId == COMBINED) {
+            if (!combinedEvaluated) {
+                combinedMatched = getCombinedPattern().matcher(value).find();
+                combinedEvaluated = true;
+            }
+            return combinedMatched;
+        }
+        if (!literalsScanned) {
+            scanLiterals(value);
+        }
+        return foundLiterals.get(literalId);
+    }
+
+    private void scanLiterals(final String value) {
+        foundLiterals.clear();
+        for (final SetMatcher.Match<Integer> match : getLiteralMatcher().match(value)) {
+            foundLiterals.set(match.getValue().intValue());
+        }
+        literalsScanned = true;
+    }
+
+    private SetMatcher<Integer> getLiteralMatcher() {
+        if (literalMatcher == null) {
+            literalMatcher = new SetMatcher<>();
+            literalIds.forEach(literalMatcher::put);
+        }
+        return literalMatcher;
+    }
+
+    private Pattern getCombinedPattern() {
+        if (combinedPattern == null) {
+            combinedPattern = Pattern.compile(String.join("|", combinedPatterns));
+        }
+        return combinedPattern;
+    }
+
+    private static boolean isCombinable(final String regex) {
+        for (int i = 0; i < regex.length() - 1; ++i) {
+            final char c = regex.charAt(i);
+            final char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if (Character.isDigit(next) || next == 'k') {
+                    return false;
+                }
+                ++i;
+            } else if (c == '(' && next == '?' && i + 3 < regex.length()
+                    && regex.charAt(i + 2) == '<' && Character.isLetter(regex.charAt(i + 3))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extracts the longest literal which is part of every match of a regular
+     * expression. The extraction is conservative: if the structure of the
+     * expression is not fully understood, no literal is returned.
+     *
+     * @param regex a regular expression in {@link Pattern} syntax
+     * @return the literal or null if none could be determined
+     */
+    static String requiredLiteral(final String regex) {
+        final StringBuilder run = new StringBuilder();
+        String longest = "";
+        final int length = regex.length();
+        int i = 0;
+        while (i < length) {
+            final char c = regex.charAt(i);
+            String literal = null;
+            int next = i + 1;
+            switch (c) {
+                case '\\':
+                    if (next >= length) {
+                        return null;
+                    }
+                    final char escaped = regex.charAt(next);
+                    next += 1;
+                    if (!Character.isLetterOrDigit(escaped)) {
+                        literal = String.valueOf(escaped);
+                    } else if (escaped == 't') {
+                        literal = "\t";
+                    } else if (escaped == 'n') {
+                        literal = "\n";
+                    } else if (escaped == 'r') {
+                        literal = "\r";
+                    } else if (escaped == 'f') {
+                        literal = "\f";
+                    } else if (escaped == 'a') {
+                        literal = "\u0007";
+                    } else if (escaped == 'e') {
+                        literal = "\u001B";
+                    } else if (escaped == 'p' || escaped == 'P') {
+                        if (next < length && regex.charAt(next) == '{') {
+                            next = regex.indexOf('}', next) + 1;
+                            if (next == 0) {
+                                return null;
+                            }
+                        }
+                    } else if (escaped == 'k') {
+                        next = regex.indexOf('>', next) + 1;
+                        if (next == 0) {
+                            return null;
+                        }
+                    } else if (escaped == 'Q' || escaped == 'E' || escaped == 'x'
+                            || escaped == 'u' || escaped == '0' || escaped == 'c'
+                            || escaped == 'N') {
+                        return null;
+                    }
+                    break;
+                case '(':
+                    if (next < length && regex.charAt(next) == '?' && next + 1 < length) {
+                        final char kind = regex.charAt(next + 1);
+                        if (kind != ':' && kind != '=' && kind != '!' && kind != '<'
+                                && kind != '>') {
+                            // Inline flags change the meaning of literals
+                            return null;
+                        }
+                    }
+                    next = skipGroup(regex, i);
+                    if (next < 0) {
+                        return null;
+                    }
+                    break;
+                case '[':
+                    next = skipCharClass(regex, i);
+                    if (next < 0) {
+                        return null;
+                    }
+                    break;
+                case '|':
+                case ')':
+                case ']':
+                    return null;
+                case '.':
+                case '^':
+                case '$':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    break;
+                default:
+                    if (Character.isHighSurrogate(c) && next < length
+                            && Character.isLowSurrogate(regex.charAt(next))) {
+                        next += 1;
+                    }
+                    literal = regex.substring(i, next);
+                    break;
+            }
+            boolean optional = false;
+            boolean quantified = false;
+            if (next < length && !isQuantifier(c)) {
+                final char quantifier = regex.charAt(next);
+                if (quantifier == '?' || quantifier == '*' || quantifier == '+') {
+                    quantified = true;
+                    optional = quantifier != '+';
+                    next += 1;
+                } else if (quantifier == '{') {
+                    final int end = regex.indexOf('}', next);
+                    if (end < 0) {
+                        return null;
+                    }
+                    quantified = true;
+                    optional = isZeroMinimum(regex.substring(next + 1, end));
+                    next = end + 1;
+                }
+                if (quantified && next < length
+                        && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+                    next += 1;
+                }
+            }
+            if (literal != null && !optional) {
+                run.append(literal);
+            }
+            if (literal == null || quantified) {
+                if (run.length() > longest.length()) {
+                    longest = run.toString();
+                }
+                run.setLength(0);
+            }
+            i = next;
+        }
+        if (run.length() > longest.length()) {
+            longest = run.toString();
+        }
+        return longest.isEmpty() ? null : longest;
+    }
+
+    private static boolean isQuantifier(final char c) {
+        return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    private static boolean isZeroMinimum(final String bounds) {
+        final int comma = bounds.indexOf(',');
+        final String minimum = (comma < 0 ? bounds : bounds.substring(0, comma)).trim();
+        try {
+            return Integer.parseInt(minimum) == 0;
+        } catch (final NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static int skipGroup(final String regex, final int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipCharClass(regex, i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth += 1;
+            } else if (c == ')') {
+                depth -= 1;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i += 1;
+        }
+        return -1;
+    }
+
+    private static int skipCharClass(final String regex, final int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth += 1;
+                // A closing bracket directly after the opening one is literal
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i += 1;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i += 1;
+                }
+            } else if (c == ']') {
+                depth -= 1;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i += 1;
+        }
+        return -1;
+    }
+
+}
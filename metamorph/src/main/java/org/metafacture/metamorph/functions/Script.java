@@ -17,24 +17,24 @@
 
 import java.io.FileNotFoundException;
 
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
-import org.metafacture.commons.ResourceUtil;
+import org.metafacture.commons.ScriptEnginePool;
 import org.metafacture.metamorph.api.MorphBuildException;
 import org.metafacture.metamorph.api.MorphExecutionException;
 import org.metafacture.metamorph.api.helpers.AbstractSimpleStatelessFunction;
 
 /**
  * A function which executes a javascript function.
+ * <p>
+ * The script is loaded and compiled once. Each thread which runs the function
+ * uses its own script state.
  *
  * @author Markus Michael Geipel
  */
 public final class Script extends AbstractSimpleStatelessFunction {
 
-    private Invocable invocable;
+    private ScriptEnginePool engines;
     private String invoke;
 
     public void setInvoke(final String invoke) {
@@ -42,26 +42,22 @@ public void setInvoke(final String invoke) {
     }
 
     public void setFile(final String file) {
-
-        final ScriptEngineManager manager = new ScriptEngineManager();
-        final ScriptEngine engine = manager.getEngineByName("JavaScript");
         try {
             // TODO: The script file should be loaded relatively to the base URI
-            engine.eval(ResourceUtil.getReader(file));
+            engines = ScriptEnginePool.forFile(ScriptEnginePool.JAVASCRIPT, file);
         } catch (final ScriptException e) {
             throw new MorphBuildException("Error in script", e);
         } catch (final FileNotFoundException e) {
             throw new MorphBuildException("Error loading script '" + file + "'",
                     e);
         }
-        invocable = (Invocable) engine;
     }
 
     @Override
     public String process(final String value) {
         final Object obj;
         try {
-            obj = invocable.invokeFunction(invoke, value);
+            obj = engines.invokeFunction(invoke, value);
             return obj.toString();
         } catch (final ScriptException e) {
             throw new MorphExecutionException(
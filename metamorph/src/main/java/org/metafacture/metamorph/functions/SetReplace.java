@@ -15,25 +15,191 @@
  */
 package org.metafacture.metamorph.functions;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.metafacture.commons.tries.DoubleArraySetMatcher;
 import org.metafacture.commons.tries.SetReplacer;
+import org.metafacture.metamorph.api.MorphExecutionException;
+import org.metafacture.metamorph.api.helpers.AbstractReadOnlyMap;
 import org.metafacture.metamorph.api.helpers.AbstractSimpleStatelessFunction;
 
 /**
+ * Replaces all keys of a map found in the received value by their values.
+ * <p>
+ * The replacements can also be read from a map file with one tab-separated
+ * key and value per line. For large maps an automaton file can be set. The
+ * automaton is memory-mapped from this file instead of building it from the
+ * map. A fingerprint of the source of the replacements is stored next to the
+ * automaton file: the path, size and modification time of the map file or,
+ * for entries defined in the morph, the number of entries and their hash
+ * code. If the automaton file does not exist or was built from a different
+ * source, the automaton is built and written to the file. Otherwise, a map
+ * file is not read at all.
+ * <p>
+ * Mapped automata are shared by all functions using the same file as long as
+ * the file and the map are unchanged. At most {@value #MAX_SHARED_AUTOMATA}
+ * automata are kept for sharing.
+ *
  * @author Markus Michael Geipel
  */
 public final class SetReplace extends AbstractSimpleStatelessFunction {
 
+    public static final int MAX_SHARED_AUTOMATA = 16;
+
+    private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+    private static final Pattern TAB = Pattern.compile("\t", Pattern.LITERAL);
+
+    private static final Map<String, DoubleArraySetMatcher> AUTOMATA =
+            new LinkedHashMap<String, DoubleArraySetMatcher>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, DoubleArraySetMatcher> eldest) {
+            return size() > MAX_SHARED_AUTOMATA;
+        }
+
+    };
+
     private final SetReplacer setReplacer = new SetReplacer();
     private boolean prepared;
 
+    private String mapFile;
+    private String automatonFile;
+    private DoubleArraySetMatcher automaton;
+
+    /**
+     * Sets a file from which the replacements are read. Each line contains a
+     * key and its replacement separated by a tab.
+     *
+     * @param mapFile path of the map file
+     */
+    public void setMapFile(final String mapFile) {
+        this.mapFile = mapFile;
+    }
+
+    /**
+     * Sets the file in which the replacement automaton is stored.
+     *
+     * @param automatonFile path of the automaton file
+     */
+    public void setAutomatonFile(final String automatonFile) {
+        this.automatonFile = automatonFile;
+    }
+
     @Override
     public String process(final String text) {
         if (!prepared) {
-            setReplacer.addReplacements(getMap());
+            if (automatonFile == null) {
+                setReplacer.addReplacements(getReplacements());
+            } else {
+                automaton = loadAutomaton(new File(automatonFile).getAbsoluteFile());
+            }
             prepared = true;
         }
+        if (automaton != null) {
+            return automaton.replaceIn(text);
+        }
         return setReplacer.replaceIn(text);
 
     }
 
+    private DoubleArraySetMatcher loadAutomaton(final File file) {
+        final String fingerprint = getFingerprint();
+        final File fingerprintFile = new File(file.getPath() + FINGERPRINT_SUFFIX);
+        synchronized (AUTOMATA) {
+            try {
+                if (!file.exists() || !fingerprint.equals(readFingerprint(fingerprintFile))) {
+                    writeAutomaton(file, getReplacements());
+                    Files.write(fingerprintFile.toPath(),
+                            fingerprint.getBytes(StandardCharsets.UTF_8));
+                }
+                final String key = file.getPath() + ":" + file.length() + ":"
+                        + file.lastModified() + ":" + fingerprint;
+                DoubleArraySetMatcher matcher = AUTOMATA.get(key);
+                if (matcher == null) {
+                    matcher = DoubleArraySetMatcher.load(file);
+                    AUTOMATA.put(key, matcher);
+                }
+                return matcher;
+            } catch (final IOException e) {
+                throw new MorphExecutionException("Cannot load replacement automaton from "
+                        + file, e);
+            }
+        }
+    }
+
+    private String getFingerprint() {
+        if (mapFile != null) {
+            final File file = new File(mapFile).getAbsoluteFile();
+            if (!file.isFile()) {
+                throw new MorphExecutionException("setreplace: cannot read map file " + mapFile);
+            }
+            return "file:" + file.getPath() + ":" + file.length() + ":" + file.lastModified();
+        }
+        final Map<String, String> map = getReplacements();
+        return "map:" + map.size() + ":" + map.hashCode();
+    }
+
+    private Map<String, String> getReplacements() {
+        if (mapFile != null) {
+            return readMapFile(mapFile);
+        }
+        final Map<String, String> map = getMap();
+        if (map instanceof AbstractReadOnlyMap) {
+            throw new MorphExecutionException("setreplace: the entries of map '"
+                    + getMapName() + "' cannot be listed; use mapFile instead");
+        }
+        return map;
+    }
+
+    private static Map<String, String> readMapFile(final String mapFile) {
+        final Map<String, String> map = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(mapFile),
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = TAB.split(line);
+                if (parts.length == 2) {
+                    map.put(parts[0], parts[1]);
+                }
+            }
+        } catch (final IOException e) {
+            throw new MorphExecutionException("setreplace: cannot read map file " + mapFile, e);
+        }
+        return map;
+    }
+
+    private static String readFingerprint(final File fingerprintFile) throws IOException {
+        if (!fingerprintFile.exists()) {
+            return null;
+        }
+        return new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void writeAutomaton(final File file, final Map<String, String> map)
+            throws IOException {
+        // Write to a temporary file first so that an incomplete automaton is
+        // never mapped
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            DoubleArraySetMatcher.build(map).writeTo(out);
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
 }
@@ -19,9 +19,17 @@
 import java.util.Set;
 
 import org.metafacture.metamorph.api.helpers.AbstractStatefulFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Checks whether the received value was not received before.
+ * <p>
+ * By default, received keys are stored as strings. In fingerprint mode, keys
+ * are stored as 64 bit fingerprints in a table which is reused across records
+ * and does not allocate a key string per value. The number of stored keys can
+ * be capped with {@code maxEntries}; once the cap has been reached, values
+ * which have not been stored before are passed on but not stored.
  *
  * @author Markus Michael Geipel
  *
@@ -32,9 +40,16 @@ public final class Unique extends AbstractStatefulFunction {
     private static final String NAME = "name";
     private static final String VALUE = "value";
 
+    private static final Logger LOG = LoggerFactory.getLogger(Unique.class);
+
     private final Set<String> set = new HashSet<String>();
 
     private boolean uniqueInEntity;
+    private boolean fingerprint;
+    private int maxEntries;
+    private boolean includeName = true;
+    private boolean includeValue = true;
+    private FingerprintSet fingerprints;
 
     private KeyGenerator keyGenerator = new KeyGenerator() {
         @Override
@@ -45,6 +60,9 @@ public String createKey(final String name, final String value) {
 
     @Override
     public String process(final String value) {
+        if (fingerprint) {
+            return processFingerprint(value);
+        }
         final String key = keyGenerator.createKey(getLastName(), value);
         if (set.contains(key)) {
             return null;
@@ -53,9 +71,26 @@ public String process(final String value) {
         return value;
     }
 
+    private String processFingerprint(final String value) {
+        if (fingerprints == null) {
+            fingerprints = new FingerprintSet(maxEntries);
+        }
+        final long overflowCount = fingerprints.getOverflowCount();
+        final boolean isNew = fingerprints.add(includeName ? getLastName() : null,
+                includeValue ? value : null);
+        if (overflowCount == 0 && fingerprints.getOverflowCount() > 0) {
+            LOG.warn("unique: more than {} entries, further values are not checked",
+                    maxEntries);
+        }
+        return isNew ? value : null;
+    }
+
     @Override
     protected void reset() {
         set.clear();
+        if (fingerprints != null) {
+            fingerprints.clear();
+        }
     }
 
     @Override
@@ -67,7 +102,29 @@ public void setIn(final String scope) {
         uniqueInEntity = ENTITY.equals(scope);
     }
 
+    /**
+     * Stores fingerprints of the keys instead of the keys. The default is
+     * false.
+     *
+     * @param fingerprint true to enable fingerprint mode
+     */
+    public void setFingerprint(final boolean fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Caps the number of keys stored in fingerprint mode. The default is zero
+     * which means no limit.
+     *
+     * @param maxEntries maximum number of stored keys
+     */
+    public void setMaxEntries(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
     public void setPart(final String part) {
+        includeName = !VALUE.equals(part);
+        includeValue = !NAME.equals(part);
         if (NAME.equals(part)) {
             keyGenerator = new KeyGenerator() {
                 @Override
@@ -15,31 +15,82 @@
  */
 package org.metafacture.metamorph.maps;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
+import org.metafacture.metamorph.api.MorphExecutionException;
 import org.metafacture.metamorph.api.helpers.AbstractReadOnlyMap;
 
 /**
  * A map which resolves its keys by doing a REST request and returning the
  * response as value.
+ * <p>
+ * Responses are read in bulk and may be gzip or deflate encoded. Connections
+ * are reused through the keep-alive support of {@link HttpURLConnection} as
+ * long as responses are read completely. Resolved values (including missing
+ * ones) are kept in a least-recently-used cache of {@code cacheSize} entries.
+ * Only keys answered with 404 (Not Found) or 410 (Gone) are missing; other
+ * error responses raise an exception and are not cached.
+ * <p>
+ * Java code using the map directly can resolve keys ahead of time by calling
+ * {@link #prefetch(Object)} or {@link #prefetch(Collection)}. Prefetched keys
+ * are requested in the background by up to {@code concurrency} threads and a
+ * later call to {@link #get(Object)} waits for the pending response instead of
+ * issuing a new request. Prefetching is not available to lookups in a
+ * morph: a morph only knows a lookup key once the record containing it is
+ * processed, so the keys of upcoming records cannot be resolved in parallel
+ * and morph lookups request one key at a time.
  *
  * @author Markus Michael Geipel
  * @author Philipp v. Böselager
  */
-public final class RestMap extends AbstractReadOnlyMap<String, String> {
+public final class RestMap extends AbstractReadOnlyMap<String, String>
+        implements Closeable {
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
 
     private static final Pattern VAR_PATTERN = Pattern.compile("${key}", Pattern.LITERAL);
+
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Map<String, CompletableFuture<String>> cache =
+            new LinkedHashMap<>(16, 0.75f, true);
+
     private String charsetName = "UTF-8";
     private String url;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    private ExecutorService executor;
 
     public RestMap() {
     }
@@ -50,30 +101,181 @@ public RestMap(String url) {
 
     @Override
     public String get(final Object key) {
+        final String keyString = key.toString();
+        final CompletableFuture<String> response;
+        final boolean isNewRequest;
+        synchronized (cache) {
+            final CompletableFuture<String> pending = cache.get(keyString);
+            isNewRequest = pending == null;
+            response = isNewRequest ? new CompletableFuture<>() : pending;
+            if (isNewRequest) {
+                cache.put(keyString, response);
+                trimCache();
+            }
+        }
+        if (isNewRequest) {
+            try {
+                response.complete(readFromUrl(keyString));
+            } catch (final RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        }
+        return await(keyString, response);
+    }
+
+    /**
+     * Requests the value of {@code key} in the background. The key is ignored
+     * if it is already cached or pending.
+     *
+     * @param key the key to resolve
+     */
+    public void prefetch(final Object key) {
+        final String keyString = key.toString();
+        synchronized (cache) {
+            if (!cache.containsKey(keyString)) {
+                cache.put(keyString, CompletableFuture.supplyAsync(
+                        () -> readFromUrl(keyString), getExecutor()));
+                trimCache();
+            }
+        }
+    }
+
+    /**
+     * Requests the values of all {@code keys} in the background.
+     *
+     * @param keys the keys to resolve
+     * @see #prefetch(Object)
+     */
+    public void prefetch(final Collection<?> keys) {
+        keys.forEach(this::prefetch);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the cache holds at most
+     * {@code cacheSize} entries. Pending entries are never removed, so the
+     * cache may temporarily exceed its size while many keys are prefetched.
+     * It shrinks back as soon as these entries are done. Must be called
+     * while holding the lock on {@code cache}.
+     */
+    private void trimCache() {
+        final Iterator<CompletableFuture<String>> values = cache.values().iterator();
+        while (cache.size() > cacheSize && values.hasNext()) {
+            if (values.next().isDone()) {
+                values.remove();
+            }
+        }
+    }
+
+    private String await(final String key, final CompletableFuture<String> response) {
+        try {
+            final String value = response.get();
+            if (cacheSize <= 0) {
+                synchronized (cache) {
+                    cache.remove(key, response);
+                }
+            }
+            return value;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MorphExecutionException("restmap: interrupted while waiting for response", e);
+        } catch (final ExecutionException e) {
+            synchronized (cache) {
+                cache.remove(key, response);
+            }
+            final Throwable cause = e.getCause();
+            if (cause instanceof MorphExecutionException) {
+                throw (MorphExecutionException) cause;
+            }
+            throw new MorphExecutionException("restmap: request failed", cause);
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, concurrency),
+                    new DaemonThreadFactory());
+        }
+        return executor;
+    }
+
+    private String readFromUrl(final String key) {
         final Matcher matcher = VAR_PATTERN.matcher(url);
+        final String urlString = matcher.replaceAll(Matcher.quoteReplacement(key));
         try {
-            String urlString = matcher.replaceAll(key.toString());
-            return readFromUrl(urlString);
-        } catch (IOException | URISyntaxException e) {
+            final URLConnection connection = new URL(new URI(
+                    urlString.replace(" ", "%20")).toASCIIString()).openConnection();
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+            if (connection instanceof HttpURLConnection) {
+                final HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                final int responseCode = httpConnection.getResponseCode();
+                if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                    discardErrorStream(httpConnection);
+                    if (responseCode == HttpURLConnection.HTTP_NOT_FOUND ||
+                            responseCode == HttpURLConnection.HTTP_GONE) {
+                        // There was no data result for the given URL
+                        return null;
+                    }
+                    throw new MorphExecutionException("restmap: HTTP " + responseCode +
+                            " for " + urlString);
+                }
+            }
+            try (InputStream inputStream = decode(connection)) {
+                return readFully(new InputStreamReader(inputStream,
+                        Charset.forName(charsetName)));
+            }
+        } catch (final FileNotFoundException e) {
             // There was no data result for the given URL
             return null;
+        } catch (final IOException | URISyntaxException e) {
+            throw new MorphExecutionException("restmap: cannot read " + urlString, e);
         }
     }
 
-    private String readFromUrl(final String url) throws IOException, URISyntaxException {
-        InputStream inputStream = new URL(new URI(url.replace(" ", "%20")).toASCIIString()).openConnection()
-                .getInputStream();
-        try {
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(inputStream, Charset.forName(charsetName)));
-            StringBuilder stringBuffer = new StringBuilder();
-            int value;
-            while ((value = reader.read()) != -1) {
-                stringBuffer.append((char) value);
+    private static InputStream decode(final URLConnection connection) throws IOException {
+        final InputStream inputStream = connection.getInputStream();
+        final String encoding = connection.getContentEncoding();
+        if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        if ("deflate".equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(inputStream);
+        }
+        return inputStream;
+    }
+
+    private static String readFully(final Reader reader) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        final char[] buffer = new char[BUFFER_SIZE];
+        int count;
+        while ((count = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, count);
+        }
+        return builder.toString();
+    }
+
+    private static void discardErrorStream(final HttpURLConnection connection)
+            throws IOException {
+        // Reading the error body allows the connection to be kept alive
+        try (InputStream errorStream = connection.getErrorStream()) {
+            if (errorStream != null) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                while (errorStream.read(buffer) != -1) {
+                    // Discard
+                }
             }
-            return stringBuffer.toString();
-        } finally {
-            inputStream.close();
         }
     }
 
@@ -85,4 +287,59 @@ public void setCharsetName(String name) {
         charsetName = name;
     }
 
+    /**
+     * Sets the maximum number of responses which are cached. A value of zero
+     * disables caching. The default is {@value #DEFAULT_CACHE_SIZE}.
+     *
+     * @param cacheSize the maximum number of cached responses
+     */
+    public void setCacheSize(final int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Sets the number of threads used for prefetching keys. The default is
+     * {@value #DEFAULT_CONCURRENCY}. Note that the number of idle connections
+     * kept alive per host is limited by the system property
+     * {@code http.maxConnections}.
+     *
+     * @param concurrency the number of concurrent background requests
+     */
+    public void setConcurrency(final int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the connect timeout in milliseconds. The default is
+     * {@value #DEFAULT_CONNECT_TIMEOUT}.
+     *
+     * @param connectTimeout the connect timeout in milliseconds
+     */
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the read timeout in milliseconds. The default is
+     * {@value #DEFAULT_READ_TIMEOUT}.
+     *
+     * @param readTimeout the read timeout in milliseconds
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = defaultFactory.newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
 }
@@ -153,4 +153,38 @@ public void shouldEmitTuplesWithMinNIfNotAllStatementsFired() {
         );
     }
 
+    @Test
+    public void shouldEmitAtMostMaxTuples() {
+        assertMorph(receiver,
+                "<rules>" +
+                "  <tuples name='product' maxTuples='3'>" +
+                "    <data source='1' />" +
+                "    <data source='2' />" +
+                "  </tuples>" +
+                "</rules>",
+                i -> {
+                    i.startRecord("1");
+                    i.literal("1", "a");
+                    i.literal("1", "b");
+                    i.literal("2", "A");
+                    i.literal("2", "B");
+                    i.endRecord();
+                    i.startRecord("2");
+                    i.literal("1", "c");
+                    i.literal("2", "C");
+                    i.endRecord();
+                },
+                o -> {
+                    o.get().startRecord("1");
+                    o.get().literal("product", "aA");
+                    o.get().literal("product", "bA");
+                    o.get().literal("product", "aB");
+                    o.get().endRecord();
+                    o.get().startRecord("2");
+                    o.get().literal("product", "cC");
+                    o.get().endRecord();
+                }
+        );
+    }
+
 }
@@ -64,4 +64,92 @@ public void shouldMakeOutputFormatConfigurable() {
     ordered.verifyNoMoreInteractions();
   }
 
+  @Test
+  public void shouldAppendEraToDatesBeforeChrist() {
+    metamorph = InlineMorph.in(this)
+        .with("<rules>")
+        .with("  <data source='date'>")
+        .with("    <dateformat outputformat='LONG' language='en' era='BC' />")
+        .with("  </data>")
+        .with("</rules>")
+        .createConnectedTo(receiver);
+
+    metamorph.startRecord("1");
+    metamorph.literal("date", "20.07.356");
+    metamorph.endRecord();
+
+    final InOrder ordered = inOrder(receiver);
+    ordered.verify(receiver).startRecord("1");
+    ordered.verify(receiver).literal("date", "July 20, 356 BC");
+    ordered.verify(receiver).endRecord();
+    ordered.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void shouldPassThroughUnparsableValues() {
+    metamorph = InlineMorph.in(this)
+        .with("<rules>")
+        .with("  <data source='date'>")
+        .with("    <dateformat inputformat='yyyy-MM-dd' language='en' />")
+        .with("  </data>")
+        .with("</rules>")
+        .createConnectedTo(receiver);
+
+    metamorph.startRecord("1");
+    metamorph.literal("date", "unknown");
+    metamorph.literal("date", "2021-02-03");
+    metamorph.literal("date", "unknown");
+    metamorph.endRecord();
+
+    final InOrder ordered = inOrder(receiver);
+    ordered.verify(receiver).startRecord("1");
+    ordered.verify(receiver).literal("date", "unknown");
+    ordered.verify(receiver).literal("date", "February 3, 2021");
+    ordered.verify(receiver).literal("date", "unknown");
+    ordered.verify(receiver).endRecord();
+    ordered.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void shouldParseYearOnlyAsFirstOfJanuary() {
+    metamorph = InlineMorph.in(this)
+        .with("<rules>")
+        .with("  <data source='date'>")
+        .with("    <dateformat inputformat='yyyy' language='en' />")
+        .with("  </data>")
+        .with("</rules>")
+        .createConnectedTo(receiver);
+
+    metamorph.startRecord("1");
+    metamorph.literal("date", "1999");
+    metamorph.endRecord();
+
+    final InOrder ordered = inOrder(receiver);
+    ordered.verify(receiver).startRecord("1");
+    ordered.verify(receiver).literal("date", "January 1, 1999");
+    ordered.verify(receiver).endRecord();
+    ordered.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void shouldParseMonthAndYearAsFirstOfMonth() {
+    metamorph = InlineMorph.in(this)
+        .with("<rules>")
+        .with("  <data source='date'>")
+        .with("    <dateformat inputformat='MM/yyyy' language='en' />")
+        .with("  </data>")
+        .with("</rules>")
+        .createConnectedTo(receiver);
+
+    metamorph.startRecord("1");
+    metamorph.literal("date", "05/1999");
+    metamorph.endRecord();
+
+    final InOrder ordered = inOrder(receiver);
+    ordered.verify(receiver).startRecord("1");
+    ordered.verify(receiver).literal("date", "May 1, 1999");
+    ordered.verify(receiver).endRecord();
+    ordered.verifyNoMoreInteractions();
+  }
+
 }
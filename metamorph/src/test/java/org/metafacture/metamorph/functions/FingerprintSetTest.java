@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for class {@link FingerprintSet}.
+ */
+public final class FingerprintSetTest {
+
+    @Test
+    public void shouldDetectDuplicatePairs() {
+        final FingerprintSet set = new FingerprintSet(0);
+
+        assertTrue(set.add("name", "value"));
+        assertFalse(set.add("name", "value"));
+        assertTrue(set.add("name", "other"));
+        assertTrue(set.add("other", "value"));
+        assertTrue(set.add(null, "value"));
+        assertFalse(set.add(null, "value"));
+    }
+
+    @Test
+    public void shouldDistinguishPairsWithSameConcatenation() {
+        final FingerprintSet set = new FingerprintSet(0);
+
+        assertTrue(set.add("ab", "c"));
+        assertTrue(set.add("a", "bc"));
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        final FingerprintSet set = new FingerprintSet(0);
+        for (int i = 0; i < 10000; ++i) {
+            assertTrue(set.add("name", "value" + i));
+        }
+        for (int i = 0; i < 10000; ++i) {
+            assertFalse(set.add("name", "value" + i));
+        }
+        assertEquals(10000, set.size());
+    }
+
+    @Test
+    public void shouldForgetPairsOnClear() {
+        final FingerprintSet set = new FingerprintSet(0);
+        set.add("name", "value");
+
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertTrue(set.add("name", "value"));
+    }
+
+    @Test
+    public void shouldNotStorePairsBeyondMaxSize() {
+        final FingerprintSet set = new FingerprintSet(2);
+        set.add("name", "value1");
+        set.add("name", "value2");
+
+        assertTrue(set.add("name", "value3"));
+        assertTrue(set.add("name", "value3"));
+        assertFalse(set.add("name", "value1"));
+        assertEquals(2, set.size());
+        assertEquals(2, set.getOverflowCount());
+    }
+
+}
@@ -17,16 +17,27 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.metafacture.framework.StreamReceiver;
 import org.metafacture.metamorph.InlineMorph;
 import org.metafacture.metamorph.Metamorph;
 import org.metafacture.metamorph.api.Maps;
+import org.metafacture.metamorph.api.helpers.AbstractReadOnlyMap;
+import org.metafacture.metamorph.maps.RestMap;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
@@ -47,10 +58,15 @@ public final class LookupTest {
     private static final String KEY = "Franz";
     private static final String KEY_WRONG = "Josef";
     private static final String VALUE = "Kafka";
+    private static final String MAP_DEFAULT = "unknown";
+    private static final long FILE_TIME = 1000000000L;
 
     @Rule
     public MockitoRule mockito = MockitoJUnit.rule().silent();
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Mock
     private Maps maps;
 
@@ -95,6 +111,157 @@ public void shouldReturnNullIfKeyDoesNotExist() {
         assertNull(lookup.process(KEY_WRONG));
     }
 
+    @Test
+    public void shouldLookupValuesInReferencedMapWithBloomFilter() {
+        final Metamorph metamorph = InlineMorph.in(this)
+                .with("<rules>")
+                .with("  <data source='1'>")
+                .with("    <lookup in='map1' bloomFilter='true' />")
+                .with("  </data>")
+                .with("  <data source='2'>")
+                .with("    <lookup in='map2' bloomFilter='true' />")
+                .with("  </data>")
+                .with("</rules>")
+                .with("<maps>")
+                .with("  <map name='map1'>")
+                .with("    <entry name='a' value='A' />")
+                .with("  </map>")
+                .with("  <map name='map2' default='B'>")
+                .with("    <entry name='a' value='A' />")
+                .with("  </map>")
+                .with("</maps>")
+                .createConnectedTo(receiver);
+
+        metamorph.startRecord("1");
+        metamorph.literal("1", "a");
+        metamorph.literal("1", "b");
+        metamorph.literal("2", "a");
+        metamorph.literal("2", "b");
+        metamorph.endRecord();
+
+        final InOrder ordered = inOrder(receiver);
+        ordered.verify(receiver).startRecord("1");
+        ordered.verify(receiver).literal("1", "A");
+        ordered.verify(receiver).literal("2", "A");
+        ordered.verify(receiver).literal("2", "B");
+        ordered.verify(receiver).endRecord();
+        ordered.verifyNoMoreInteractions();
+    }
+
+    @Test
+    public void shouldCountLookupsAvoidedByBloomFilter() {
+        final Lookup lookup = new Lookup();
+        lookup.setMaps(maps);
+        lookup.putValue(KEY, VALUE);
+        lookup.setBloomFilter(true);
+
+        assertEquals(VALUE, lookup.process(KEY));
+        assertNull(lookup.process(KEY_WRONG));
+        assertEquals(2, lookup.getLookupCount());
+        assertEquals(1, lookup.getAvoidedLookupCount());
+    }
+
+    @Test
+    public void shouldBuildBloomFilterFromKeyListForReadOnlyMap() throws IOException {
+        final File keysFile = writeKeys(KEY + "\t" + VALUE);
+        when(maps.getMap(MAP_NAME)).thenReturn(new ReadOnlyMap());
+
+        final Lookup lookup = new Lookup();
+        lookup.setMaps(maps);
+        lookup.setIn(MAP_NAME);
+        lookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+
+        assertEquals(VALUE, lookup.process(KEY));
+        assertNull(lookup.process(KEY_WRONG));
+        assertEquals(1, lookup.getAvoidedLookupCount());
+        verify(maps, never()).getValue(MAP_NAME, Maps.DEFAULT_MAP_KEY);
+    }
+
+    @Test
+    public void shouldReturnDefaultOfReadOnlyMapForKeysRejectedByBloomFilter() throws IOException {
+        final File keysFile = writeKeys(KEY);
+        when(maps.getMap(MAP_NAME)).thenReturn(new ReadOnlyMapWithDefault());
+
+        final Lookup lookup = new Lookup();
+        lookup.setMaps(maps);
+        lookup.setIn(MAP_NAME);
+        lookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+
+        assertEquals(MAP_DEFAULT, lookup.process(KEY_WRONG));
+        assertEquals(1, lookup.getAvoidedLookupCount());
+    }
+
+    @Test
+    public void shouldNotRequestDefaultOfRemoteMap() throws IOException {
+        final File keysFile = writeKeys(KEY);
+        final RestMap restMap = new RestMap("http://localhost:1/${key}");
+        when(maps.getMap(MAP_NAME)).thenReturn(restMap);
+
+        final Lookup lookup = new Lookup();
+        lookup.setMaps(maps);
+        lookup.setIn(MAP_NAME);
+        lookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+
+        assertNull(lookup.process(KEY_WRONG));
+        assertEquals(1, lookup.getAvoidedLookupCount());
+        restMap.close();
+    }
+
+    @Test
+    public void shouldWriteAndReadBloomFilterFile() throws IOException {
+        final File keysFile = writeKeys(KEY);
+        final File filterFile = tempFolder.newFile();
+        filterFile.delete();
+        when(maps.getMap(MAP_NAME)).thenReturn(new ReadOnlyMap());
+
+        final Lookup writingLookup = new Lookup();
+        writingLookup.setMaps(maps);
+        writingLookup.setIn(MAP_NAME);
+        writingLookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+        writingLookup.setBloomFilterFile(filterFile.getAbsolutePath());
+        writingLookup.process(KEY);
+        assertTrue(filterFile.exists());
+        filterFile.setLastModified(FILE_TIME);
+
+        final Lookup readingLookup = new Lookup();
+        readingLookup.setMaps(maps);
+        readingLookup.setIn(MAP_NAME);
+        readingLookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+        readingLookup.setBloomFilterFile(filterFile.getAbsolutePath());
+
+        assertEquals(VALUE, readingLookup.process(KEY));
+        assertNull(readingLookup.process(KEY_WRONG));
+        assertEquals(1, readingLookup.getAvoidedLookupCount());
+        assertEquals(FILE_TIME, filterFile.lastModified());
+    }
+
+    @Test
+    public void shouldRebuildStaleBloomFilterFile() throws IOException {
+        final File keysFile = writeKeys(KEY);
+        final File filterFile = tempFolder.newFile();
+        filterFile.delete();
+        when(maps.getMap(MAP_NAME)).thenReturn(new ReadOnlyMap());
+
+        final Lookup writingLookup = new Lookup();
+        writingLookup.setMaps(maps);
+        writingLookup.setIn(MAP_NAME);
+        writingLookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+        writingLookup.setBloomFilterFile(filterFile.getAbsolutePath());
+        writingLookup.process(KEY);
+
+        Files.write(keysFile.toPath(), (KEY + "\n" + KEY_WRONG + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        final Lookup readingLookup = new Lookup();
+        readingLookup.setMaps(maps);
+        readingLookup.setIn(MAP_NAME);
+        readingLookup.setBloomFilterKeys(keysFile.getAbsolutePath());
+        readingLookup.setBloomFilterFile(filterFile.getAbsolutePath());
+
+        assertNull(readingLookup.process(KEY_WRONG));
+        assertEquals(0, readingLookup.getAvoidedLookupCount());
+    }
+
     @Test
     public void shouldLookupValuesInLocalMap() {
         final Metamorph metamorph = InlineMorph.in(this)
@@ -189,4 +356,34 @@ public void shouldLookupValuesInMetadata() {
         ordered.verifyNoMoreInteractions();
     }
 
+    private File writeKeys(final String keys) throws IOException {
+        final File keysFile = tempFolder.newFile();
+        Files.write(keysFile.toPath(), (keys + "\n").getBytes(StandardCharsets.UTF_8));
+        return keysFile;
+    }
+
+    /**
+     * A map whose keys cannot be enumerated.
+     */
+    private static class ReadOnlyMap extends AbstractReadOnlyMap<String, String> {
+
+        @Override
+        public String get(final Object key) {
+            return KEY.equals(key) ? VALUE : null;
+        }
+
+    }
+
+    /**
+     * A read-only map with a default value.
+     */
+    private static final class ReadOnlyMapWithDefault extends ReadOnlyMap {
+
+        @Override
+        public String get(final Object key) {
+            return Maps.DEFAULT_MAP_KEY.equals(key) ? MAP_DEFAULT : super.get(key);
+        }
+
+    }
+
 }
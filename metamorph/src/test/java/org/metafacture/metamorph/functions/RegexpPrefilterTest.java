@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests for class {@link RegexpPrefilter}.
+ */
+public final class RegexpPrefilterTest {
+
+    @Test
+    public void shouldExtractLongestRequiredLiteral() {
+        assertEquals("abc", RegexpPrefilter.requiredLiteral("abc"));
+        assertEquals("bcd", RegexpPrefilter.requiredLiteral("a.*bcd"));
+        assertEquals("ISBN", RegexpPrefilter.requiredLiteral("^ISBN\\s*(\\d+)"));
+        assertEquals(".html", RegexpPrefilter.requiredLiteral("\\.html$"));
+    }
+
+    @Test
+    public void shouldNotIncludeOptionalCharactersInLiteral() {
+        assertEquals("a", RegexpPrefilter.requiredLiteral("ab?c"));
+        assertEquals("cd", RegexpPrefilter.requiredLiteral("ab*?cd"));
+        assertEquals("bb", RegexpPrefilter.requiredLiteral("a{0,3}bb"));
+        assertEquals("yz", RegexpPrefilter.requiredLiteral("x(abc)?yz"));
+        assertEquals("xy", RegexpPrefilter.requiredLiteral("[ab]{2}xy"));
+    }
+
+    @Test
+    public void shouldNotExtractLiteralIfStructureIsNotUnderstood() {
+        assertNull(RegexpPrefilter.requiredLiteral("foo|bar"));
+        assertNull(RegexpPrefilter.requiredLiteral("(?i)abc"));
+        assertNull(RegexpPrefilter.requiredLiteral("abc\\Qx\\E"));
+        assertNull(RegexpPrefilter.requiredLiteral(".*"));
+    }
+
+    @Test
+    public void shouldSkipPatternsWhoseLiteralIsMissing() {
+        final RegexpPrefilter prefilter = new RegexpPrefilter();
+        final int isbn = prefilter.register(Pattern.compile("ISBN\\s*(\\d+)"), false);
+        final int issn = prefilter.register(Pattern.compile("ISSN\\s*(\\d+)"), false);
+
+        final String value = "ISBN 3123456789";
+        assertTrue(prefilter.mightMatch(isbn, value));
+        assertFalse(prefilter.mightMatch(issn, value));
+    }
+
+    @Test
+    public void shouldNotSkipPatternsWithoutLiteral() {
+        final RegexpPrefilter prefilter = new RegexpPrefilter();
+        final int id = prefilter.register(Pattern.compile("\\d+"), false);
+
+        assertTrue(prefilter.mightMatch(id, "abc"));
+    }
+
+    @Test
+    public void shouldSkipCombinedPatternsIfNoneMatches() {
+        final RegexpPrefilter prefilter = new RegexpPrefilter();
+        final int digits = prefilter.register(Pattern.compile("\\d+"), true);
+        final int spaces = prefilter.register(Pattern.compile("\\s+"), true);
+
+        assertFalse(prefilter.mightMatch(digits, "abc"));
+        assertFalse(prefilter.mightMatch(spaces, "abc"));
+        assertTrue(prefilter.mightMatch(digits, "a c"));
+        assertTrue(prefilter.mightMatch(spaces, "a c"));
+    }
+
+    @Test
+    public void shouldNotCombinePatternsWithBackReferences() {
+        final RegexpPrefilter prefilter = new RegexpPrefilter();
+        final int digits = prefilter.register(Pattern.compile("\\d+"), true);
+        final int repeated = prefilter.register(Pattern.compile("(\\w)\\1"), true);
+
+        assertFalse(prefilter.mightMatch(digits, "aa"));
+        assertTrue(prefilter.mightMatch(repeated, "aa"));
+    }
+
+    @Test
+    public void shouldCountSkippedValues() {
+        final RegexpPrefilter prefilter = new RegexpPrefilter();
+        final Regexp regexp = new Regexp();
+        regexp.setMatch("ISBN$");
+        regexp.setPrefilter(prefilter);
+
+        regexp.receive("name", "ISBN 123", null, 1, 0);
+        regexp.receive("name", "ISSN 123", null, 1, 0);
+        regexp.receive("name", "ISSN 456", null, 1, 0);
+
+        assertEquals(3, regexp.getReceivedCount());
+        assertEquals(2, regexp.getSkippedCount());
+    }
+
+}
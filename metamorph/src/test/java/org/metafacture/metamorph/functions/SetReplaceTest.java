@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for class {@link SetReplace}.
+ */
+public final class SetReplaceTest {
+
+    private static final long FILE_TIME = 1000000000L;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File automatonFile;
+
+    @Before
+    public void setup() throws IOException {
+        automatonFile = tempFolder.newFile();
+        automatonFile.delete();
+    }
+
+    @Test
+    public void shouldReplaceKeysUsingAutomatonFile() {
+        final SetReplace setReplace = createSetReplace("Franz", "Kafka");
+
+        assertEquals("Kafka und Max", setReplace.process("Franz und Max"));
+        assertTrue(automatonFile.exists());
+    }
+
+    @Test
+    public void shouldReuseAutomatonFileBuiltFromSameMap() {
+        createSetReplace("Franz", "Kafka").process("Franz");
+        automatonFile.setLastModified(FILE_TIME);
+
+        final SetReplace setReplace = createSetReplace("Franz", "Kafka");
+
+        assertEquals("Kafka", setReplace.process("Franz"));
+        assertEquals(FILE_TIME, automatonFile.lastModified());
+    }
+
+    @Test
+    public void shouldRebuildAutomatonFileIfMapChanged() {
+        createSetReplace("Franz", "Kafka").process("Franz");
+
+        final SetReplace setReplace = createSetReplace("Franz", "Liszt");
+
+        assertEquals("Liszt", setReplace.process("Franz"));
+    }
+
+    @Test
+    public void shouldReplaceKeysFromMapFile() throws IOException {
+        final SetReplace setReplace = createMapFileSetReplace(writeMapFile("Franz\tKafka\n"));
+
+        assertEquals("Kafka und Max", setReplace.process("Franz und Max"));
+        assertTrue(automatonFile.exists());
+    }
+
+    @Test
+    public void shouldReuseAutomatonFileBuiltFromSameMapFile() throws IOException {
+        final File mapFile = writeMapFile("Franz\tKafka\n");
+        createMapFileSetReplace(mapFile).process("Franz");
+        automatonFile.setLastModified(FILE_TIME);
+
+        final SetReplace setReplace = createMapFileSetReplace(mapFile);
+
+        assertEquals("Kafka", setReplace.process("Franz"));
+        assertEquals(FILE_TIME, automatonFile.lastModified());
+    }
+
+    @Test
+    public void shouldRebuildAutomatonFileIfMapFileChanged() throws IOException {
+        final File mapFile = writeMapFile("Franz\tKafka\n");
+        createMapFileSetReplace(mapFile).process("Franz");
+        Files.write(mapFile.toPath(), "Franz\tLiszt\n".getBytes(StandardCharsets.UTF_8));
+        mapFile.setLastModified(FILE_TIME);
+
+        final SetReplace setReplace = createMapFileSetReplace(mapFile);
+
+        assertEquals("Liszt", setReplace.process("Franz"));
+    }
+
+    private File writeMapFile(final String content) throws IOException {
+        final File mapFile = tempFolder.newFile("map.tsv");
+        Files.write(mapFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return mapFile;
+    }
+
+    private SetReplace createMapFileSetReplace(final File mapFile) {
+        final SetReplace setReplace = new SetReplace();
+        setReplace.setMapFile(mapFile.getAbsolutePath());
+        setReplace.setAutomatonFile(automatonFile.getAbsolutePath());
+        return setReplace;
+    }
+
+    private SetReplace createSetReplace(final String key, final String value) {
+        final SetReplace setReplace = new SetReplace();
+        setReplace.putValue(key, value);
+        setReplace.setAutomatonFile(automatonFile.getAbsolutePath());
+        return setReplace;
+    }
+
+}
@@ -146,4 +146,119 @@ public void shouldAllowSelectingTheUniquePart() {
       );
   }
 
+  @Test
+  public void shouldAllowSelectingTheUniquePartInFingerprintMode() {
+      assertMorph(receiver,
+              "<rules>" +
+              "  <group name='name'>" +
+              "    <group>" +
+              "      <data source='data1' />" +
+              "      <data source='data2' />" +
+              "      <postprocess>" +
+              "        <unique part='name' fingerprint='true' />" +
+              "      </postprocess>" +
+              "    </group>" +
+              "  </group>" +
+              "  <group name='value'>" +
+              "    <group>" +
+              "      <data source='data1' />" +
+              "      <data source='data2' />" +
+              "      <postprocess>" +
+              "        <unique part='value' fingerprint='true' />" +
+              "      </postprocess>" +
+              "    </group>" +
+              "  </group>" +
+              "  <group name='both'>" +
+              "    <group>" +
+              "      <data source='data1' />" +
+              "      <data source='data2' />" +
+              "      <postprocess>" +
+              "        <unique part='name-value' fingerprint='true' />" +
+              "      </postprocess>" +
+              "    </group>" +
+              "  </group>" +
+              "</rules>",
+          i -> {
+              i.startRecord("1");
+              i.literal("data1", "d1");
+              i.literal("data1", "d1");
+              i.literal("data1", "d2");
+              i.literal("data1", "d2");
+              i.literal("data2", "d2");
+              i.literal("data2", "d2");
+              i.endRecord();
+          },
+          o -> {
+              o.get().startRecord("1");
+              o.get().literal("name", "d1");
+              o.get().literal("value", "d1");
+              o.get().literal("both", "d1");
+              o.get().literal("value", "d2");
+              o.get().literal("both", "d2");
+              o.get().literal("name", "d2");
+              o.get().literal("both", "d2");
+              o.get().endRecord();
+          }
+      );
+  }
+
+  @Test
+  public void shouldResetFingerprintsForEachRecord() {
+      assertMorph(receiver,
+              "<rules>" +
+              "  <data source='data'>" +
+              "    <unique fingerprint='true' />" +
+              "  </data>" +
+              "</rules>",
+              i -> {
+                  i.startRecord("1");
+                  i.literal("data", "d1");
+                  i.literal("data", "d1");
+                  i.literal("data", "d2");
+                  i.endRecord();
+                  i.startRecord("2");
+                  i.literal("data", "d1");
+                  i.literal("data", "d2");
+                  i.literal("data", "d2");
+                  i.endRecord();
+              },
+              o -> {
+                  o.get().startRecord("1");
+                  o.get().literal("data", "d1");
+                  o.get().literal("data", "d2");
+                  o.get().endRecord();
+                  o.get().startRecord("2");
+                  o.get().literal("data", "d1");
+                  o.get().literal("data", "d2");
+                  o.get().endRecord();
+              }
+      );
+  }
+
+  @Test
+  public void shouldPassValuesWithoutStoringThemIfMaxEntriesIsReached() {
+      assertMorph(receiver,
+              "<rules>" +
+              "  <data source='data'>" +
+              "    <unique fingerprint='true' maxEntries='1' />" +
+              "  </data>" +
+              "</rules>",
+              i -> {
+                  i.startRecord("1");
+                  i.literal("data", "d1");
+                  i.literal("data", "d2");
+                  i.literal("data", "d1");
+                  i.literal("data", "d2");
+                  i.endRecord();
+              },
+              o -> {
+                  o.get().startRecord("1");
+                  o.get().literal("data", "d1");
+                  o.get().literal("data", "d2");
+                  o.get().literal("data", "d2");
+                  o.get().endRecord();
+              }
+      );
+  }
+
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 hbz
+ *
+ * Licensed under the Apache License, Version 2.0 the "License";
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.metafacture.metamorph.maps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.metafacture.metamorph.api.MorphExecutionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for class {@link RestMap}.
+ */
+public final class RestMapTest {
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private HttpServer server;
+    private RestMap restMap;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/plain/", this::handlePlain);
+        server.createContext("/gzip/", this::handleGzip);
+        server.createContext("/busy/", this::handleBusy);
+        server.start();
+        restMap = new RestMap();
+    }
+
+    @After
+    public void stopServer() {
+        restMap.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldReturnResponseBodyAsValue() {
+        restMap.setUrl(baseUrl() + "/plain/${key}");
+
+        assertEquals("value of Franz", restMap.get("Franz"));
+    }
+
+    @Test
+    public void shouldReturnNullIfResourceDoesNotExist() {
+        restMap.setUrl(baseUrl() + "/plain/${key}");
+
+        assertNull(restMap.get("missing"));
+    }
+
+    @Test
+    public void shouldDecodeGzipEncodedResponses() {
+        restMap.setUrl(baseUrl() + "/gzip/${key}");
+
+        assertEquals("value of Franz", restMap.get("Franz"));
+    }
+
+    @Test
+    public void shouldCacheResponses() {
+        restMap.setUrl(baseUrl() + "/plain/${key}");
+
+        restMap.get("Franz");
+        restMap.get("Franz");
+        restMap.get("missing");
+        restMap.get("missing");
+
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void shouldNotCacheResponsesIfCacheSizeIsZero() {
+        restMap.setUrl(baseUrl() + "/plain/${key}");
+        restMap.setCacheSize(0);
+
+        restMap.get("Franz");
+        restMap.get("Franz");
+
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void shouldUsePrefetchedResponses() {
+        restMap.setUrl(baseUrl() + "/plain/${key}");
+        restMap.setConcurrency(2);
+
+        restMap.prefetch(Arrays.asList("Franz", "Josef", "missing"));
+
+        assertEquals("value of Franz", restMap.get("Franz"));
+        assertEquals("value of Josef", restMap.get("Josef"));
+        assertNull(restMap.get("missing"));
+        assertEquals(3, requestCount.get());
+    }
+
+    @Test
+    public void shouldShrinkCacheAfterPrefetchedResponsesAreDone() {
+        restMap.setUrl(baseUrl() + "/plain/${key}");
+        restMap.setCacheSize(1);
+
+        restMap.prefetch(Arrays.asList("Franz", "Josef"));
+        restMap.get("Franz");
+        restMap.get("Josef");
+        restMap.get("Karl");
+        restMap.get("Josef");
+
+        assertEquals(4, requestCount.get());
+    }
+
+    @Test
+    public void shouldNotCacheServerErrors() {
+        restMap.setUrl(baseUrl() + "/busy/${key}");
+
+        try {
+            restMap.get("Franz");
+            fail("Expected MorphExecutionException");
+        } catch (final MorphExecutionException e) {
+            // expected
+        }
+
+        assertEquals("value of Franz", restMap.get("Franz"));
+        assertEquals(2, requestCount.get());
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void handlePlain(final HttpExchange exchange) throws IOException {
+        final byte[] body = createBody(exchange);
+        if (body == null) {
+            sendNotFound(exchange);
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleGzip(final HttpExchange exchange) throws IOException {
+        final byte[] body = createBody(exchange);
+        if (body == null) {
+            sendNotFound(exchange);
+            return;
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, compressed.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            compressed.writeTo(out);
+        }
+    }
+
+    private void handleBusy(final HttpExchange exchange) throws IOException {
+        if (requestCount.get() == 0) {
+            requestCount.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        } else {
+            handlePlain(exchange);
+        }
+    }
+
+    private byte[] createBody(final HttpExchange exchange) {
+        requestCount.incrementAndGet();
+        final String path = exchange.getRequestURI().getPath();
+        final String key = path.substring(path.lastIndexOf('/') + 1);
+        if ("missing".equals(key)) {
+            return null;
+        }
+        return ("value of " + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void sendNotFound(final HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(404, -1);
+        exchange.close();
+    }
+
+}